@@ -1,6 +1,7 @@
 package eu.fast.gw2.dao;
 
 import eu.fast.gw2.tools.Jpa;
+import eu.fast.gw2.tools.OverlayEvents;
 
 public final class OverlayDao {
     private OverlayDao() {
@@ -10,18 +11,23 @@ public final class OverlayDao {
     // DETAIL
     // -------------------------
     public static void upsertDetail(long fid, String key, String tier, String rowsJson) {
-        Jpa.txVoid(em -> em.createNativeQuery("""
-                    INSERT INTO public.detail_tables_overlay(detail_feature_id, key, tier, rows, updated_at)
-                    VALUES (:fid,:k,:t,CAST(:rows AS jsonb), now())
+        int n = Jpa.tx(em -> {
+            OverlayDaoBatch.lockVersions(em);
+            return em.createNativeQuery("""
+                    INSERT INTO public.detail_tables_overlay(detail_feature_id, key, tier, rows, updated_at, version)
+                    VALUES (:fid,:k,:t,CAST(:rows AS jsonb), now(), nextval('public.overlay_version_seq'))
                     ON CONFLICT (detail_feature_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.detail_tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
                 """)
                 .setParameter("fid", fid)
                 .setParameter("k", key)
                 .setParameter("t", tier)
                 .setParameter("rows", rowsJson)
-                .executeUpdate());
+                .executeUpdate();
+        });
+        if (n > 0)
+            OverlayEvents.detailChanged(fid, key, tier);
     }
 
     // -------------------------
@@ -30,18 +36,23 @@ public final class OverlayDao {
 
     /** New preferred per-row upsert using page_id + name + tier. */
     public static void upsertMain(int pageId, String name, String tier, String rowsJson) {
-        Jpa.txVoid(em -> em.createNativeQuery("""
-                    INSERT INTO public.tables_overlay(page_id, key, tier, rows, updated_at)
-                    VALUES (:pid,:k,:t,CAST(:rows AS jsonb), now())
+        int n = Jpa.tx(em -> {
+            OverlayDaoBatch.lockVersions(em);
+            return em.createNativeQuery("""
+                    INSERT INTO public.tables_overlay(page_id, key, tier, rows, updated_at, version)
+                    VALUES (:pid,:k,:t,CAST(:rows AS jsonb), now(), nextval('public.overlay_version_seq'))
                     ON CONFLICT (page_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
                 """)
                 .setParameter("pid", pageId)
                 .setParameter("k", name)
                 .setParameter("t", tier)
                 .setParameter("rows", rowsJson)
-                .executeUpdate());
+                .executeUpdate();
+        });
+        if (n > 0)
+            OverlayEvents.mainChanged(pageId, tier);
     }
 
     // -------------------------
@@ -3,11 +3,32 @@ package eu.fast.gw2.dao;
 import java.util.List;
 
 import eu.fast.gw2.tools.Jpa;
+import eu.fast.gw2.tools.OverlayEvents;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 
+@SuppressWarnings("unchecked")
 public class OverlayDaoBatch {
 
-    /** Returns affected rows (inserted + updated). */
+    /** pg_advisory_xact_lock key serializing overlay_version_seq writers. */
+    private static final long VERSION_LOCK = 0x6F766C7276657273L; // "ovlrvers"
+
+    /**
+     * Call first in every transaction that takes overlay_version_seq values.
+     * Versions are handed out and committed under one lock, so they become
+     * visible in increasing order even with several writer processes
+     * (RunService, RunPrices); a change feed reader that saw version N can
+     * never later see a new row with a version below N.
+     */
+    public static void lockVersions(EntityManager em) {
+        em.createNativeQuery("SELECT 1 FROM pg_advisory_xact_lock(:k)").setParameter("k", VERSION_LOCK).getSingleResult();
+    }
+
+    /**
+     * Returns affected rows (inserted + updated).
+     * Every changed row gets the next overlay_version_seq value (change feed).
+     * Changed (page_id, tier) pairs are published via OverlayEvents after commit.
+     */
     public static int batchUpsertMain(List<Integer> pageIds,
             List<String> names,
             List<String> tiers,
@@ -22,22 +43,24 @@ public class OverlayDaoBatch {
 
         final StringBuilder sb = new StringBuilder(256 + pageIds.size() * 40);
         sb.append("""
-                    INSERT INTO public.tables_overlay (page_id, key, tier, rows, updated_at)
+                    INSERT INTO public.tables_overlay (page_id, key, tier, rows, updated_at, version)
                     VALUES
                 """);
         for (int i = 0; i < pageIds.size(); i++) {
             if (i > 0)
                 sb.append(',');
-            sb.append("(?,?,?,CAST(? AS jsonb), now())");
+            sb.append("(?,?,?,CAST(? AS jsonb), now(), nextval('public.overlay_version_seq'))");
         }
         sb.append("""
                     ON CONFLICT (page_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
+                    RETURNING page_id, tier
                 """);
 
         final String sql = sb.toString();
-        return Jpa.tx(em -> {
+        List<Object[]> changed = Jpa.tx(em -> {
+            lockVersions(em);
             Query q = em.createNativeQuery(sql);
             int p = 1;
             for (int i = 0; i < pageIds.size(); i++) {
@@ -46,33 +69,44 @@ public class OverlayDaoBatch {
                 q.setParameter(p++, tiers.get(i));
                 q.setParameter(p++, jsons.get(i));
             }
-            return q.executeUpdate();
+            return (List<Object[]>) q.getResultList();
         });
+
+        for (Object[] r : changed)
+            OverlayEvents.mainChanged(((Number) r[0]).intValue(), (String) r[1]);
+        return changed.size();
     }
 
-    /** Returns affected rows (inserted + updated). */
+    /**
+     * Returns affected rows (inserted + updated).
+     * Every changed row gets the next overlay_version_seq value (change feed).
+     * Changed (detail_feature_id, key, tier) rows are published via OverlayEvents
+     * after commit.
+     */
     public static int batchUpsertDetail(List<DetailWrite> batch) {
         if (batch == null || batch.isEmpty())
             return 0;
 
         final StringBuilder sb = new StringBuilder(256 + batch.size() * 40);
         sb.append("""
-                    INSERT INTO public.detail_tables_overlay (detail_feature_id, key, tier, rows, updated_at)
+                    INSERT INTO public.detail_tables_overlay (detail_feature_id, key, tier, rows, updated_at, version)
                     VALUES
                 """);
         for (int i = 0; i < batch.size(); i++) {
             if (i > 0)
                 sb.append(',');
-            sb.append("(?,?,?,CAST(? AS jsonb), now())");
+            sb.append("(?,?,?,CAST(? AS jsonb), now(), nextval('public.overlay_version_seq'))");
         }
         sb.append("""
                     ON CONFLICT (detail_feature_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.detail_tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
+                    RETURNING detail_feature_id, key, tier
                 """);
 
         final String sql = sb.toString();
-        return Jpa.tx(em -> {
+        List<Object[]> changed = Jpa.tx(em -> {
+            lockVersions(em);
             Query q = em.createNativeQuery(sql);
             int p = 1;
             for (DetailWrite w : batch) {
@@ -81,7 +115,11 @@ public class OverlayDaoBatch {
                 q.setParameter(p++, w.tier());
                 q.setParameter(p++, w.json());
             }
-            return q.executeUpdate();
+            return (List<Object[]>) q.getResultList();
         });
+
+        for (Object[] r : changed)
+            OverlayEvents.detailChanged(((Number) r[0]).longValue(), (String) r[1], (String) r[2]);
+        return changed.size();
     }
 }
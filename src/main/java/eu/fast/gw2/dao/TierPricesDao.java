@@ -1,5 +1,8 @@
 package eu.fast.gw2.dao;
 
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -79,19 +82,35 @@ public class TierPricesDao {
      * - Writes 10m/60m only when the ID is in the respective due set (else
      * leaves columns as-is).
      * - Writes activity_last/activity_ts for all rows.
+     * - Compares against the rows as they were before the statement (same
+     * snapshot), so no extra round trip is needed to find what moved.
      * 
-     * @return number of rows inserted/updated (size of input map).
+     * @return per tier, the item ids whose buy/sell for that tier changed
+     *         (new rows count as changed).
      */
-    public static int upsertMulti(Map<Integer, int[]> prices,
+    public static Map<Tier, Set<Integer>> upsertMulti(Map<Integer, int[]> prices,
             Set<Integer> due10,
             Set<Integer> due60,
             Map<Integer, Integer> activity) {
 
+        Map<Tier, Set<Integer>> changed = new EnumMap<>(Tier.class);
+        for (Tier t : Tier.values())
+            changed.put(t, new HashSet<>());
         if (prices == null || prices.isEmpty())
-            return 0;
+            return changed;
 
         // Build one big INSERT ... VALUES ... ON CONFLICT DO UPDATE
         StringBuilder sb = new StringBuilder(1024 + prices.size() * 64);
+        sb.append("WITH old AS (SELECT item_id, buy_2m, sell_2m, buy_10m, sell_10m, buy_60m, sell_60m")
+                .append(" FROM public.gw2_prices_tiers WHERE item_id IN (");
+        boolean firstId = true;
+        for (Integer id : prices.keySet()) {
+            if (!firstId)
+                sb.append(',');
+            firstId = false;
+            sb.append(id.intValue());
+        }
+        sb.append(")), up AS (\n");
         sb.append("""
                     INSERT INTO public.gw2_prices_tiers (
                         item_id,
@@ -150,10 +169,30 @@ public class TierPricesDao {
                       activity_last = EXCLUDED.activity_last,
                       activity_ts   = EXCLUDED.activity_ts,
                       updated_at    = now()
+                    RETURNING item_id, buy_2m, sell_2m, buy_10m, sell_10m, buy_60m, sell_60m
+                    )
+                    SELECT up.item_id,
+                           (old.item_id IS NULL OR old.buy_2m  IS DISTINCT FROM up.buy_2m
+                                                OR old.sell_2m  IS DISTINCT FROM up.sell_2m),
+                           (old.item_id IS NULL OR old.buy_10m IS DISTINCT FROM up.buy_10m
+                                                OR old.sell_10m IS DISTINCT FROM up.sell_10m),
+                           (old.item_id IS NULL OR old.buy_60m IS DISTINCT FROM up.buy_60m
+                                                OR old.sell_60m IS DISTINCT FROM up.sell_60m)
+                      FROM up
+                      LEFT JOIN old ON old.item_id = up.item_id
                 """);
 
         final String sql = sb.toString();
-        Jpa.txVoid(em -> em.createNativeQuery(sql).executeUpdate());
-        return prices.size();
+        List<Object[]> rows = Jpa.tx(em -> em.createNativeQuery(sql).getResultList());
+        for (Object[] r : rows) {
+            int id = ((Number) r[0]).intValue();
+            if (Boolean.TRUE.equals(r[1]))
+                changed.get(Tier.T2M).add(id);
+            if (Boolean.TRUE.equals(r[2]))
+                changed.get(Tier.T10M).add(id);
+            if (Boolean.TRUE.equals(r[3]))
+                changed.get(Tier.T60M).add(id);
+        }
+        return changed;
     }
 }
@@ -0,0 +1,109 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import at.favre.lib.crypto.bcrypt.BCrypt;
+
+/**
+ * Separate, size-limited executor for BCrypt (cost 12 = tens of ms CPU each).
+ * - BCRYPT_THREADS workers, BCRYPT_QUEUE slots; a full queue rejects at once
+ * - callers wait at most BCRYPT_WAIT_MS, then get Busy (-> 503 + Retry-After)
+ * - keeps login/register floods from eating the CPU overlay GETs need
+ */
+final class CryptoPool {
+
+    private static final int BCRYPT_COST = 12;
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("BCRYPT_THREADS",
+            String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+    private static final int QUEUE = Integer.parseInt(System.getenv().getOrDefault("BCRYPT_QUEUE", "32"));
+    private static final long WAIT_MS = Long.parseLong(System.getenv().getOrDefault("BCRYPT_WAIT_MS", "2000"));
+
+    /** Thrown when the pool is saturated; map to 503. */
+    static final class Busy extends RuntimeException {
+        Busy(String m) {
+            super(m);
+        }
+    }
+
+    private static final ArrayBlockingQueue<Runnable> Q = new ArrayBlockingQueue<>(Math.max(1, QUEUE));
+    private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, Q,
+            r -> {
+                Thread t = new Thread(r, "bcrypt-worker");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    private static final AtomicLong TIMED_OUT = new AtomicLong();
+    private static final AtomicLong WAIT_NS_TOTAL = new AtomicLong();
+    private static final AtomicLong WAIT_NS_MAX = new AtomicLong();
+    private static final AtomicLong STARTED = new AtomicLong();
+
+    static String hash(String password) {
+        return run(() -> BCrypt.withDefaults().hashToString(BCRYPT_COST, password.toCharArray()));
+    }
+
+    static boolean verify(String password, String hash) {
+        return run(() -> BCrypt.verifyer().verify(password.toCharArray(), hash).verified);
+    }
+
+    static Map<String, Object> stats() {
+        long started = STARTED.get();
+        return Map.of(
+                "threads", THREADS,
+                "queued", Q.size(),
+                "active", POOL.getActiveCount(),
+                "submitted", SUBMITTED.get(),
+                "rejected", REJECTED.get(),
+                "timedOut", TIMED_OUT.get(),
+                "avgWaitMs", started == 0 ? 0.0 : WAIT_NS_TOTAL.get() / 1e6 / started,
+                "maxWaitMs", WAIT_NS_MAX.get() / 1e6);
+    }
+
+    // ---------- internals ----------
+
+    private static <T> T run(Callable<T> work) {
+        final long enq = System.nanoTime();
+        Future<T> f;
+        try {
+            f = POOL.submit(() -> {
+                long waited = System.nanoTime() - enq;
+                STARTED.incrementAndGet();
+                WAIT_NS_TOTAL.addAndGet(waited);
+                WAIT_NS_MAX.accumulateAndGet(waited, Math::max);
+                return work.call();
+            });
+        } catch (RejectedExecutionException e) {
+            REJECTED.incrementAndGet();
+            throw new Busy("bcrypt_queue_full");
+        }
+        SUBMITTED.incrementAndGet();
+
+        try {
+            return f.get(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(false); // still queued -> never runs
+            TIMED_OUT.incrementAndGet();
+            throw new Busy("bcrypt_timeout");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Busy("interrupted");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            throw (c instanceof RuntimeException re) ? re : new IllegalStateException(c);
+        }
+    }
+
+    private CryptoPool() {
+    }
+}
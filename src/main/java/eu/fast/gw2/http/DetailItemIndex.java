@@ -0,0 +1,76 @@
+package eu.fast.gw2.http;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Item-level access path for /api/v1/details/{module}/{collection}/{item}.
+ * - one index per (detail_feature_id, collection key, tier): "Key" -> row bytes
+ * - built from a single parse of detail_tables_overlay.rows, then O(1) lookups
+ * - dropped when the overlay writer publishes a change for that collection
+ * - bounded by DETAIL_INDEX_MAX (oldest build evicted first)
+ */
+final class DetailItemIndex {
+
+    private static final long MAX_AGE_MS = Long
+            .parseLong(System.getenv().getOrDefault("OVERLAY_CACHE_MAX_AGE_MS", "900000")); // 15 min
+    private static final int MAX_ENTRIES = Integer
+            .parseInt(System.getenv().getOrDefault("DETAIL_INDEX_MAX", "4096"));
+
+    /** Pre-serialized items of one collection plus the ETag of its overlay version. */
+    record Index(Map<String, byte[]> items, String etag) {
+    }
+
+    private static final GenerationCache<Index> CACHE = new GenerationCache<>(MAX_AGE_MS, MAX_ENTRIES, 0);
+
+    /** Subscribe to overlay writes; idempotent. */
+    static void install() {
+        CACHE.invalidateOnDetailChange(DetailItemIndex::key);
+    }
+
+    /** Cached index or null (counts hit/miss). */
+    static Index get(long fid, String key, String tier) {
+        return CACHE.get(key(fid, key, tier));
+    }
+
+    /** Capture before loading from DB; pass the value back to put(). */
+    static long generation(long fid, String key, String tier) {
+        return CACHE.generation(key(fid, key, tier));
+    }
+
+    /** Splits a rows JSON array into Key -> serialized row (rows without Key are skipped). */
+    static Index build(ObjectMapper m, String rowsJson, String etag) throws java.io.IOException {
+        JsonNode arr = m.readTree(rowsJson);
+        Map<String, byte[]> items = new HashMap<>(Math.max(16, arr.size() * 2));
+        for (JsonNode row : arr) {
+            JsonNode k = row.get("Key");
+            if (k == null || k.isNull())
+                continue;
+            // first match wins, same as the old linear scan
+            items.putIfAbsent(k.asText(), m.writeValueAsBytes(row));
+        }
+        return new Index(Map.copyOf(items), etag);
+    }
+
+    static void put(long fid, String key, String tier, long generation, Index idx) {
+        CACHE.put(key(fid, key, tier), generation, idx);
+    }
+
+    static void invalidate(long fid, String key, String tier) {
+        CACHE.invalidate(key(fid, key, tier));
+    }
+
+    static Map<String, Object> stats() {
+        return CACHE.stats();
+    }
+
+    private static String key(long fid, String key, String tier) {
+        return fid + "|" + tier + "|" + key;
+    }
+
+    private DetailItemIndex() {
+    }
+}
@@ -0,0 +1,101 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded ConcurrentHashMap whose values carry their own expiry.
+ * - expired values are swept at most every SWEEP_EVERY_MS, amortized on writes
+ * - at capacity: sweep first, then drop the half that expires soonest
+ * - used for rate-limit buckets and login / change-password lockouts
+ */
+final class ExpiringMap<V> {
+
+    private static final long SWEEP_EVERY_MS = 30_000L;
+
+    private final ConcurrentHashMap<String, V> map = new ConcurrentHashMap<>();
+    private final int max;
+    private final LongSupplier clock;
+    private final ToLongFunction<V> expiresAt;
+
+    private final AtomicLong lastSweepMs = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param clock     time source that expiresAt() values are compared against
+     * @param expiresAt value -> clock time after which the entry may be dropped
+     */
+    ExpiringMap(int max, LongSupplier clock, ToLongFunction<V> expiresAt) {
+        this.max = Math.max(16, max);
+        this.clock = clock;
+        this.expiresAt = expiresAt;
+    }
+
+    /** Live value or null (expired values read as absent). */
+    V get(String key) {
+        V v = map.get(key);
+        if (v != null && expiresAt.applyAsLong(v) <= clock.getAsLong())
+            return null;
+        return v;
+    }
+
+    V computeIfAbsent(String key, Function<String, V> f) {
+        V v = map.get(key);
+        if (v != null)
+            return v;
+        beforeInsert();
+        return map.computeIfAbsent(key, f);
+    }
+
+    V compute(String key, BiFunction<String, V, V> f) {
+        if (!map.containsKey(key))
+            beforeInsert();
+        return map.compute(key, f);
+    }
+
+    void remove(String key) {
+        map.remove(key);
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    Map<String, Object> stats() {
+        return Map.of("entries", map.size(), "evictions", evictions.get());
+    }
+
+    // ---------- internals ----------
+
+    private void beforeInsert() {
+        long nowMs = System.currentTimeMillis();
+        long last = lastSweepMs.get();
+        if (map.size() >= max || (nowMs - last >= SWEEP_EVERY_MS && lastSweepMs.compareAndSet(last, nowMs)))
+            sweep();
+    }
+
+    private void sweep() {
+        final long now = clock.getAsLong();
+        int before = map.size();
+        map.values().removeIf(v -> expiresAt.applyAsLong(v) <= now);
+
+        if (map.size() >= max) {
+            // still full of live entries: keep the half that expires last
+            long cutoff = map.values().stream().mapToLong(expiresAt).sorted()
+                    .skip(map.size() / 2).findFirst().orElse(Long.MAX_VALUE);
+            map.values().removeIf(v -> expiresAt.applyAsLong(v) < cutoff);
+        }
+        int dropped = before - map.size();
+        if (dropped > 0)
+            evictions.addAndGet(dropped);
+    }
+}
@@ -0,0 +1,164 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.fast.gw2.tools.OverlayEvents;
+
+/**
+ * Generation-guarded cache behind the overlay read paths (OverlayResponseCache,
+ * DetailItemIndex, OverlayRowIndex).
+ * - an entry is served while its key's generation is unchanged and it is
+ * younger than maxAgeMs (safety net for writes from other processes)
+ * - loaders capture generation(key) before reading the DB and pass it to
+ * put(), so a slow loader cannot re-insert what an invalidation made stale
+ * - a key holds its value ("" variant) plus at most maxVariants other variants
+ * (e.g. ?fields= projections); invalidate() drops all of them
+ * - at most maxKeys keys (0 = unbounded), oldest build evicted first
+ */
+final class GenerationCache<V> {
+
+    /** Cache key of a main overlay change. */
+    @FunctionalInterface
+    interface MainKey {
+        String of(int pageId, String tier);
+    }
+
+    /** Cache key of a detail overlay change. */
+    @FunctionalInterface
+    interface DetailKey {
+        String of(long fid, String key, String tier);
+    }
+
+    private static final String MAIN = "";
+
+    private record Entry<V>(V value, long gen, long builtAtMs) {
+    }
+
+    private final long maxAgeMs;
+    private final int maxKeys;
+    private final int maxVariants;
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Entry<V>>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> gens = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile OverlayEvents.Listener listener;
+
+    GenerationCache(long maxAgeMs, int maxKeys, int maxVariants) {
+        this.maxAgeMs = maxAgeMs;
+        this.maxKeys = maxKeys;
+        this.maxVariants = Math.max(0, maxVariants);
+    }
+
+    /** Drop keyOf(pageId, tier) whenever the overlay writer publishes a main change; idempotent. */
+    synchronized void invalidateOnMainChange(MainKey keyOf) {
+        if (listener == null)
+            listener = new OverlayEvents.Listener() {
+                @Override
+                public void mainChanged(int pageId, String tier) {
+                    invalidate(keyOf.of(pageId, tier));
+                }
+            };
+        OverlayEvents.addListener(listener);
+    }
+
+    /** Drop keyOf(fid, key, tier) whenever the overlay writer publishes a detail change; idempotent. */
+    synchronized void invalidateOnDetailChange(DetailKey keyOf) {
+        if (listener == null)
+            listener = new OverlayEvents.Listener() {
+                @Override
+                public void detailChanged(long fid, String key, String tier) {
+                    invalidate(keyOf.of(fid, key, tier));
+                }
+            };
+        OverlayEvents.addListener(listener);
+    }
+
+    /** Cached value or null (counts hit/miss). */
+    V get(String k) {
+        return get(k, null);
+    }
+
+    /** Cached variant (null = the value itself) or null (counts hit/miss). */
+    V get(String k, String variant) {
+        var slots = entries.get(k);
+        Entry<V> e = slots == null ? null : slots.get(variant == null ? MAIN : variant);
+        if (e != null && e.gen == generation(k) && System.currentTimeMillis() - e.builtAtMs < maxAgeMs) {
+            hits.incrementAndGet();
+            return e.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Capture before loading from DB; pass the value back to put().
+     * Read-only: keys are only created by invalidate(), so lookups of unknown
+     * keys never grow the generation map.
+     */
+    long generation(String k) {
+        AtomicLong g = gens.get(k);
+        return g == null ? 0L : g.get();
+    }
+
+    void put(String k, long generation, V value) {
+        put(k, null, generation, value);
+    }
+
+    void put(String k, String variant, long generation, V value) {
+        if (value == null)
+            return;
+        if (generation != generation(k))
+            return; // invalidated while loading; next request rebuilds
+        String v = variant == null ? MAIN : variant;
+        if (maxKeys > 0 && entries.size() >= maxKeys && !entries.containsKey(k))
+            evictOldest();
+        var slots = entries.computeIfAbsent(k, x -> new ConcurrentHashMap<>());
+        if (!slots.containsKey(v) && slots.size() > maxVariants)
+            return; // value + maxVariants variants already cached; the rest are served uncached
+        slots.put(v, new Entry<>(value, generation, System.currentTimeMillis()));
+        if (generation != generation(k))
+            entries.remove(k, slots); // lost a race with invalidate(); don't keep the stale map
+        rebuilds.incrementAndGet();
+    }
+
+    void invalidate(String k) {
+        gens.computeIfAbsent(k, x -> new AtomicLong()).incrementAndGet();
+        entries.remove(k);
+        invalidations.incrementAndGet();
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "entries", entries.values().stream().mapToInt(Map::size).sum(),
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "rebuilds", rebuilds.get(),
+                "invalidations", invalidations.get(),
+                "evictions", evictions.get());
+    }
+
+    // ---------- internals ----------
+
+    private void evictOldest() {
+        String oldest = null;
+        long oldestMs = Long.MAX_VALUE;
+        for (var e : entries.entrySet()) {
+            for (Entry<V> x : e.getValue().values()) {
+                if (x.builtAtMs < oldestMs) {
+                    oldestMs = x.builtAtMs;
+                    oldest = e.getKey();
+                }
+            }
+        }
+        if (oldest != null && entries.remove(oldest) != null)
+            evictions.incrementAndGet();
+    }
+}
@@ -1,31 +1,24 @@
 package eu.fast.gw2.http;
 
-import java.time.LocalDateTime;
 // added imports for overlay handlers
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
-import org.postgresql.util.PGobject;
-
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import at.favre.lib.crypto.bcrypt.BCrypt;
-import eu.fast.gw2.model.Role;
-import eu.fast.gw2.model.User;
 import eu.fast.gw2.tools.Jpa;
+import eu.fast.gw2.tools.Metrics;
+import eu.fast.gw2.tools.OverlayCache;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import io.javalin.json.JavalinJackson;
-import jakarta.persistence.EntityManager;
 
 public final class HttpApi {
     private static Javalin app;
 
     private static final String FRONTEND_BASE = "https://fast.farming-community.eu";
-    private static final int BCRYPT_COST = 12;
 
     // Password policy: ≥12, upper, lower, digit, special
     private static final Pattern PASS_POLICY = Pattern.compile(
@@ -74,42 +67,6 @@ public final class HttpApi {
         return ALLOWED_ORIGINS.contains(normalizeOrigin(originHeader));
     }
 
-    // ---- Simple token-bucket rate limiter ----
-    private static final class RateLimiter {
-        private static final class Bucket {
-            double tokens;
-            long lastNs;
-        }
-
-        private final double capacity, refillPerSec;
-        private final java.util.concurrent.ConcurrentHashMap<String, Bucket> buckets = new java.util.concurrent.ConcurrentHashMap<>();
-
-        RateLimiter(double capacity, double refillPerSec) {
-            this.capacity = capacity;
-            this.refillPerSec = refillPerSec;
-        }
-
-        boolean allow(String key) {
-            final long now = System.nanoTime();
-            Bucket b = buckets.computeIfAbsent(key, k -> {
-                Bucket nb = new Bucket();
-                nb.tokens = capacity;
-                nb.lastNs = now;
-                return nb;
-            });
-            synchronized (b) {
-                double add = ((now - b.lastNs) / 1_000_000_000.0) * refillPerSec;
-                b.tokens = Math.min(capacity, b.tokens + add);
-                b.lastNs = now;
-                if (b.tokens >= 1.0) {
-                    b.tokens -= 1.0;
-                    return true;
-                }
-                return false;
-            }
-        }
-    }
-
     // Trust proxy X-Forwarded-For? (true on Uberspace)
     private static String clientIp(io.javalin.http.Context ctx) {
         boolean trust = Boolean.parseBoolean(System.getenv().getOrDefault("TRUST_PROXY", "true"));
@@ -121,22 +78,107 @@ public final class HttpApi {
         return ctx.req().getRemoteAddr();
     }
 
-    // Per-IP buckets (tune as needed)
-    private static final RateLimiter RL_AUTH = new RateLimiter(10, 10.0 / 60.0); // 10 requests / minute
-    private static final RateLimiter RL_API = new RateLimiter(120, 120.0 / 60.0); // 120 requests / minute
+    /** Matched route template (bounded label set); "unmatched" for 404s. */
+    private static String routeLabel(Context ctx) {
+        try {
+            String p = ctx.endpointHandlerPath();
+            return p == null || p.isEmpty() ? "unmatched" : p;
+        } catch (RuntimeException e) {
+            return "unmatched";
+        }
+    }
+
+    // Per-IP buckets (tune as needed); key count bounded, idle buckets evicted
+    private static final int RL_MAX_KEYS = Integer.parseInt(System.getenv().getOrDefault("RL_MAX_KEYS", "100000"));
+    private static final RateLimiter RL_AUTH = new RateLimiter(10, 10.0 / 60.0, RL_MAX_KEYS); // 10 requests / minute
+    private static final RateLimiter RL_API = new RateLimiter(120, 120.0 / 60.0, RL_MAX_KEYS); // 120 requests / minute
+
+    // Storage behind the handlers: Postgres, or API_STORE=memory seeded from API_FIXTURES (load tests)
+    private static OverlayReadStore overlays;
+    private static UserStore users;
+
+    // Concurrent cache misses for the same key share one DB load + parse
+    private static final SingleFlight<String, OverlayResponseCache.Cached> PAGE_LOADS = new SingleFlight<>("page");
+    private static final SingleFlight<String, DetailItemIndex.Index> DETAIL_LOADS = new SingleFlight<>("detail");
+    private static final SingleFlight<String, OverlayRowIndex.Rows> ROW_LOADS = new SingleFlight<>("rowIndex");
 
     public static void start() {
         if (app != null)
             return;
+        if ("memory".equalsIgnoreCase(System.getenv().getOrDefault("API_STORE", "jpa"))) {
+            String fixtures = System.getenv("API_FIXTURES");
+            if (fixtures == null || fixtures.isBlank())
+                throw new IllegalStateException("API_STORE=memory needs API_FIXTURES");
+            try {
+                startInMemory(java.nio.file.Path.of(fixtures));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return;
+        }
+        start(new JpaOverlayStore(), new JpaUserStore());
+    }
+
+    /** Embedded instance on fixture data instead of Postgres (load tests); format: see MemoryStore. */
+    public static void startInMemory(java.nio.file.Path fixtures) throws java.io.IOException {
+        if (app != null)
+            return;
+        MemoryStore mem = MemoryStore.load(M, fixtures);
+        start(mem, mem);
+    }
+
+    private static synchronized void start(OverlayReadStore overlayStore, UserStore userStore) {
+        if (app != null)
+            return;
+        overlays = overlayStore;
+        users = userStore;
 
         final String bind = System.getenv().getOrDefault("API_BIND", "127.0.0.1");
         final int port = Integer.parseInt(System.getenv().getOrDefault("API_PORT", "4010"));
 
+        // opt-in: handlers on virtual threads (DB concurrency is still capped by Jpa's limiter)
+        final boolean virtualThreads = Boolean.parseBoolean(System.getenv().getOrDefault("API_VIRTUAL_THREADS", "false"));
+
         app = Javalin.create(cfg -> {
             cfg.jetty.defaultHost = bind;
+            cfg.useVirtualThreads = virtualThreads;
             cfg.jsonMapper(new JavalinJackson());
+            // per-route latency + status class for /metrics (SSE streams excluded: duration = connection lifetime)
+            cfg.requestLogger.http((ctx, ms) -> {
+                String route = routeLabel(ctx);
+                if (route.startsWith("/api/v1/events/"))
+                    return;
+                String method = ctx.method().toString();
+                Metrics.histogram("http_request_seconds", "HTTP handler latency by route",
+                        "method", method, "route", route).recordNanos((long) (ms * 1_000_000.0));
+                Metrics.counter("http_responses_total", "HTTP responses by route and status class",
+                        "method", method, "route", route, "status", (ctx.statusCode() / 100) + "xx").inc();
+            });
         });
 
+        Metrics.counter("rate_limit_rejected_total", "Requests rejected by the per-IP rate limiter",
+                RL_AUTH::rejected, "limiter", "auth");
+        Metrics.counter("rate_limit_rejected_total", "Requests rejected by the per-IP rate limiter",
+                RL_API::rejected, "limiter", "api");
+        Metrics.counter("singleflight_joined_total", "Cache misses served by another request's in-flight load",
+                PAGE_LOADS::joined, "load", "page");
+        Metrics.counter("singleflight_joined_total", "Cache misses served by another request's in-flight load",
+                DETAIL_LOADS::joined, "load", "detail");
+        Metrics.counter("singleflight_joined_total", "Cache misses served by another request's in-flight load",
+                ROW_LOADS::joined, "load", "rowIndex");
+
+        // drop cached overlay bodies / item indexes when the writer publishes new rows
+        OverlayResponseCache.install();
+        DetailItemIndex.install();
+        OverlayRowIndex.install();
+        // role changes since token issue (tier resolution without a per-request user lookup)
+        if (users.shared())
+            RoleCache.install();
+        // slug -> id routing without a catalog query per request
+        RouteTable.install(overlays);
+        // SSE "page changed" fan-out, fed by the same overlay write events
+        OverlayPush.install();
+
         // CORS (manual, strict allow-list)
         app.before(ctx -> {
             String origin = ctx.header("Origin");
@@ -172,18 +214,49 @@ public final class HttpApi {
             if (path.startsWith("/auth/")) {
                 if (!RL_AUTH.allow(ip)) {
                     ctx.status(429).header("Retry-After", "5").json(java.util.Map.of("error", "rate_limited"));
+                    ctx.skipRemainingHandlers();
                     return;
                 }
             } else if (path.startsWith("/api/v1/")) {
                 if (!RL_API.allow(ip)) {
                     ctx.status(429).header("Retry-After", "1").json(java.util.Map.of("error", "rate_limited"));
+                    ctx.skipRemainingHandlers();
                     return;
                 }
             }
         });
 
+        // DB admission class of this request: overlay reads first, auth last (cache hits never ask).
+        // Registered after the rate limiter: its skipRemainingHandlers() also drops after-handlers,
+        // so a rejected request must never have opened a scope.
+        app.before(ctx -> Jpa.beginRequest(ctx.path().startsWith("/auth/") ? Jpa.Priority.LOW : Jpa.Priority.HIGH));
+        app.after(ctx -> Jpa.endRequest());
+
+        // BCrypt pool saturated: fail fast instead of queueing on request threads
+        app.exception(CryptoPool.Busy.class, (e, ctx) -> ctx.status(503).header("Retry-After", "2")
+                .json(Map.of("error", "busy", "why", e.getMessage())));
+
+        // DB admission shed the request (queueing over budget): fail fast instead of hanging
+        app.exception(Jpa.Saturated.class, (e, ctx) -> ctx.status(503)
+                .header("Retry-After", String.valueOf(e.retryAfterSec()))
+                .json(Map.of("error", "busy", "why", "db_saturated")));
+
+        // waited too long on another request's load of the same overlay
+        app.exception(SingleFlight.Timeout.class, (e, ctx) -> ctx.status(503).header("Retry-After", "1")
+                .json(Map.of("error", "busy", "why", "load_timeout")));
+
+        // bad ?fields= value
+        app.exception(JsonProjection.Invalid.class, (e, ctx) -> ctx.status(400)
+                .json(Map.of("error", "invalid_fields", "why", e.getMessage())));
+
+        // bad ?sort / ?filter / ?limit
+        app.exception(RowQuery.Invalid.class, (e, ctx) -> ctx.status(400)
+                .json(Map.of("error", "invalid_query", "why", e.getMessage())));
+
         // Health
         app.get("/healthz", ctx -> ctx.json(Map.of("ok", true)));
+        app.get("/stats", ctx -> ctx.json(stats()));
+        app.get("/metrics", ctx -> ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(Metrics.scrape()));
 
         // ---- AUTH ----
         app.post("/auth/pre-register", HttpApi::preRegister);
@@ -194,21 +267,52 @@ public final class HttpApi {
         app.get("/auth/me", HttpApi::me);
 
         // ---- OVERLAYS (tier-gated, no fallback) ----
+        app.post("/api/v1/batch", HttpApi::postBatch);
+        app.get("/api/v1/changes/{feature}/{page}", HttpApi::getMainOverlayChanges);
+        app.sse("/api/v1/events/{feature}/{page}", HttpApi::overlayEvents);
         app.get("/api/v1/details/{module}/{collection}/{item}", HttpApi::getDetailOverlayItem);
+        app.get("/api/v1/{feature}/{page}/{table}", HttpApi::getMainOverlayTable);
         app.get("/api/v1/{feature}/{page}", HttpApi::getMainOverlay);
 
         app.start(port);
-        System.out.println("HTTP API listening on " + bind + ":" + port);
+        System.out.println("HTTP API listening on " + bind + ":" + port + (virtualThreads ? " (virtual threads)" : ""));
     }
 
     public static void stop() {
         if (app != null) {
             app.stop();
             app = null;
+            RoleCache.shutdown();
+            RouteTable.shutdown();
+            OverlayPush.shutdown();
             System.out.println("HTTP API stopped");
         }
     }
 
+    /** In-process counters of caches, limiters and pools (GET /stats). */
+    private static Map<String, Object> stats() {
+        var out = new java.util.LinkedHashMap<String, Object>();
+        out.put("overlayCache", OverlayResponseCache.stats());
+        out.put("detailIndex", DetailItemIndex.stats());
+        out.put("rowIndex", OverlayRowIndex.stats());
+        out.put("roleCache", RoleCache.stats());
+        out.put("tokenCache", Tokens.stats());
+        out.put("routes", RouteTable.stats());
+        out.put("sse", OverlayPush.stats());
+        out.put("singleFlight", Map.of("page", PAGE_LOADS.stats(), "detail", DETAIL_LOADS.stats(),
+                "rowIndex", ROW_LOADS.stats()));
+        out.put("rateLimitAuth", RL_AUTH.stats());
+        out.put("rateLimitApi", RL_API.stats());
+        out.put("loginLockouts", FAILS.stats());
+        out.put("changePasswordLockouts", CPW_FAILS.stats());
+        out.put("bcrypt", CryptoPool.stats());
+        out.put("overlayRunCache", OverlayCache.stats());
+        var db = new java.util.LinkedHashMap<String, Object>(Jpa.admission());
+        db.put("saturated", Jpa.saturated());
+        out.put("db", db);
+        return out;
+    }
+
     // ---------- Handlers ----------
 
     // body: { "email": "user@example.com" }
@@ -222,28 +326,7 @@ public final class HttpApi {
 
         String token = UUID.randomUUID().toString();
 
-        boolean alreadyVerified = Jpa.tx(em -> {
-            User existing = findByEmail(em, email);
-            if (existing != null && Boolean.TRUE.equals(existing.verified)) {
-                return true; // already registered
-            }
-            if (existing == null) {
-                existing = new User();
-                existing.email = email;
-                existing.insertedAt = LocalDateTime.now();
-            }
-            existing.password = null; // not set yet
-            existing.token = token;
-            existing.verified = false;
-            existing.updatedAt = LocalDateTime.now();
-            existing.role = null; // set on register
-
-            if (existing.id == null)
-                em.persist(existing);
-            else
-                em.merge(existing);
-            return false;
-        });
+        boolean alreadyVerified = !users.startRegistration(email, token);
 
         if (alreadyVerified) {
             ctx.status(409).json(Map.of("success", false, "error", "already_registered"));
@@ -278,28 +361,25 @@ public final class HttpApi {
             return;
         }
 
-        var created = Jpa.tx(em -> {
-            User u = findByEmail(em, email);
-            if (u == null || Boolean.TRUE.equals(u.verified) || u.token == null || !u.token.equals(token)) {
-                throw new BadRequest("invalid_token");
-            }
-            // set role to "soldier" at registration
-            Role soldier = em.getReference(Role.class, "soldier");
-
-            String hash = BCrypt.withDefaults().hashToString(BCRYPT_COST, pass.toCharArray());
+        // cheap token check first so invalid requests never cost a BCrypt hash
+        var pending = users.findByEmail(email);
+        if (pending == null || pending.verified() || pending.token() == null
+                || !pending.token().equals(token)) {
+            ctx.status(400).json(Map.of("error", "invalid_token"));
+            return;
+        }
 
-            u.password = hash;
-            u.token = null;
-            u.verified = true;
-            u.role = soldier;
-            u.updatedAt = LocalDateTime.now();
-            em.merge(u);
+        // hash off the request thread pool and outside the DB transaction
+        String hash = CryptoPool.hash(pass);
 
-            return new SimpleUser(u.id, u.email, u.role == null ? "soldier" : u.role.name);
-        });
+        var created = users.completeRegistration(email, token, hash);
+        if (created == null) { // verified or token replaced meanwhile
+            ctx.status(400).json(Map.of("error", "invalid_token"));
+            return;
+        }
 
         // Issue tokens
-        var tokens = Tokens.issue(created.email(), created.role());
+        var tokens = Tokens.issue(created.email(), created.role() == null ? "soldier" : created.role());
 
         ctx.json(Map.of(
                 "access", tokens.access(),
@@ -309,10 +389,26 @@ public final class HttpApi {
     private static final int MAX_ATTEMPTS = 5;
     private static final long LOCK_MS = 15 * 60 * 1000L; // 15 min
 
-    // failed login attempts: key=email, value=info
-    private static final java.util.concurrent.ConcurrentHashMap<String, FailedLogin> FAILS = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final int LOCKOUT_MAX_KEYS = Integer
+            .parseInt(System.getenv().getOrDefault("LOCKOUT_MAX_KEYS", "100000"));
+
+    // failed login attempts: key=email, value=info (forgotten LOCK_MS after the last fail / lock end)
+    private static final ExpiringMap<FailedLogin> FAILS = new ExpiringMap<>(LOCKOUT_MAX_KEYS,
+            System::currentTimeMillis, FailedLogin::expiresAt);
+
+    private record FailedLogin(int attempts, long lockedUntil, long lastFailMs) {
+        long expiresAt() {
+            return Math.max(lockedUntil, lastFailMs + LOCK_MS);
+        }
 
-    private record FailedLogin(int attempts, long lockedUntil) {
+        static FailedLogin next(FailedLogin prev, long now) {
+            if (prev == null || prev.expiresAt() <= now)
+                return new FailedLogin(1, 0, now);
+            int next = prev.attempts + 1;
+            if (next >= MAX_ATTEMPTS)
+                return new FailedLogin(next, now + LOCK_MS, now);
+            return new FailedLogin(next, 0, now);
+        }
     }
 
     private static void login(Context ctx) {
@@ -334,15 +430,14 @@ public final class HttpApi {
         }
 
         // Verify user
-        var user = Jpa.tx(em -> findByEmail(em, email));
-        if (user == null || !Boolean.TRUE.equals(user.verified) || user.password == null) {
+        var user = users.findByEmail(email);
+        if (user == null || !user.verified() || user.password() == null) {
             registerFail(email);
             ctx.status(401).json(Map.of("error", "invalid_credentials"));
             return;
         }
 
-        var result = at.favre.lib.crypto.bcrypt.BCrypt.verifyer().verify(pass.toCharArray(), user.password);
-        if (!result.verified) {
+        if (!CryptoPool.verify(pass, user.password())) {
             registerFail(email);
             ctx.status(401).json(Map.of("error", "invalid_credentials"));
             return;
@@ -351,22 +446,14 @@ public final class HttpApi {
         // success: reset fails
         FAILS.remove(email);
 
-        var role = (user.role == null ? "soldier" : user.role.name);
+        var role = (user.role() == null ? "soldier" : user.role());
         var tokens = Tokens.issue(email, role);
         ctx.json(Map.of("access", tokens.access(), "refresh", tokens.refresh()));
     }
 
     private static void registerFail(String email) {
         long now = System.currentTimeMillis();
-        FAILS.compute(email, (k, v) -> {
-            if (v == null)
-                return new FailedLogin(1, 0);
-            int next = v.attempts + 1;
-            if (next >= MAX_ATTEMPTS) {
-                return new FailedLogin(next, now + LOCK_MS);
-            }
-            return new FailedLogin(next, 0);
-        });
+        FAILS.compute(email, (k, v) -> FailedLogin.next(v, now));
     }
 
     private static void refresh(Context ctx) {
@@ -383,19 +470,20 @@ public final class HttpApi {
         }
 
         // fetch user to get current role
-        var user = Jpa.tx(em -> findByEmail(em, email));
-        if (user == null || !Boolean.TRUE.equals(user.verified)) {
+        var user = users.findByEmail(email);
+        if (user == null || !user.verified()) {
             ctx.status(401).json(Map.of("error", "user_not_found"));
             return;
         }
 
-        var role = (user.role == null ? "soldier" : user.role.name);
+        var role = (user.role() == null ? "soldier" : user.role());
         var pair = Tokens.issue(email, role);
         ctx.json(Map.of("access", pair.access()));
     }
 
     // ---- small lockout for change-password ----
-    private static final java.util.concurrent.ConcurrentHashMap<String, FailedLogin> CPW_FAILS = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final ExpiringMap<FailedLogin> CPW_FAILS = new ExpiringMap<>(LOCKOUT_MAX_KEYS,
+            System::currentTimeMillis, FailedLogin::expiresAt);
 
     private static void changePassword(Context ctx) {
         // Must be authenticated (access token)
@@ -441,36 +529,20 @@ public final class HttpApi {
             return;
         }
 
-        var ok = Jpa.tx(em -> {
-            User u = findByEmail(em, email);
-            if (u == null || u.password == null)
-                return false;
+        // read hash, run BCrypt outside the transaction, then write only if unchanged
+        var current = users.findByEmail(email);
+        String currentHash = current == null ? null : current.password();
 
-            var verified = at.favre.lib.crypto.bcrypt.BCrypt.verifyer()
-                    .verify(oldPw.toCharArray(), u.password).verified;
-            if (!verified)
-                return false;
-
-            String newHash = at.favre.lib.crypto.bcrypt.BCrypt.withDefaults()
-                    .hashToString(BCRYPT_COST, newPw.toCharArray());
-
-            u.password = newHash;
-            u.updatedAt = java.time.LocalDateTime.now();
-            em.merge(u);
-            return true;
-        });
+        boolean ok = currentHash != null && CryptoPool.verify(oldPw, currentHash);
+        if (ok) {
+            String newHash = CryptoPool.hash(newPw);
+            ok = users.changePassword(email, currentHash, newHash); // false if changed concurrently
+        }
 
         if (!ok) {
             // count a failed attempt on wrong old password
             long now = System.currentTimeMillis();
-            CPW_FAILS.compute(email, (k, v) -> {
-                if (v == null)
-                    return new FailedLogin(1, 0);
-                int next = v.attempts() + 1;
-                if (next >= MAX_ATTEMPTS)
-                    return new FailedLogin(next, now + LOCK_MS);
-                return new FailedLogin(next, 0);
-            });
+            CPW_FAILS.compute(email, (k, v) -> FailedLogin.next(v, now));
             ctx.status(403).json(Map.of("error", "invalid_old_password"));
             return;
         }
@@ -498,17 +570,17 @@ public final class HttpApi {
             return;
         }
 
-        var user = Jpa.tx(em -> findByEmail(em, email));
+        var user = users.findByEmail(email);
         if (user == null) {
             ctx.status(401).json(Map.of("error", "user_not_found"));
             return;
         }
 
-        var role = (user.role == null ? "soldier" : user.role.name);
+        var role = (user.role() == null ? "soldier" : user.role());
         ctx.json(Map.of(
-                "email", user.email,
+                "email", user.email(),
                 "role", role,
-                "verified", user.verified));
+                "verified", user.verified()));
     }
 
     // ---------- Overlay handlers ----------
@@ -517,6 +589,9 @@ public final class HttpApi {
     private static void getMainOverlay(Context ctx) {
         String feature = ctx.pathParam("feature"); // e.g. "open-world"
         String page = ctx.pathParam("page"); // e.g. "alt-parking"
+        String proj = JsonProjection.canonical(ctx.queryParam("fields")); // null = every column
+        RowQuery query = RowQuery.parse(ctx.queryParam("sort"), ctx.queryParam("dir"),
+                ctx.queryParams("filter"), ctx.queryParam("limit")); // null = whole page
         Tier tier = tierForRequest(ctx);
 
         Integer pageId = resolvePageId(feature, page);
@@ -525,19 +600,46 @@ public final class HttpApi {
             return;
         }
 
-        // Fetch ALL tables for this page & tier and concatenate their arrays
-        List<Object> dbVals = Jpa.tx(em -> em.createNativeQuery("""
-                    SELECT rows
-                      FROM public.tables_overlay
-                     WHERE page_id = :pid
-                       AND tier = :t
-                     ORDER BY key ASC
-                """)
-                .setParameter("pid", pageId)
-                .setParameter("t", tier.label())
-                .getResultList());
+        if (query != null) {
+            queryMainOverlay(ctx, tier, pageId, query, proj);
+            return;
+        }
 
-        if (dbVals == null || dbVals.isEmpty()) {
+        // Hot path: pre-serialized body, rebuilt only after the writer changes this page
+        var cached = OverlayResponseCache.get(pageId, tier.label(), proj);
+        if (cached != null) {
+            if (notModified(ctx, tier, cached.etag()))
+                return;
+            ctx.contentType("application/json").result(cached.body());
+            return;
+        }
+        long gen = OverlayResponseCache.generation(pageId, tier.label());
+
+        // Projection miss: derive it from the cached full body when there is one
+        var full = proj == null ? null : OverlayResponseCache.get(pageId, tier.label());
+        if (full != null) {
+            sendProjected(ctx, tier, pageId, gen, full, proj);
+            return;
+        }
+
+        // Revalidation: compare against the overlay version before touching any rows
+        if (ctx.header("If-None-Match") != null) {
+            var ver = overlays.pageVersion(pageId, tier.label());
+            long n = ver.tables();
+            String etag = overlayEtag(tier, n, ver.maxUpdatedMicros());
+            if (n > 0 && notModified(ctx, tier, proj == null ? etag : JsonProjection.etag(etag, proj)))
+                return;
+        }
+
+        OverlayResponseCache.Cached loaded;
+        try {
+            loaded = loadFullPage(pageId, tier, gen);
+        } catch (BadRequest e) {
+            ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+            return;
+        }
+
+        if (loaded == null) {
             ctx.status(404).json(Map.of(
                     "error", "not_found",
                     "why", "overlay_tier_missing",
@@ -545,22 +647,118 @@ public final class HttpApi {
             return;
         }
 
-        try {
-            java.util.ArrayList<java.util.Map<String, Object>> out = new java.util.ArrayList<>(1024);
-            for (Object dv : dbVals) {
-                String rowsJson = asJsonString(dv); // your helper that handles PGobject/String
-                if (rowsJson == null || rowsJson.isBlank())
-                    continue;
-                var arr = M.readValue(rowsJson,
-                        new com.fasterxml.jackson.core.type.TypeReference<java.util.List<java.util.Map<String, Object>>>() {
-                        });
-                if (arr != null && !arr.isEmpty())
-                    out.addAll(arr);
+        if (proj != null) {
+            sendProjected(ctx, tier, pageId, gen, loaded, proj);
+            return;
+        }
+        if (notModified(ctx, tier, loaded.etag()))
+            return;
+        ctx.contentType("application/json").result(loaded.body());
+    }
+
+    /** sort / filter / top-N over the page's typed rows (parsed once per overlay version). */
+    private static void queryMainOverlay(Context ctx, Tier tier, int pageId, RowQuery query, String proj) {
+        var rows = OverlayRowIndex.get(pageId, tier.label());
+        if (rows == null) {
+            long rowsGen = OverlayRowIndex.generation(pageId, tier.label());
+            try {
+                rows = ROW_LOADS.run(pageId + "|" + tier.label() + "|" + rowsGen, () -> {
+                    var full = OverlayResponseCache.get(pageId, tier.label());
+                    if (full == null)
+                        full = loadFullPage(pageId, tier, OverlayResponseCache.generation(pageId, tier.label()));
+                    if (full == null)
+                        return null;
+                    OverlayRowIndex.Rows built;
+                    try {
+                        built = OverlayRowIndex.build(M, full.body(), full.etag());
+                    } catch (java.io.IOException e) {
+                        throw new BadRequest("bad_overlay_json");
+                    }
+                    OverlayRowIndex.put(pageId, tier.label(), rowsGen, built);
+                    return built;
+                });
+            } catch (BadRequest e) {
+                ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+                return;
             }
-            ctx.json(out);
-        } catch (Exception e) {
+            if (rows == null) {
+                ctx.status(404).json(Map.of("error", "not_found", "why", "overlay_tier_missing",
+                        "tier", tier.label()));
+                return;
+            }
+        }
+
+        String badSort = query.unknownSort(rows);
+        if (badSort != null) {
+            ctx.status(400).json(Map.of("error", "bad_sort", "why", badSort));
+            return;
+        }
+        if (notModified(ctx, tier, query.etag(projectedEtag(rows.etag(), proj))))
+            return;
+        byte[] body = query.select(rows, proj == null ? null : JsonProjection.fields(proj));
+        ctx.contentType("application/json").result(body);
+    }
+
+    /**
+     * Cache-miss load of a full page body: one DB read + concat per (page, tier,
+     * generation) however many requests missed at once; the result is cached.
+     * Null when the tier has no rows; BadRequest on a non-array rows value.
+     */
+    private static OverlayResponseCache.Cached loadFullPage(int pageId, Tier tier, long gen) {
+        return PAGE_LOADS.run(pageId + "|" + tier.label() + "|" + gen, () -> {
+            PageBody built = loadPageBody(pageId, tier);
+            if (built == null)
+                return null;
+            String etag = overlayEtag(tier, built.tables(), built.maxUpdatedMicros());
+            OverlayResponseCache.put(pageId, tier.label(), gen, built.body(), etag);
+            return new OverlayResponseCache.Cached(built.body(), etag);
+        });
+    }
+
+    /**
+     * Fetch ALL tables for this page & tier and concatenate their arrays as raw
+     * bytes (no List<Map> / Jackson round trip): [ a-inner , b-inner , ... ].
+     * Null when the tier has no rows; BadRequest on a non-array rows value.
+     */
+    private static PageBody loadPageBody(int pageId, Tier tier) {
+        var tables = overlays.pageTables(pageId, tier.label());
+        if (tables.isEmpty())
+            return null;
+        JsonArrayConcat out = new JsonArrayConcat(64 * 1024);
+        long maxMicros = 0;
+        for (var t : tables) {
+            maxMicros = Math.max(maxMicros, t.updatedMicros());
+            if (!out.append(t.rows()))
+                throw new BadRequest("bad_overlay_json");
+        }
+        return new PageBody(out.finish(), tables.size(), maxMicros);
+    }
+
+    /** Projects a full page body, caches it per (page, tier, projection) and sends it. */
+    private static void sendProjected(Context ctx, Tier tier, int pageId, long gen,
+            OverlayResponseCache.Cached full, String proj) {
+        var p = projectPage(tier, pageId, gen, full, proj);
+        if (p == null) {
             ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+            return;
         }
+        if (notModified(ctx, tier, p.etag()))
+            return;
+        ctx.contentType("application/json").result(p.body());
+    }
+
+    private static OverlayResponseCache.Cached projectPage(Tier tier, int pageId, long gen,
+            OverlayResponseCache.Cached full, String proj) {
+        byte[] body = JsonProjection.project(full.body(), JsonProjection.fields(proj));
+        if (body == null)
+            return null;
+        String etag = JsonProjection.etag(full.etag(), proj);
+        OverlayResponseCache.put(pageId, tier.label(), proj, gen, body, etag);
+        return new OverlayResponseCache.Cached(body, etag);
+    }
+
+    /** Concatenated main overlay body plus the version inputs for its ETag. */
+    private record PageBody(byte[] body, int tables, long maxUpdatedMicros) {
     }
 
     // DETAIL ITEM: /api/v1/details/:module/:collection/:item
@@ -570,7 +768,8 @@ public final class HttpApi {
         String module = ctx.pathParam("module"); // e.g. "farming-details"
         String collection = ctx.pathParam("collection"); // e.g. "bava-nisos-farmtrain"
         String itemKey = ctx.pathParam("item"); // e.g. "bouncy-chest-event-bava-nisos"
-        String moduleBase = module.endsWith("-details") ? module.substring(0, module.length() - 8) : module;
+        String proj = JsonProjection.canonical(ctx.queryParam("fields"));
+        String moduleBase = moduleBase(module);
 
         Tier tier = tierForRequest(ctx);
 
@@ -580,67 +779,455 @@ public final class HttpApi {
             return;
         }
 
-        String rows = Jpa.tx(em -> {
-            java.util.List<Object> rs = em.createNativeQuery("""
-                        SELECT rows
-                          FROM public.detail_tables_overlay
-                         WHERE detail_feature_id = :dfid
-                           AND key = :k
-                           AND tier = :t
-                         LIMIT 1
-                    """)
-                    .setParameter("dfid", dfId)
-                    .setParameter("k", collection)
-                    .setParameter("t", tier.label())
-                    .getResultList();
-            if (rs.isEmpty())
+        // Hot path: per-collection item index (one parse per overlay version)
+        var idx = DetailItemIndex.get(dfId, collection, tier.label());
+        if (idx == null) {
+            long gen = DetailItemIndex.generation(dfId, collection, tier.label());
+            // no revalidation shortcut before the index: a missing item must be a 404, never a 304
+            try {
+                idx = loadDetailIndex(dfId, collection, tier, gen);
+            } catch (BadRequest e) {
+                ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+                return;
+            }
+            if (idx == null) {
+                ctx.status(404).json(Map.of("error", "not_found", "why", "overlay_tier_missing", "tier", tier.label()));
+                return;
+            }
+        }
+
+        byte[] item = idx.items().get(itemKey);
+        if (item == null) {
+            ctx.status(404).json(Map.of("error", "not_found", "why", "item", "key", itemKey));
+            return;
+        }
+        if (notModified(ctx, tier, projectedEtag(idx.etag(), proj)))
+            return;
+        if (proj != null)
+            item = JsonProjection.project(item, JsonProjection.fields(proj));
+        ctx.contentType("application/json").result(item);
+    }
+
+    /**
+     * Cache-miss load of a detail collection's item index: one DB read + parse per
+     * (detail feature, collection, tier, generation); the result is cached.
+     * Null when the tier has no row; BadRequest when rows is not valid JSON.
+     */
+    private static DetailItemIndex.Index loadDetailIndex(long dfId, String collection, Tier tier, long gen) {
+        return DETAIL_LOADS.run(dfId + "|" + collection + "|" + tier.label() + "|" + gen, () -> {
+            var found = overlays.detailTable(dfId, collection, tier.label());
+            if (found == null)
                 return null;
-            return asJsonString(rs.get(0));
+
+            // rows is a JSON array; index it by "Key" once for every later item view
+            DetailItemIndex.Index idx;
+            try {
+                idx = DetailItemIndex.build(M, new String(found.rows(), java.nio.charset.StandardCharsets.UTF_8),
+                        overlayEtag(tier, 1, found.updatedMicros()));
+            } catch (Exception e) {
+                throw new BadRequest("bad_overlay_json");
+            }
+            DetailItemIndex.put(dfId, collection, tier.label(), gen, idx);
+            return idx;
         });
+    }
 
-        if (rows == null) {
+    // SINGLE TABLE: /api/v1/:feature/:page/:table (one table of a page, not the concatenation)
+    private static void getMainOverlayTable(Context ctx) {
+        String feature = ctx.pathParam("feature");
+        String page = ctx.pathParam("page");
+        String table = ctx.pathParam("table"); // tables_overlay.key
+        String proj = JsonProjection.canonical(ctx.queryParam("fields"));
+        Tier tier = tierForRequest(ctx);
+
+        Integer pageId = resolvePageId(feature, page);
+        if (pageId == null) {
+            ctx.status(404).json(Map.of("error", "not_found", "why", "page"));
+            return;
+        }
+
+        var res = overlays.batch(tier.label(), List.of(), List.of(pageId), List.of(table), List.of(), List.of());
+        if (res.main().isEmpty()) {
             ctx.status(404).json(Map.of("error", "not_found", "why", "overlay_tier_missing", "tier", tier.label()));
             return;
         }
+        var row = res.main().get(0);
+        byte[] body = proj == null ? compactArray(row.rows())
+                : JsonProjection.project(row.rows(), JsonProjection.fields(proj));
+        if (body == null) {
+            ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+            return;
+        }
+        if (notModified(ctx, tier, projectedEtag(overlayEtag(tier, 1, row.updatedMicros()), proj)))
+            return;
+        ctx.contentType("application/json").result(body);
+    }
 
-        // rows is a JSON array; return the single element with "Key" == itemKey
+    // CHANGE FEED: /api/v1/changes/:feature/:page?since=N
+    // -> 204 when no table of the page changed after version N, else
+    // { "tier", "version": newest, "tables": { key: [...] } } with only the changed tables
+    private static void getMainOverlayChanges(Context ctx) {
+        String feature = ctx.pathParam("feature");
+        String page = ctx.pathParam("page");
+        long since;
         try {
-            List<Map<String, Object>> arr = M.readValue(rows, new TypeReference<List<Map<String, Object>>>() {
-            });
-            for (Map<String, Object> obj : arr) {
-                Object k = obj.get("Key");
-                if (k != null && itemKey.equals(k.toString())) {
-                    ctx.json(obj);
-                    return;
-                }
-            }
-            ctx.status(404).json(Map.of("error", "not_found", "why", "item", "key", itemKey));
-        } catch (Exception e) {
+            String s = ctx.queryParam("since");
+            since = s == null || s.isBlank() ? 0L : Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            ctx.status(400).json(Map.of("error", "invalid_since"));
+            return;
+        }
+        Tier tier = tierForRequest(ctx);
+
+        Integer pageId = resolvePageId(feature, page);
+        if (pageId == null) {
+            ctx.status(404).json(Map.of("error", "not_found", "why", "page"));
+            return;
+        }
+
+        byte[] body;
+        try {
+            body = changesBody(tier, overlays.pageTablesSince(pageId, tier.label(), since), since);
+        } catch (BadRequest e) {
             ctx.status(500).json(Map.of("error", "bad_overlay_json"));
+            return;
         }
+
+        // the answer depends on `since` and the next recompute only
+        ctx.header("Cache-Control", "private, no-cache");
+        if (body == null) {
+            ctx.status(204);
+            return;
+        }
+        ctx.contentType("application/json").result(body);
     }
 
-    // ---------- Helpers & models ----------
+    /** { "tier", "version": newest, "tables": { key: [...] } }; null when nothing is newer than since. */
+    private static byte[] changesBody(Tier tier, List<OverlayReadStore.Table> changed, long since) {
+        if (changed.isEmpty())
+            return null;
+        try {
+            var tables = new java.io.ByteArrayOutputStream(16 * 1024);
+            boolean first = true;
+            long version = since;
+            for (var t : changed) {
+                byte[] b = compactArray(t.rows());
+                if (b == null)
+                    throw new BadRequest("bad_overlay_json");
+                first = writeMember(tables, first, t.key(), b);
+                version = Math.max(version, t.version());
+            }
+            var out = new java.io.ByteArrayOutputStream(tables.size() + 64);
+            out.write(("{\"tier\":\"" + tier.label() + "\",\"version\":" + version + ",\"tables\":{")
+                    .getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            tables.writeTo(out);
+            out.write("}}".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            return out.toByteArray();
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
 
-    private record PreRegisterReq(String email) {
+    // SSE: /api/v1/events/:feature/:page
+    // "ready" once, then "overlay" {feature, page, tier} whenever the caller's tier
+    // of the page was rewritten with different rows; refetch (or revalidate) on it
+    private static void overlayEvents(io.javalin.http.sse.SseClient client) {
+        Context ctx = client.ctx();
+        String feature = ctx.pathParam("feature");
+        String page = ctx.pathParam("page");
+        Tier tier = tierForRequest(ctx); // fixed for the life of the stream
+
+        Integer pageId = resolvePageId(feature, page);
+        if (pageId == null) {
+            client.sendEvent("error", "{\"error\":\"not_found\",\"why\":\"page\"}");
+            client.close();
+            return;
+        }
+        if (!OverlayPush.subscribe(client, pageId, tier.label(), feature, page)) {
+            client.sendEvent("error", "{\"error\":\"busy\",\"why\":\"sse_subscribers\"}");
+            client.close();
+        }
     }
 
-    private record RegisterReq(String email, String password, String password_confirmation, String token) {
+    private static final int BATCH_MAX_REFS = Integer.parseInt(System.getenv().getOrDefault("BATCH_MAX_REFS", "50"));
+
+    // BATCH: POST /api/v1/batch
+    // body: { "pages": [{feature, page}], "tables": [{feature, page, table}],
+    // "details": [{module, collection, item}] }
+    // -> { "tier", "pages": {"f/p": [...]}, "tables": {"f/p/t": [...]},
+    // "details": {"m/c/i": {...}}, "missing": [{ref, why}] }
+    // ?fields= projects every page, table and item like on the single GETs
+    private static void postBatch(Context ctx) {
+        var req = ctx.bodyAsClass(BatchReq.class);
+        List<PageRef> pages = req.pages() == null ? List.of() : req.pages();
+        List<TableRef> tables = req.tables() == null ? List.of() : req.tables();
+        List<DetailRef> details = req.details() == null ? List.of() : req.details();
+        if (pages.size() + tables.size() + details.size() > BATCH_MAX_REFS) {
+            ctx.status(400).json(Map.of("error", "too_many_refs", "max", BATCH_MAX_REFS));
+            return;
+        }
+
+        final String proj = JsonProjection.canonical(ctx.queryParam("fields"));
+
+        // one token verification / tier resolution for every ref
+        final Tier tier = tierForRequest(ctx);
+        final String t = tier.label();
+        final var missing = new java.util.ArrayList<Map<String, String>>();
+
+        // pages: cached bodies as-is, the rest (with their cache generation) from the query
+        final var pageOut = new java.util.LinkedHashMap<String, byte[]>();
+        final var pageRefs = new java.util.LinkedHashMap<String, Integer>();
+        final var pageGens = new java.util.LinkedHashMap<Integer, Long>();
+        for (PageRef p : pages) {
+            String ref = p.feature() + "/" + p.page();
+            Integer pid = p.feature() == null || p.page() == null ? null : resolvePageId(p.feature(), p.page());
+            if (pid == null) {
+                missing.add(Map.of("ref", ref, "why", "page"));
+                continue;
+            }
+            // generation first: an invalidation after it makes whatever we store stale-on-arrival
+            long gen = OverlayResponseCache.generation(pid, t);
+            var cached = OverlayResponseCache.get(pid, t, proj);
+            if (cached == null && proj != null) {
+                var full = OverlayResponseCache.get(pid, t);
+                if (full != null)
+                    cached = projectPage(tier, pid, gen, full, proj);
+            }
+            if (cached != null)
+                pageOut.put(ref, cached.body());
+            else {
+                pageRefs.put(ref, pid);
+                pageGens.putIfAbsent(pid, gen);
+            }
+        }
+
+        // tables: always one row each, matched by page_id|key
+        final var tableRefs = new java.util.LinkedHashMap<String, String>(); // ref -> pid|key
+        final var tablePids = new java.util.LinkedHashSet<Integer>();
+        final var tableKeys = new java.util.LinkedHashSet<String>();
+        for (TableRef tr : tables) {
+            String ref = tr.feature() + "/" + tr.page() + "/" + tr.table();
+            Integer pid = tr.feature() == null || tr.page() == null || tr.table() == null ? null
+                    : resolvePageId(tr.feature(), tr.page());
+            if (pid == null) {
+                missing.add(Map.of("ref", ref, "why", "page"));
+                continue;
+            }
+            tableRefs.put(ref, pid + "|" + tr.table());
+            tablePids.add(pid);
+            tableKeys.add(tr.table());
+        }
+
+        // details: item index per collection; only uncached collections are queried
+        final var detailRefs = new java.util.LinkedHashMap<String, DetailRef>();
+        final var detailRefIdx = new java.util.HashMap<String, String>(); // ref -> dfid|collection
+        final var detailIdx = new java.util.HashMap<String, DetailItemIndex.Index>(); // dfid|collection
+        final var detailGens = new java.util.HashMap<String, Long>();
+        final var detailIds = new java.util.LinkedHashSet<Long>();
+        final var detailKeys = new java.util.LinkedHashSet<String>();
+        for (DetailRef d : details) {
+            String ref = d.module() + "/" + d.collection() + "/" + d.item();
+            Long dfId = d.module() == null || d.collection() == null || d.item() == null ? null
+                    : resolveDetailFeatureId(moduleBase(d.module()));
+            if (dfId == null) {
+                missing.add(Map.of("ref", ref, "why", "detail_feature"));
+                continue;
+            }
+            String k = dfId + "|" + d.collection();
+            detailRefs.put(ref, d);
+            detailRefIdx.put(ref, k);
+            if (detailIdx.containsKey(k) || detailGens.containsKey(k))
+                continue;
+            long gen = DetailItemIndex.generation(dfId, d.collection(), t);
+            var idx = DetailItemIndex.get(dfId, d.collection(), t);
+            if (idx != null)
+                detailIdx.put(k, idx);
+            else {
+                detailGens.put(k, gen);
+                detailIds.add(dfId);
+                detailKeys.add(d.collection());
+            }
+        }
+
+        // one statement for every uncached page, every table and every uncached collection
+        var res = overlays.batch(t, pageGens.keySet(), tablePids, tableKeys, detailIds, detailKeys);
+        final var tableWanted = new java.util.HashSet<>(tableRefs.values());
+
+        final var pageBuilt = new java.util.HashMap<Integer, byte[]>();
+        final var tableBodies = new java.util.HashMap<String, byte[]>();
+        JsonArrayConcat acc = null;
+        int accTables = 0;
+        long accMicros = 0;
+        int accPid = -1;
+        boolean accBad = false;
+        for (var row : res.main()) { // ordered by page_id, key: same order as getMainOverlay
+            int pid = (int) row.id();
+            if (tableWanted.contains(pid + "|" + row.key())) {
+                byte[] b = proj == null ? compactArray(row.rows())
+                        : JsonProjection.project(row.rows(), JsonProjection.fields(proj));
+                if (b != null)
+                    tableBodies.put(pid + "|" + row.key(), b);
+            }
+            if (!pageGens.containsKey(pid))
+                continue;
+            if (pid != accPid) {
+                finishBatchPage(tier, accPid, acc, accTables, accMicros, accBad, pageGens, proj, pageBuilt);
+                acc = new JsonArrayConcat(64 * 1024);
+                accPid = pid;
+                accTables = 0;
+                accMicros = 0;
+                accBad = false;
+            }
+            accTables++;
+            accMicros = Math.max(accMicros, row.updatedMicros());
+            accBad |= !acc.append(row.rows());
+        }
+        finishBatchPage(tier, accPid, acc, accTables, accMicros, accBad, pageGens, proj, pageBuilt);
+
+        for (var row : res.detail()) {
+            String k = row.id() + "|" + row.key();
+            Long gen = detailGens.get(k);
+            if (gen == null)
+                continue; // cross-product extra
+            try {
+                var idx = DetailItemIndex.build(M, new String(row.rows(), java.nio.charset.StandardCharsets.UTF_8),
+                        overlayEtag(tier, 1, row.updatedMicros()));
+                DetailItemIndex.put(row.id(), row.key(), t, gen, idx);
+                detailIdx.put(k, idx);
+            } catch (Exception e) {
+                // reported as missing below
+            }
+        }
+
+        // ---- keyed response, overlay bytes spliced in unparsed ----
+        final var out = new java.io.ByteArrayOutputStream(64 * 1024);
+        try {
+            out.write(("{\"tier\":\"" + t + "\",\"pages\":{").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            boolean first = true;
+            for (String ref : pageOut.keySet()) // cache hits
+                first = writeMember(out, first, ref, pageOut.get(ref));
+            for (var e : pageRefs.entrySet()) {
+                byte[] body = pageBuilt.get(e.getValue());
+                if (body == null)
+                    missing.add(Map.of("ref", e.getKey(), "why", "overlay_tier_missing"));
+                else
+                    first = writeMember(out, first, e.getKey(), body);
+            }
+
+            out.write("},\"tables\":{".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            first = true;
+            for (var e : tableRefs.entrySet()) {
+                byte[] body = tableBodies.get(e.getValue());
+                if (body == null)
+                    missing.add(Map.of("ref", e.getKey(), "why", "overlay_tier_missing"));
+                else
+                    first = writeMember(out, first, e.getKey(), body);
+            }
+
+            out.write("},\"details\":{".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            first = true;
+            for (var e : detailRefs.entrySet()) {
+                var idx = detailIdx.get(detailRefIdx.get(e.getKey()));
+                byte[] item = idx == null ? null : idx.items().get(e.getValue().item());
+                if (item != null && proj != null)
+                    item = JsonProjection.project(item, JsonProjection.fields(proj));
+                if (item == null)
+                    missing.add(Map.of("ref", e.getKey(), "why", idx == null ? "overlay_tier_missing" : "item"));
+                else
+                    first = writeMember(out, first, e.getKey(), item);
+            }
+
+            out.write("},\"missing\":".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            out.write(M.writeValueAsBytes(missing));
+            out.write('}');
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+
+        // per-caller composite: never shared
+        ctx.header("Cache-Control", "private, no-store");
+        ctx.contentType("application/json").result(out.toByteArray());
+    }
+
+    /** Closes one page of the batch scan: cache it (and its projection) like getMainOverlay would. */
+    private static void finishBatchPage(Tier tier, int pid, JsonArrayConcat acc, int tables, long micros, boolean bad,
+            Map<Integer, Long> gens, String proj, Map<Integer, byte[]> built) {
+        if (acc == null || tables == 0 || bad)
+            return;
+        byte[] body = acc.finish();
+        String etag = overlayEtag(tier, tables, micros);
+        long gen = gens.get(pid);
+        OverlayResponseCache.put(pid, tier.label(), gen, body, etag);
+        if (proj != null) {
+            var p = projectPage(tier, pid, gen, new OverlayResponseCache.Cached(body, etag), proj);
+            if (p == null)
+                return;
+            body = p.body();
+        }
+        built.put(pid, body);
+    }
+
+    /** "key":value member of a keyed batch object; returns the new "first" flag. */
+    private static boolean writeMember(java.io.ByteArrayOutputStream out, boolean first, String key, byte[] value)
+            throws java.io.IOException {
+        if (!first)
+            out.write(',');
+        out.write(M.writeValueAsBytes(key));
+        out.write(':');
+        out.write(value);
+        return false;
+    }
+
+    /** Single jsonb array text re-emitted compact; null if it is not an array. */
+    private static byte[] compactArray(byte[] rows) {
+        JsonArrayConcat c = new JsonArrayConcat(rows == null ? 16 : rows.length);
+        return c.append(rows) ? c.finish() : null;
+    }
+
+    // ---------- Conditional GET helpers ----------
+
+    private static String projectedEtag(String etag, String proj) {
+        return proj == null ? etag : JsonProjection.etag(etag, proj);
+    }
+
+    /** Strong ETag from overlay version: tier + table count + newest updated_at (µs). */
+    private static String overlayEtag(Tier tier, long tables, long maxUpdatedMicros) {
+        return "\"" + tier.label() + "-" + tables + "-" + Long.toString(maxUpdatedMicros, 36) + "\"";
+    }
+
+    /**
+     * Sets ETag / Cache-Control / Vary; answers 304 (and returns true) when
+     * If-None-Match matches.
+     */
+    private static boolean notModified(Context ctx, Tier tier, String etag) {
+        ctx.header("ETag", etag);
+        // anonymous callers all see the 60m overlay -> shareable; bearer responses stay private
+        boolean anon = ctx.header("Authorization") == null;
+        ctx.header("Cache-Control", (anon ? "public" : "private") + ", max-age=" + tier.maxAgeSec()
+                + ", must-revalidate");
+        ctx.header("Vary", "Origin, Authorization");
+
+        String inm = ctx.header("If-None-Match");
+        if (inm == null || inm.isBlank())
+            return false;
+        for (String tag : inm.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/"))
+                t = t.substring(2);
+            if (t.equals("*") || t.equals(etag)) {
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
     }
 
-    private record SimpleUser(Long id, String email, String role) {
+    // ---------- Helpers & models ----------
+
+    private record PreRegisterReq(String email) {
     }
 
-    private static User findByEmail(EntityManager em, String email) {
-        return em.createQuery("""
-                    SELECT u FROM User u
-                    LEFT JOIN FETCH u.role
-                    WHERE u.email = :email
-                """, User.class)
-                .setParameter("email", email)
-                .getResultStream()
-                .findFirst()
-                .orElse(null);
+    private record RegisterReq(String email, String password, String password_confirmation, String token) {
     }
 
     private static String norm(String s) {
@@ -668,8 +1255,25 @@ public final class HttpApi {
     private record RefreshReq(String token) {
     }
 
+    private record BatchReq(List<PageRef> pages, List<TableRef> tables, List<DetailRef> details) {
+    }
+
+    private record PageRef(String feature, String page) {
+    }
+
+    private record TableRef(String feature, String page, String table) {
+    }
+
+    private record DetailRef(String module, String collection, String item) {
+    }
+
     // ===== Overlay helpers =====
 
+    private static final long RUN_LATENCY_SEC = Long
+            .parseLong(System.getenv().getOrDefault("OVERLAY_RUN_LATENCY_SEC", "30"));
+    private static final long REVALIDATE_SEC = Long
+            .parseLong(System.getenv().getOrDefault("OVERLAY_REVALIDATE_SEC", "5"));
+
     private enum Tier {
         T2M, T10M, T60M;
 
@@ -681,6 +1285,34 @@ public final class HttpApi {
             };
         }
 
+        /** Recompute cadence of this tier's prices. */
+        long periodSec() {
+            return switch (this) {
+                case T2M -> 120;
+                case T10M -> 600;
+                default -> 3600;
+            };
+        }
+
+        /** Seconds until the next wall-clock aligned recompute tick (min 1). */
+        long secondsToNextTick() {
+            long now = System.currentTimeMillis() / 1000;
+            return Math.max(1, periodSec() - (now % periodSec()));
+        }
+
+        /**
+         * Cache-Control max-age: until the next tick, except right after a tick
+         * (OVERLAY_RUN_LATENCY_SEC, capped at half the period) while the run may
+         * still be writing; then only OVERLAY_REVALIDATE_SEC, so a revalidation
+         * that still got the old version does not pin it for a whole period.
+         */
+        long maxAgeSec() {
+            long sinceTick = (System.currentTimeMillis() / 1000) % periodSec();
+            if (sinceTick < Math.min(RUN_LATENCY_SEC, periodSec() / 2))
+                return REVALIDATE_SEC;
+            return secondsToNextTick();
+        }
+
         static Tier fromRole(String role) {
             if (role == null)
                 return T60M;
@@ -692,65 +1324,39 @@ public final class HttpApi {
         }
     }
 
-    /** Get caller's tier: unauth => 60m; auth => read role from DB and map. */
+    /**
+     * Get caller's tier: unauth => 60m; auth => role claim of the verified token,
+     * unless RoleCache saw a role change after the token was issued.
+     */
     private static Tier tierForRequest(Context ctx) {
         String auth = ctx.header("Authorization");
         if (auth != null && auth.startsWith("Bearer ")) {
-            String email = Tokens.verify(auth.substring(7), false);
-            if (email != null) {
-                var user = Jpa.tx(em -> findByEmail(em, email));
-                if (user != null && Boolean.TRUE.equals(user.verified)) {
-                    String role = (user.role == null ? "soldier" : user.role.name);
-                    return Tier.fromRole(role);
-                }
-            }
+            var claims = Tokens.verifyAccess(auth.substring(7));
+            if (claims != null)
+                return Tier.fromRole(RoleCache.effectiveRole(claims.email(), claims.role(), claims.issuedAtMs()));
         }
         return Tier.T60M;
     }
 
-    /** pages.id by names (feature + page). */
+    /** pages.id by names (feature + page); store lookup only until RouteTable has loaded. */
     private static Integer resolvePageId(String feature, String page) {
-        return Jpa.tx(em -> {
-            java.util.List<Object> rows = em.createNativeQuery("""
-                        SELECT p.id
-                          FROM public.pages p
-                          JOIN public.features f ON f.id = p.feature_id
-                         WHERE f.name = :f AND p.name = :p
-                         LIMIT 1
-                    """)
-                    .setParameter("f", feature)
-                    .setParameter("p", page)
-                    .getResultList();
-            if (rows.isEmpty())
-                return null;
-            return ((Number) rows.get(0)).intValue();
-        });
+        if (RouteTable.loaded())
+            return RouteTable.pageId(feature, page);
+        return overlays.pageId(feature, page);
     }
 
-    /** detail_features.id by name (module base without '-details'). */
+    /**
+     * detail_features.id by name (module base without '-details'); store lookup only until
+     * RouteTable has loaded.
+     */
     private static Long resolveDetailFeatureId(String moduleBase) {
-        return Jpa.tx(em -> {
-            java.util.List<Object> rows = em.createNativeQuery("""
-                        SELECT id FROM public.detail_features
-                         WHERE name = :n
-                         LIMIT 1
-                    """)
-                    .setParameter("n", moduleBase)
-                    .getResultList();
-            if (rows.isEmpty())
-                return null;
-            return ((Number) rows.get(0)).longValue();
-        });
+        if (RouteTable.loaded())
+            return RouteTable.detailFeatureId(moduleBase);
+        return overlays.detailFeatureId(moduleBase);
     }
 
-    /** Convert DB jsonb to String. */
-    private static String asJsonString(Object dbVal) {
-        if (dbVal == null)
-            return null;
-        if (dbVal instanceof String s)
-            return s;
-        if (dbVal instanceof PGobject pg && "jsonb".equalsIgnoreCase(pg.getType()))
-            return pg.getValue();
-        return String.valueOf(dbVal);
+    /** "farming-details" -> "farming" (detail_features.name). */
+    private static String moduleBase(String module) {
+        return module.endsWith("-details") ? module.substring(0, module.length() - 8) : module;
     }
 }
@@ -0,0 +1,176 @@
+package eu.fast.gw2.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.fast.gw2.tools.Jpa;
+
+/**
+ * Postgres-backed OverlayReadStore: plain JDBC on the Hibernate session,
+ * rows fetched as rows::text bytes (UTF-8 as sent by the server).
+ */
+final class JpaOverlayStore implements OverlayReadStore {
+
+    private static final String CATALOG_VERSION_SQL = """
+                SELECT md5(coalesce(string_agg(x, ',' ORDER BY x), ''))
+                  FROM (
+                        SELECT 'p' || p.id || ':' || f.name || '/' || p.name AS x
+                          FROM public.pages p
+                          JOIN public.features f ON f.id = p.feature_id
+                        UNION ALL
+                        SELECT 'd' || d.id || ':' || d.name
+                          FROM public.detail_features d
+                       ) c
+            """;
+
+    @Override
+    public List<Table> pageTables(int pageId, String tier) {
+        return tables("""
+                    SELECT key, rows::text, (extract(epoch FROM updated_at) * 1000000)::bigint, version
+                      FROM public.tables_overlay
+                     WHERE page_id = ?
+                       AND tier = ?
+                     ORDER BY key ASC
+                """, pageId, tier, null);
+    }
+
+    @Override
+    public Version pageVersion(int pageId, String tier) {
+        Object[] ver = Jpa.tx(em -> (Object[]) em.createNativeQuery("""
+                    SELECT count(*), COALESCE((extract(epoch FROM max(updated_at)) * 1000000)::bigint, 0)
+                      FROM public.tables_overlay
+                     WHERE page_id = :pid
+                       AND tier = :t
+                """)
+                .setParameter("pid", pageId)
+                .setParameter("t", tier)
+                .getSingleResult());
+        return new Version(((Number) ver[0]).longValue(), ((Number) ver[1]).longValue());
+    }
+
+    @Override
+    public List<Table> pageTablesSince(int pageId, String tier, long since) {
+        if (since <= 0) // full snapshot, whatever the version (rows may predate the change feed)
+            return pageTables(pageId, tier);
+        return tables("""
+                    SELECT key, rows::text, (extract(epoch FROM updated_at) * 1000000)::bigint, version
+                      FROM public.tables_overlay
+                     WHERE page_id = ?
+                       AND tier = ?
+                       AND version > ?
+                     ORDER BY key ASC
+                """, pageId, tier, since);
+    }
+
+    @Override
+    public Table detailTable(long detailFeatureId, String key, String tier) {
+        return Jpa.tx(em -> em.unwrap(org.hibernate.Session.class).doReturningWork(conn -> {
+            try (var ps = conn.prepareStatement("""
+                        SELECT key, rows::text, (extract(epoch FROM updated_at) * 1000000)::bigint, version
+                          FROM public.detail_tables_overlay
+                         WHERE detail_feature_id = ?
+                           AND key = ?
+                           AND tier = ?
+                         LIMIT 1
+                    """)) {
+                ps.setLong(1, detailFeatureId);
+                ps.setString(2, key);
+                ps.setString(3, tier);
+                try (var rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getBytes(2) == null)
+                        return null;
+                    return new Table(rs.getString(1), rs.getBytes(2), rs.getLong(3), rs.getLong(4));
+                }
+            }
+        }));
+    }
+
+    @Override
+    public OverlayBatch.Result batch(String tier,
+            Collection<Integer> pageIds,
+            Collection<Integer> tablePageIds, Collection<String> tableKeys,
+            Collection<Long> detailIds, Collection<String> detailKeys) {
+        return OverlayBatch.fetch(tier, pageIds, tablePageIds, tableKeys, detailIds, detailKeys);
+    }
+
+    @Override
+    public Integer pageId(String feature, String page) {
+        return Jpa.tx(em -> {
+            List<?> rows = em.createNativeQuery("""
+                        SELECT p.id
+                          FROM public.pages p
+                          JOIN public.features f ON f.id = p.feature_id
+                         WHERE f.name = :f AND p.name = :p
+                         LIMIT 1
+                    """)
+                    .setParameter("f", feature)
+                    .setParameter("p", page)
+                    .getResultList();
+            return rows.isEmpty() ? null : ((Number) rows.get(0)).intValue();
+        });
+    }
+
+    @Override
+    public Long detailFeatureId(String name) {
+        return Jpa.tx(em -> {
+            List<?> rows = em.createNativeQuery("""
+                        SELECT id FROM public.detail_features
+                         WHERE name = :n
+                         LIMIT 1
+                    """)
+                    .setParameter("n", name)
+                    .getResultList();
+            return rows.isEmpty() ? null : ((Number) rows.get(0)).longValue();
+        });
+    }
+
+    @Override
+    public String catalogVersion() {
+        return Jpa.tx(em -> (String) em.createNativeQuery(CATALOG_VERSION_SQL).getSingleResult());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Catalog catalog() {
+        return Jpa.tx(em -> {
+            List<Object[]> pages = em.createNativeQuery("""
+                        SELECT f.name, p.name, p.id
+                          FROM public.pages p
+                          JOIN public.features f ON f.id = p.feature_id
+                    """).getResultList();
+            List<Object[]> dfs = em.createNativeQuery("""
+                        SELECT name, id FROM public.detail_features
+                    """).getResultList();
+
+            Map<String, Integer> pm = new HashMap<>(pages.size() * 2);
+            for (Object[] r : pages)
+                pm.putIfAbsent(r[0] + "|" + r[1], ((Number) r[2]).intValue());
+            Map<String, Long> dm = new HashMap<>(dfs.size() * 2);
+            for (Object[] r : dfs)
+                dm.putIfAbsent((String) r[0], ((Number) r[1]).longValue());
+            return new Catalog(Map.copyOf(pm), Map.copyOf(dm));
+        });
+    }
+
+    // ---------- internals ----------
+
+    private static List<Table> tables(String sql, int pageId, String tier, Long since) {
+        return Jpa.tx(em -> em.unwrap(org.hibernate.Session.class).doReturningWork(conn -> {
+            try (var ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, pageId);
+                ps.setString(2, tier);
+                if (since != null)
+                    ps.setLong(3, since);
+                try (var rs = ps.executeQuery()) {
+                    List<Table> out = new ArrayList<>();
+                    while (rs.next())
+                        out.add(new Table(rs.getString(1), rs.getBytes(2), rs.getLong(3), rs.getLong(4)));
+                    return out;
+                }
+            }
+        }));
+    }
+}
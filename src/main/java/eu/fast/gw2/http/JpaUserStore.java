@@ -0,0 +1,95 @@
+package eu.fast.gw2.http;
+
+import java.time.LocalDateTime;
+
+import eu.fast.gw2.model.Role;
+import eu.fast.gw2.model.User;
+import eu.fast.gw2.tools.Jpa;
+import jakarta.persistence.EntityManager;
+
+/** Postgres-backed UserStore (public.users through the User entity). */
+final class JpaUserStore implements UserStore {
+
+    @Override
+    public Account findByEmail(String email) {
+        return Jpa.tx(em -> account(find(em, email)));
+    }
+
+    @Override
+    public boolean startRegistration(String email, String token) {
+        return Jpa.tx(em -> {
+            User existing = find(em, email);
+            if (existing != null && Boolean.TRUE.equals(existing.verified))
+                return false; // already registered
+            if (existing == null) {
+                existing = new User();
+                existing.email = email;
+                existing.insertedAt = LocalDateTime.now();
+            }
+            existing.password = null; // not set yet
+            existing.token = token;
+            existing.verified = false;
+            existing.updatedAt = LocalDateTime.now();
+            existing.role = null; // set on register
+
+            if (existing.id == null)
+                em.persist(existing);
+            else
+                em.merge(existing);
+            return true;
+        });
+    }
+
+    @Override
+    public Account completeRegistration(String email, String token, String passwordHash) {
+        return Jpa.tx(em -> {
+            User u = find(em, email);
+            if (u == null || Boolean.TRUE.equals(u.verified) || u.token == null || !u.token.equals(token))
+                return null;
+            // set role to "soldier" at registration
+            Role soldier = em.getReference(Role.class, "soldier");
+
+            u.password = passwordHash;
+            u.token = null;
+            u.verified = true;
+            u.role = soldier;
+            u.updatedAt = LocalDateTime.now();
+            em.merge(u);
+            return new Account(u.id, u.email, u.password, null, true, "soldier");
+        });
+    }
+
+    @Override
+    public boolean changePassword(String email, String expectedHash, String newHash) {
+        return Jpa.tx(em -> {
+            User u = find(em, email);
+            if (u == null || !expectedHash.equals(u.password))
+                return false; // changed concurrently
+            u.password = newHash;
+            u.updatedAt = LocalDateTime.now();
+            em.merge(u);
+            return true;
+        });
+    }
+
+    // ---------- internals ----------
+
+    private static User find(EntityManager em, String email) {
+        return em.createQuery("""
+                    SELECT u FROM User u
+                    LEFT JOIN FETCH u.role
+                    WHERE u.email = :email
+                """, User.class)
+                .setParameter("email", email)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Account account(User u) {
+        if (u == null)
+            return null;
+        return new Account(u.id, u.email, u.password, u.token, Boolean.TRUE.equals(u.verified),
+                u.role == null ? null : u.role.name);
+    }
+}
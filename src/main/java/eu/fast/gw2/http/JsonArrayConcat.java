@@ -0,0 +1,84 @@
+package eu.fast.gw2.http;
+
+import java.util.Arrays;
+
+/**
+ * Concatenates JSON arrays byte-wise without parsing them.
+ * - input is the raw UTF-8 text of a jsonb array (e.g. rs.getBytes on rows::text)
+ * - only the inner elements are copied; whitespace outside strings is dropped,
+ * so the output is as compact as a Jackson re-serialization
+ * - UTF-8 multi-byte sequences never contain ASCII bytes, so scanning bytes for
+ * quotes / backslashes / whitespace is safe
+ */
+final class JsonArrayConcat {
+
+    private byte[] buf;
+    private int len;
+    private boolean first = true;
+
+    JsonArrayConcat(int initialCapacity) {
+        buf = new byte[Math.max(16, initialCapacity)];
+        buf[len++] = '[';
+    }
+
+    /** Appends the elements of one array; null/blank/[] are skipped. False if not an array. */
+    boolean append(byte[] json) {
+        if (json == null)
+            return true;
+        int s = 0, e = json.length - 1;
+        while (s <= e && isWs(json[s]))
+            s++;
+        while (e >= s && isWs(json[e]))
+            e--;
+        if (s > e)
+            return true; // blank
+        if (json[s] != '[' || json[e] != ']')
+            return false;
+
+        ensure(e - s + 1);
+        final int mark = len;
+        if (!first)
+            buf[len++] = ',';
+        final int contentStart = len;
+
+        boolean inStr = false, esc = false;
+        for (int i = s + 1; i < e; i++) {
+            byte b = json[i];
+            if (inStr) {
+                buf[len++] = b;
+                if (esc)
+                    esc = false;
+                else if (b == '\\')
+                    esc = true;
+                else if (b == '"')
+                    inStr = false;
+            } else if (!isWs(b)) {
+                buf[len++] = b;
+                if (b == '"')
+                    inStr = true;
+            }
+        }
+
+        if (len == contentStart) {
+            len = mark; // empty array: undo the separator
+            return true;
+        }
+        first = false;
+        return true;
+    }
+
+    byte[] finish() {
+        ensure(1);
+        buf[len++] = ']';
+        return Arrays.copyOf(buf, len);
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+    }
+
+    private static boolean isWs(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,111 @@
+package eu.fast.gw2.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * ?fields=A,B,C column projection over overlay JSON, token by token.
+ * - input is an array of row objects (page / table body) or one row object
+ * (detail item); only top-level keys of each row are filtered, values are
+ * copied as-is, non-object elements pass through
+ * - no tree is built: parser -> generator, unrequested values are skipped
+ * - canonical() sorts and de-duplicates so equal projections share one cache slot
+ */
+final class JsonProjection {
+
+    private static final int MAX_FIELDS = 64;
+    private static final Pattern FIELD = Pattern.compile("[A-Za-z0-9_]{1,64}");
+    private static final JsonFactory F = new JsonFactory();
+
+    /** Thrown for a malformed fields= value; map to 400. */
+    static final class Invalid extends RuntimeException {
+        Invalid(String m) {
+            super(m);
+        }
+    }
+
+    /** "B, A,B" -> "A,B"; null/blank -> null (no projection). */
+    static String canonical(String fieldsParam) {
+        if (fieldsParam == null || fieldsParam.isBlank())
+            return null;
+        TreeSet<String> out = new TreeSet<>();
+        for (String s : fieldsParam.split(",")) {
+            String f = s.trim();
+            if (f.isEmpty())
+                continue;
+            if (!FIELD.matcher(f).matches())
+                throw new Invalid("invalid_field");
+            out.add(f);
+        }
+        if (out.isEmpty())
+            return null;
+        if (out.size() > MAX_FIELDS)
+            throw new Invalid("too_many_fields");
+        return String.join(",", out);
+    }
+
+    static Set<String> fields(String canonical) {
+        return Set.of(canonical.split(","));
+    }
+
+    /** Strong ETag of the projected representation: full-version ETag + projection hash. */
+    static String etag(String fullEtag, String canonical) {
+        return fullEtag.substring(0, fullEtag.length() - 1) + "-f" + Integer.toHexString(canonical.hashCode()) + "\"";
+    }
+
+    /** Projected copy of body; null if body is not valid JSON. */
+    static byte[] project(byte[] body, Set<String> keep) {
+        if (body == null)
+            return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (JsonParser p = F.createParser(body); JsonGenerator g = F.createGenerator(out)) {
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.START_ARRAY) {
+                g.writeStartArray();
+                while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+                    if (t == null)
+                        return null;
+                    if (t == JsonToken.START_OBJECT)
+                        copyObject(p, g, keep);
+                    else
+                        g.copyCurrentStructure(p);
+                }
+                g.writeEndArray();
+            } else if (t == JsonToken.START_OBJECT) {
+                copyObject(p, g, keep);
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    /** Parser positioned on START_OBJECT; leaves it on the matching END_OBJECT. */
+    private static void copyObject(JsonParser p, JsonGenerator g, Set<String> keep) throws IOException {
+        g.writeStartObject();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            if (keep.contains(name)) {
+                g.writeFieldName(name);
+                g.copyCurrentStructure(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        g.writeEndObject();
+    }
+
+    private JsonProjection() {
+    }
+}
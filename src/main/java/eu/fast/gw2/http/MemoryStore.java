@@ -0,0 +1,244 @@
+package eu.fast.gw2.http;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-memory OverlayReadStore + UserStore seeded from a JSON fixture file, so
+ * the HTTP layer can be load-tested and profiled without Postgres
+ * (API_STORE=memory API_FIXTURES=path/to/fixtures.json).
+ *
+ * <pre>
+ * {
+ *   "pages":   [{ "id": 1, "feature": "open-world", "name": "alt-parking",
+ *                 "tiers": { "60m": { "Main": [ {row}, ... ] }, "2m": { ... } } }],
+ *   "details": [{ "id": 1, "name": "farming",
+ *                 "collections": { "bava-nisos-farmtrain": { "60m": [ {row}, ... ] } } }],
+ *   "users":   [{ "email": "a@b.c", "password": "plain text" | "password_hash": "$2a$...",
+ *                 "role": "tribune", "verified": true }]
+ * }
+ * </pre>
+ *
+ * A tier key of "*" stands for every tier. Overlay data is read-only; users
+ * can register and change passwords like against the real table.
+ */
+final class MemoryStore implements OverlayReadStore, UserStore {
+
+    private static final List<String> TIERS = List.of("2m", "10m", "60m");
+
+    private final Map<String, List<Table>> pages = new HashMap<>(); // pageId|tier, ordered by key
+    private final Map<String, Table> details = new HashMap<>(); // dfid|key|tier
+    private final Catalog catalog;
+    private final String version;
+
+    private final ConcurrentHashMap<String, Account> users = new ConcurrentHashMap<>();
+    private final AtomicLong userIds = new AtomicLong();
+
+    private MemoryStore(Catalog catalog, String version) {
+        this.catalog = catalog;
+        this.version = version;
+    }
+
+    static MemoryStore load(ObjectMapper m, Path fixtures) throws IOException {
+        JsonNode root = m.readTree(Files.readAllBytes(fixtures));
+        final long micros = System.currentTimeMillis() * 1000L;
+        final AtomicLong versions = new AtomicLong();
+
+        Map<String, Integer> pageIds = new HashMap<>();
+        Map<String, Long> detailIds = new HashMap<>();
+        Map<String, List<Table>> pageRows = new HashMap<>();
+        Map<String, Table> detailRows = new HashMap<>();
+
+        for (JsonNode p : root.path("pages")) {
+            int id = p.path("id").asInt();
+            pageIds.put(p.path("feature").asText() + "|" + p.path("name").asText(), id);
+            for (var t : iterable(p.path("tiers").fields())) {
+                for (String tier : tiers(t.getKey())) {
+                    List<Table> tables = pageRows.computeIfAbsent(id + "|" + tier, k -> new ArrayList<>());
+                    for (var table : iterable(t.getValue().fields()))
+                        tables.add(new Table(table.getKey(), m.writeValueAsBytes(table.getValue()), micros,
+                                versions.incrementAndGet()));
+                }
+            }
+        }
+        for (JsonNode d : root.path("details")) {
+            long id = d.path("id").asLong();
+            detailIds.put(d.path("name").asText(), id);
+            for (var c : iterable(d.path("collections").fields()))
+                for (var t : iterable(c.getValue().fields()))
+                    for (String tier : tiers(t.getKey()))
+                        detailRows.put(id + "|" + c.getKey() + "|" + tier, new Table(c.getKey(),
+                                m.writeValueAsBytes(t.getValue()), micros, versions.incrementAndGet()));
+        }
+
+        MemoryStore s = new MemoryStore(new Catalog(Map.copyOf(pageIds), Map.copyOf(detailIds)),
+                "fixtures-" + Long.toString(micros, 36));
+        for (var e : pageRows.entrySet()) {
+            e.getValue().sort(Comparator.comparing(Table::key));
+            s.pages.put(e.getKey(), List.copyOf(e.getValue()));
+        }
+        s.details.putAll(detailRows);
+
+        for (JsonNode u : root.path("users")) {
+            String email = u.path("email").asText().trim().toLowerCase();
+            String hash = u.hasNonNull("password_hash") ? u.get("password_hash").asText()
+                    : u.hasNonNull("password") ? CryptoPool.hash(u.get("password").asText()) : null;
+            s.users.put(email, new Account(s.userIds.incrementAndGet(), email, hash, null,
+                    u.path("verified").asBoolean(true), u.hasNonNull("role") ? u.get("role").asText() : null));
+        }
+
+        System.out.printf("[MemoryStore] %s: %d pages, %d detail collections, %d users%n",
+                fixtures, pageIds.size(), detailRows.size(), s.users.size());
+        return s;
+    }
+
+    // ---------- OverlayReadStore ----------
+
+    @Override
+    public List<Table> pageTables(int pageId, String tier) {
+        return pages.getOrDefault(pageId + "|" + tier, List.of());
+    }
+
+    @Override
+    public Version pageVersion(int pageId, String tier) {
+        List<Table> ts = pageTables(pageId, tier);
+        long max = 0;
+        for (Table t : ts)
+            max = Math.max(max, t.updatedMicros());
+        return new Version(ts.size(), max);
+    }
+
+    @Override
+    public List<Table> pageTablesSince(int pageId, String tier, long since) {
+        if (since <= 0)
+            return pageTables(pageId, tier);
+        List<Table> out = new ArrayList<>();
+        for (Table t : pageTables(pageId, tier))
+            if (t.version() > since)
+                out.add(t);
+        return out;
+    }
+
+    @Override
+    public Table detailTable(long detailFeatureId, String key, String tier) {
+        return details.get(detailFeatureId + "|" + key + "|" + tier);
+    }
+
+    @Override
+    public OverlayBatch.Result batch(String tier,
+            Collection<Integer> pageIds,
+            Collection<Integer> tablePageIds, Collection<String> tableKeys,
+            Collection<Long> detailIds, Collection<String> detailKeys) {
+        // same rows, same order (kind, id, key) as the UNION ALL in OverlayBatch
+        Set<Integer> whole = new HashSet<>(pageIds);
+        Set<String> keys = new HashSet<>(tableKeys);
+        Set<Integer> ids = new java.util.TreeSet<>(whole);
+        ids.addAll(tablePageIds);
+        List<OverlayBatch.Row> main = new ArrayList<>();
+        for (int pid : ids)
+            for (Table t : pageTables(pid, tier))
+                if (whole.contains(pid) || (tablePageIds.contains(pid) && keys.contains(t.key())))
+                    main.add(new OverlayBatch.Row(pid, t.key(), t.rows(), t.updatedMicros()));
+
+        List<OverlayBatch.Row> detail = new ArrayList<>();
+        for (long id : new java.util.TreeSet<>(detailIds))
+            for (String k : new java.util.TreeSet<>(detailKeys)) {
+                Table t = detailTable(id, k, tier);
+                if (t != null)
+                    detail.add(new OverlayBatch.Row(id, k, t.rows(), t.updatedMicros()));
+            }
+        return new OverlayBatch.Result(main, detail);
+    }
+
+    @Override
+    public Integer pageId(String feature, String page) {
+        return catalog.pages().get(feature + "|" + page);
+    }
+
+    @Override
+    public Long detailFeatureId(String name) {
+        return catalog.detailFeatures().get(name);
+    }
+
+    @Override
+    public String catalogVersion() {
+        return version;
+    }
+
+    @Override
+    public Catalog catalog() {
+        return catalog;
+    }
+
+    // ---------- UserStore ----------
+
+    @Override
+    public Account findByEmail(String email) {
+        return email == null ? null : users.get(email);
+    }
+
+    @Override
+    public boolean startRegistration(String email, String token) {
+        boolean[] started = { false };
+        users.compute(email, (k, u) -> {
+            if (u != null && u.verified())
+                return u;
+            started[0] = true;
+            return new Account(u == null ? userIds.incrementAndGet() : u.id(), email, null, token, false, null);
+        });
+        return started[0];
+    }
+
+    @Override
+    public Account completeRegistration(String email, String token, String passwordHash) {
+        Account[] done = { null };
+        users.computeIfPresent(email, (k, u) -> {
+            if (u.verified() || u.token() == null || !u.token().equals(token))
+                return u;
+            done[0] = new Account(u.id(), email, passwordHash, null, true, "soldier");
+            return done[0];
+        });
+        return done[0];
+    }
+
+    @Override
+    public boolean changePassword(String email, String expectedHash, String newHash) {
+        boolean[] changed = { false };
+        users.computeIfPresent(email, (k, u) -> {
+            if (!expectedHash.equals(u.password()))
+                return u;
+            changed[0] = true;
+            return new Account(u.id(), u.email(), newHash, u.token(), u.verified(), u.role());
+        });
+        return changed[0];
+    }
+
+    @Override
+    public boolean shared() {
+        return false;
+    }
+
+    // ---------- internals ----------
+
+    private static List<String> tiers(String key) {
+        return "*".equals(key) ? TIERS : List.of(key);
+    }
+
+    private static <T> Iterable<T> iterable(java.util.Iterator<T> it) {
+        return () -> it;
+    }
+}
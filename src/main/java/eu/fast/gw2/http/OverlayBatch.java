@@ -0,0 +1,70 @@
+package eu.fast.gw2.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import eu.fast.gw2.tools.Jpa;
+
+/**
+ * One round trip for many overlay reads (batch endpoint, single-table GET).
+ * - main rows: whole pages by page_id = ANY(..), single tables by
+ * page_id = ANY(..) AND key = ANY(..) (callers drop cross-product extras)
+ * - detail rows: detail_feature_id = ANY(..) AND key = ANY(..), same rule
+ * - both halves in one UNION ALL statement, rows returned as raw jsonb text
+ */
+final class OverlayBatch {
+
+    /** One overlay row: page_id or detail_feature_id, table key, rows::text bytes, updated_at µs. */
+    record Row(long id, String key, byte[] rows, long updatedMicros) {
+    }
+
+    record Result(List<Row> main, List<Row> detail) {
+    }
+
+    static Result fetch(String tier,
+            Collection<Integer> pageIds,
+            Collection<Integer> tablePageIds, Collection<String> tableKeys,
+            Collection<Long> detailIds, Collection<String> detailKeys) {
+        final List<Row> main = new ArrayList<>();
+        final List<Row> detail = new ArrayList<>();
+        if (pageIds.isEmpty() && tablePageIds.isEmpty() && detailIds.isEmpty())
+            return new Result(main, detail);
+
+        Jpa.txVoid(em -> em.unwrap(org.hibernate.Session.class).doWork(conn -> {
+            try (var ps = conn.prepareStatement("""
+                        SELECT 0, page_id::bigint, key, rows::text,
+                               (extract(epoch FROM updated_at) * 1000000)::bigint
+                          FROM public.tables_overlay
+                         WHERE tier = ?
+                           AND (page_id = ANY(?) OR (page_id = ANY(?) AND key = ANY(?)))
+                        UNION ALL
+                        SELECT 1, detail_feature_id, key, rows::text,
+                               (extract(epoch FROM updated_at) * 1000000)::bigint
+                          FROM public.detail_tables_overlay
+                         WHERE tier = ?
+                           AND detail_feature_id = ANY(?)
+                           AND key = ANY(?)
+                         ORDER BY 1, 2, 3
+                    """)) {
+                ps.setString(1, tier);
+                ps.setArray(2, conn.createArrayOf("integer", pageIds.toArray(new Integer[0])));
+                ps.setArray(3, conn.createArrayOf("integer", tablePageIds.toArray(new Integer[0])));
+                ps.setArray(4, conn.createArrayOf("text", tableKeys.toArray(new String[0])));
+                ps.setString(5, tier);
+                ps.setArray(6, conn.createArrayOf("bigint", detailIds.toArray(new Long[0])));
+                ps.setArray(7, conn.createArrayOf("text", detailKeys.toArray(new String[0])));
+                try (var rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Row r = new Row(rs.getLong(2), rs.getString(3), rs.getBytes(4), rs.getLong(5));
+                        (rs.getInt(1) == 0 ? main : detail).add(r);
+                    }
+                }
+            }
+        }));
+        return new Result(main, detail);
+    }
+
+    private OverlayBatch() {
+    }
+}
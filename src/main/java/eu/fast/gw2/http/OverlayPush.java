@@ -0,0 +1,261 @@
+package eu.fast.gw2.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.fast.gw2.tools.OverlayEvents;
+import io.javalin.http.sse.SseClient;
+
+/**
+ * SSE fan-out of "page changed" notifications, keyed by (pageId, tier).
+ * - one OverlayEvents listener feeds one broadcaster thread; bursts for the
+ * same page within SSE_COALESCE_MS become a single event
+ * - every subscriber has a small bounded queue drained by a virtual thread
+ * only while it has messages; a full queue means the client is not reading,
+ * so it is disconnected instead of buffered
+ * - a comment ping every SSE_PING_MS keeps proxies open and finds dead clients
+ */
+final class OverlayPush {
+
+    private static final int MAX_SUBSCRIBERS = Integer
+            .parseInt(System.getenv().getOrDefault("SSE_MAX_SUBSCRIBERS", "2000"));
+    private static final int QUEUE = Integer.parseInt(System.getenv().getOrDefault("SSE_QUEUE", "16"));
+    private static final long COALESCE_MS = Long.parseLong(System.getenv().getOrDefault("SSE_COALESCE_MS", "250"));
+    private static final long PING_MS = Long.parseLong(System.getenv().getOrDefault("SSE_PING_MS", "25000"));
+
+    /** event == null -> SSE comment. */
+    private record Msg(String event, String data) {
+    }
+
+    private static final class Sub {
+        final SseClient client;
+        final String key;
+        final String data; // {"feature","page","tier"} of every event this subscriber gets
+        final ArrayBlockingQueue<Msg> q = new ArrayBlockingQueue<>(Math.max(2, QUEUE));
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Sub(SseClient client, String key, String data) {
+            this.client = client;
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Set<Sub>> SUBS = new ConcurrentHashMap<>();
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+    private static final LinkedBlockingQueue<String> CHANGED = new LinkedBlockingQueue<>();
+
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicLong BROADCASTS = new AtomicLong();
+
+    private static final OverlayEvents.Listener LISTENER = new OverlayEvents.Listener() {
+        @Override
+        public void mainChanged(int pageId, String tier) {
+            String k = key(pageId, tier);
+            // writer thread: O(1), nothing queued for pages nobody watches
+            if (SUBS.containsKey(k) && PENDING.add(k))
+                CHANGED.offer(k);
+        }
+    };
+
+    private static volatile Thread broadcaster;
+    private static volatile ScheduledExecutorService pinger;
+    private static volatile ExecutorService senders;
+
+    /** Subscribe to overlay writes and start the broadcaster; idempotent. */
+    static synchronized void install() {
+        if (broadcaster != null)
+            return;
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        broadcaster = new Thread(OverlayPush::broadcastLoop, "overlay-sse-broadcaster");
+        broadcaster.setDaemon(true);
+        broadcaster.start();
+        pinger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overlay-sse-ping");
+            t.setDaemon(true);
+            return t;
+        });
+        pinger.scheduleWithFixedDelay(() -> forEachSub(s -> offer(s, new Msg(null, "ping"))),
+                PING_MS, PING_MS, TimeUnit.MILLISECONDS);
+        OverlayEvents.addListener(LISTENER);
+    }
+
+    static synchronized void shutdown() {
+        OverlayEvents.removeListener(LISTENER);
+        if (broadcaster != null) {
+            broadcaster.interrupt();
+            broadcaster = null;
+        }
+        if (pinger != null) {
+            pinger.shutdownNow();
+            pinger = null;
+        }
+        forEachSub(OverlayPush::drop);
+        if (senders != null) {
+            senders.shutdownNow();
+            senders = null;
+        }
+    }
+
+    /**
+     * Registers a keep-alive client for (pageId, tier). False when the
+     * subscriber limit is reached (caller closes the stream).
+     */
+    static boolean subscribe(SseClient client, int pageId, String tier, String feature, String page) {
+        if (COUNT.incrementAndGet() > MAX_SUBSCRIBERS) {
+            COUNT.decrementAndGet();
+            return false;
+        }
+        String data = "{\"feature\":" + quote(feature) + ",\"page\":" + quote(page) + ",\"tier\":\"" + tier + "\"}";
+        Sub s = new Sub(client, key(pageId, tier), data);
+        // add inside compute: remove() may unmap an emptied set concurrently
+        SUBS.compute(s.key, (k, set) -> {
+            if (set == null)
+                set = ConcurrentHashMap.newKeySet();
+            set.add(s);
+            return set;
+        });
+        client.onClose(() -> remove(s));
+        client.keepAlive();
+        offer(s, new Msg("ready", data));
+        return true;
+    }
+
+    static Map<String, Object> stats() {
+        return Map.of(
+                "subscribers", COUNT.get(),
+                "pages", SUBS.size(),
+                "broadcasts", BROADCASTS.get(),
+                "sent", SENT.get(),
+                "dropped", DROPPED.get());
+    }
+
+    // ---------- internals ----------
+
+    private static void broadcastLoop() {
+        final List<String> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(CHANGED.take());
+                Thread.sleep(COALESCE_MS); // let the rest of this write batch arrive
+                CHANGED.drainTo(batch);
+                for (String k : batch) {
+                    PENDING.remove(k);
+                    Set<Sub> subs = SUBS.get(k);
+                    if (subs == null)
+                        continue;
+                    BROADCASTS.incrementAndGet();
+                    for (Sub s : subs)
+                        offer(s, new Msg("overlay", s.data));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Never blocks: a subscriber that cannot take one more message is dropped. */
+    private static void offer(Sub s, Msg m) {
+        if (s.closed)
+            return;
+        if (!s.q.offer(m)) {
+            drop(s);
+            return;
+        }
+        ExecutorService ex = senders;
+        if (ex != null && s.draining.compareAndSet(false, true)) {
+            try {
+                ex.execute(() -> drain(s));
+            } catch (RuntimeException e) {
+                s.draining.set(false);
+            }
+        }
+    }
+
+    /** One drainer per subscriber at a time; writes may block on a slow socket, only this thread waits. */
+    private static void drain(Sub s) {
+        try {
+            while (true) {
+                Msg m;
+                while ((m = s.q.poll()) != null) {
+                    if (s.closed || s.client.terminated()) {
+                        drop(s);
+                        return;
+                    }
+                    if (m.event() == null)
+                        s.client.sendComment(m.data());
+                    else
+                        s.client.sendEvent(m.event(), m.data());
+                    SENT.incrementAndGet();
+                }
+                s.draining.set(false);
+                // re-check: a message may have arrived between poll() and set(false)
+                if (s.q.isEmpty() || !s.draining.compareAndSet(false, true))
+                    return;
+            }
+        } catch (RuntimeException e) {
+            s.draining.set(false);
+            drop(s);
+        }
+    }
+
+    private static void drop(Sub s) {
+        if (!remove(s))
+            return;
+        DROPPED.incrementAndGet();
+        try {
+            s.client.close();
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    /** False if the subscriber was already gone. */
+    private static boolean remove(Sub s) {
+        synchronized (s) {
+            if (s.closed)
+                return false;
+            s.closed = true;
+        }
+        COUNT.decrementAndGet();
+        s.q.clear();
+        SUBS.computeIfPresent(s.key, (k, set) -> {
+            set.remove(s);
+            return set.isEmpty() ? null : set;
+        });
+        return true;
+    }
+
+    private static void forEachSub(java.util.function.Consumer<Sub> f) {
+        for (Set<Sub> subs : SUBS.values())
+            for (Sub s : subs)
+                f.accept(s);
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String key(int pageId, String tier) {
+        return pageId + "|" + tier;
+    }
+
+    private OverlayPush() {
+    }
+}
@@ -0,0 +1,53 @@
+package eu.fast.gw2.http;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the overlay handlers read: tables_overlay, detail_tables_overlay
+ * and the pages / features / detail_features catalog.
+ * - JpaOverlayStore: Postgres (production)
+ * - MemoryStore: JSON fixtures, for load tests and profiling of the HTTP layer
+ * - rows are raw JSON array bytes; callers splice them without re-parsing
+ */
+interface OverlayReadStore {
+
+    /** One overlay table: key, rows (JSON array bytes), updated_at µs, write version. */
+    record Table(String key, byte[] rows, long updatedMicros, long version) {
+    }
+
+    /** Revalidation inputs of a page: table count and newest updated_at µs. */
+    record Version(long tables, long maxUpdatedMicros) {
+    }
+
+    /** Slug routing: "feature|page" -> pages.id, detail feature name -> id. */
+    record Catalog(Map<String, Integer> pages, Map<String, Long> detailFeatures) {
+    }
+
+    /** Every table of (page, tier), ordered by key; empty when the tier has no rows. */
+    List<Table> pageTables(int pageId, String tier);
+
+    Version pageVersion(int pageId, String tier);
+
+    /** Tables of (page, tier) written after version `since`, ordered by key; since &lt;= 0: all of them. */
+    List<Table> pageTablesSince(int pageId, String tier, long since);
+
+    /** One detail collection or null. */
+    Table detailTable(long detailFeatureId, String key, String tier);
+
+    /** Many pages, single tables and detail collections at once (see OverlayBatch). */
+    OverlayBatch.Result batch(String tier,
+            Collection<Integer> pageIds,
+            Collection<Integer> tablePageIds, Collection<String> tableKeys,
+            Collection<Long> detailIds, Collection<String> detailKeys);
+
+    Integer pageId(String feature, String page);
+
+    Long detailFeatureId(String name);
+
+    /** Digest of the catalog; changes whenever catalog() would. */
+    String catalogVersion();
+
+    Catalog catalog();
+}
@@ -0,0 +1,72 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+
+/**
+ * Pre-serialized response bodies for /api/v1/{feature}/{page}, keyed by
+ * (pageId, tier) and ?fields= projection (null = full body).
+ * - entries are dropped when the overlay writer publishes changed rows for the
+ * page (OverlayEvents, same process as RunService); see GenerationCache
+ * - OVERLAY_CACHE_MAX_AGE_MS is a safety net for writes from other processes
+ * - at most OVERLAY_CACHE_MAX_PROJECTIONS projections per (pageId, tier); the
+ * rest are served uncached
+ */
+final class OverlayResponseCache {
+
+    private static final long MAX_AGE_MS = Long
+            .parseLong(System.getenv().getOrDefault("OVERLAY_CACHE_MAX_AGE_MS", "900000")); // 15 min
+    private static final int MAX_PROJECTIONS = Integer
+            .parseInt(System.getenv().getOrDefault("OVERLAY_CACHE_MAX_PROJECTIONS", "16"));
+
+    /** Body bytes plus the strong ETag of the overlay version they were built from. */
+    record Cached(byte[] body, String etag) {
+    }
+
+    // (pageId|tier) -> projection -> body; invalidation drops every projection at once
+    private static final GenerationCache<Cached> CACHE = new GenerationCache<>(MAX_AGE_MS, 0, MAX_PROJECTIONS);
+
+    /** Subscribe to overlay writes; idempotent. */
+    static void install() {
+        CACHE.invalidateOnMainChange(OverlayResponseCache::key);
+    }
+
+    /** Cached full body or null (counts hit/miss). */
+    static Cached get(int pageId, String tier) {
+        return CACHE.get(key(pageId, tier));
+    }
+
+    /** Cached body for a canonical projection (null = full body) or null. */
+    static Cached get(int pageId, String tier, String projection) {
+        return CACHE.get(key(pageId, tier), projection);
+    }
+
+    /** Capture before loading from DB; pass the value back to put(). */
+    static long generation(int pageId, String tier) {
+        return CACHE.generation(key(pageId, tier));
+    }
+
+    static void put(int pageId, String tier, long generation, byte[] body, String etag) {
+        put(pageId, tier, null, generation, body, etag);
+    }
+
+    static void put(int pageId, String tier, String projection, long generation, byte[] body, String etag) {
+        if (body == null)
+            return;
+        CACHE.put(key(pageId, tier), projection, generation, new Cached(body, etag));
+    }
+
+    static void invalidate(int pageId, String tier) {
+        CACHE.invalidate(key(pageId, tier));
+    }
+
+    static Map<String, Object> stats() {
+        return CACHE.stats();
+    }
+
+    private static String key(int pageId, String tier) {
+        return pageId + "|" + tier;
+    }
+
+    private OverlayResponseCache() {
+    }
+}
@@ -0,0 +1,120 @@
+package eu.fast.gw2.http;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Typed, column-wise view of a main overlay page for ?sort / ?filter / ?limit.
+ * - one entry per (pageId, tier), built from a single parse of the page body
+ * - per column: double[] (NaN = absent / not numeric) and String[] (null =
+ * absent); numeric text also fills the double column
+ * - rows keep their serialized bytes, so results are spliced, not re-serialized
+ * - dropped when the overlay writer publishes a change for the page; bounded by
+ * ROW_INDEX_MAX (oldest build evicted first)
+ */
+final class OverlayRowIndex {
+
+    private static final long MAX_AGE_MS = Long
+            .parseLong(System.getenv().getOrDefault("OVERLAY_CACHE_MAX_AGE_MS", "900000")); // 15 min
+    private static final int MAX_ENTRIES = Integer
+            .parseInt(System.getenv().getOrDefault("ROW_INDEX_MAX", "512"));
+
+    /** Rows of one page: raw[i] is the serialized object of row i. */
+    record Rows(byte[][] raw, Map<String, double[]> nums, Map<String, String[]> strs, String etag) {
+        int size() {
+            return raw.length;
+        }
+    }
+
+    private static final GenerationCache<Rows> CACHE = new GenerationCache<>(MAX_AGE_MS, MAX_ENTRIES, 0);
+
+    /** Subscribe to overlay writes; idempotent. */
+    static void install() {
+        CACHE.invalidateOnMainChange(OverlayRowIndex::key);
+    }
+
+    /** Cached rows or null (counts hit/miss). */
+    static Rows get(int pageId, String tier) {
+        return CACHE.get(key(pageId, tier));
+    }
+
+    /** Capture before loading the page body; pass the value back to put(). */
+    static long generation(int pageId, String tier) {
+        return CACHE.generation(key(pageId, tier));
+    }
+
+    /** Parses a page body (JSON array of row objects) once into typed columns. */
+    static Rows build(ObjectMapper m, byte[] body, String etag) throws java.io.IOException {
+        JsonNode arr = m.readTree(body);
+        final int n = arr.size();
+        byte[][] raw = new byte[n][];
+        Map<String, double[]> nums = new HashMap<>();
+        Map<String, String[]> strs = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            JsonNode row = arr.get(i);
+            raw[i] = m.writeValueAsBytes(row);
+            if (!row.isObject())
+                continue;
+            for (var it = row.fields(); it.hasNext();) {
+                var f = it.next();
+                JsonNode v = f.getValue();
+                if (v.isNumber()) {
+                    column(nums, f.getKey(), n)[i] = v.doubleValue();
+                } else if (v.isTextual() || v.isBoolean()) {
+                    String s = v.asText();
+                    strs.computeIfAbsent(f.getKey(), k -> new String[n])[i] = s;
+                    double d = parseNum(s);
+                    if (!Double.isNaN(d))
+                        column(nums, f.getKey(), n)[i] = d;
+                }
+            }
+        }
+        return new Rows(raw, Map.copyOf(nums), Map.copyOf(strs), etag);
+    }
+
+    static void put(int pageId, String tier, long generation, Rows rows) {
+        CACHE.put(key(pageId, tier), generation, rows);
+    }
+
+    static void invalidate(int pageId, String tier) {
+        CACHE.invalidate(key(pageId, tier));
+    }
+
+    static Map<String, Object> stats() {
+        return CACHE.stats();
+    }
+
+    // ---------- internals ----------
+
+    private static double[] column(Map<String, double[]> nums, String name, int n) {
+        return nums.computeIfAbsent(name, k -> {
+            double[] d = new double[n];
+            Arrays.fill(d, Double.NaN);
+            return d;
+        });
+    }
+
+    private static double parseNum(String s) {
+        if (s.isEmpty() || s.length() > 32)
+            return Double.NaN;
+        char c = s.charAt(0);
+        if (c != '-' && c != '.' && (c < '0' || c > '9'))
+            return Double.NaN; // cheap reject for names / rarities
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String key(int pageId, String tier) {
+        return pageId + "|" + tier;
+    }
+
+    private OverlayRowIndex() {
+    }
+}
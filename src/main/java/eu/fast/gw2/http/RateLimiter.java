@@ -0,0 +1,56 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-key token bucket (GCRA form).
+ * - one AtomicLong per key holds the theoretical arrival time (TAT, nanos);
+ * allow iff max(TAT, now) + interval - now <= capacity * interval, CAS-updated
+ * - a bucket whose TAT is in the past is full again, i.e. idle and evictable
+ * without changing behaviour; ExpiringMap bounds the number of keys
+ */
+final class RateLimiter {
+
+    private final long intervalNs; // time to earn one token
+    private final long burstNs; // capacity * interval
+    private final ExpiringMap<AtomicLong> buckets;
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    RateLimiter(double capacity, double refillPerSec, int maxKeys) {
+        this.intervalNs = (long) (1_000_000_000.0 / refillPerSec);
+        this.burstNs = (long) (capacity * intervalNs);
+        this.buckets = new ExpiringMap<>(maxKeys, System::nanoTime, AtomicLong::get);
+    }
+
+    boolean allow(String key) {
+        final long now = System.nanoTime();
+        final AtomicLong tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long cur = tat.get();
+            long next = Math.max(cur, now) + intervalNs;
+            if (next - now > burstNs) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (tat.compareAndSet(cur, next)) {
+                allowed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "buckets", buckets.size(),
+                "evictions", buckets.evictions(),
+                "allowed", allowed.get(),
+                "rejected", rejected.get());
+    }
+}
@@ -0,0 +1,181 @@
+package eu.fast.gw2.http;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.fast.gw2.tools.Jpa;
+
+/**
+ * Role changes that happened after an access token was issued.
+ * - the token's "role" claim is authoritative unless this cache learned of a
+ * newer role for the same email after the token's iat
+ * - fed directly by PatreonSyncService (same process) and by a cheap poll of
+ * users.updated_at (covers RunPatreonSync and manual edits in other processes)
+ * - updated_at = now() is the writer's transaction start, which can commit
+ * after the watermark has passed it: each poll re-reads ROLE_POLL_OVERLAP_MS
+ * (longest expected writer transaction) behind the watermark and skips rows
+ * already applied (same email and updated_at)
+ * - entries older than the access-token lifetime are useless and get dropped;
+ * size is capped by ROLE_CACHE_MAX
+ */
+public final class RoleCache {
+
+    private static final long RETAIN_MS = 1440L * 60_000L; // = access token lifetime
+    private static final int MAX_ENTRIES = Integer
+            .parseInt(System.getenv().getOrDefault("ROLE_CACHE_MAX", "50000"));
+    private static final long POLL_MS = Long
+            .parseLong(System.getenv().getOrDefault("ROLE_POLL_MS", "60000"));
+    private static final long OVERLAP_MS = Long
+            .parseLong(System.getenv().getOrDefault("ROLE_POLL_OVERLAP_MS", "600000"));
+
+    private record Change(String role, long learnedAtMs) {
+    }
+
+    private static final ConcurrentHashMap<String, Change> CHANGES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong OVERRIDES = new AtomicLong();
+    private static final AtomicLong CLAIMS = new AtomicLong();
+    private static final AtomicLong POLLS = new AtomicLong();
+
+    private static volatile ScheduledExecutorService poller;
+    private static volatile Object watermark; // max(users.updated_at) seen, DB clock
+    // email -> updated_at already applied, for rows still inside the overlap window (poller thread only)
+    private static final Map<String, Object> APPLIED = new java.util.HashMap<>();
+
+    /** Start the users.updated_at poller; idempotent. */
+    static synchronized void install() {
+        if (poller != null)
+            return;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "role-cache-poll");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(RoleCache::pollSafe, 0, POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /** Record a role change (email is normalized). Role null = soldier. */
+    public static void roleChanged(String email, String role) {
+        if (email == null)
+            return;
+        String e = email.trim().toLowerCase(Locale.ROOT);
+        if (CHANGES.size() >= MAX_ENTRIES && !CHANGES.containsKey(e))
+            prune(System.currentTimeMillis());
+        CHANGES.put(e, new Change(role == null ? "soldier" : role, System.currentTimeMillis()));
+    }
+
+    /** Forget everything (tokens fall back to their claims). */
+    public static void invalidateAll() {
+        CHANGES.clear();
+    }
+
+    /** Role to use for a verified access token. */
+    static String effectiveRole(String email, String claimRole, long issuedAtMs) {
+        Change c = (email == null) ? null : CHANGES.get(email.toLowerCase(Locale.ROOT));
+        if (c != null && issuedAtMs <= c.learnedAtMs) {
+            OVERRIDES.incrementAndGet();
+            return c.role;
+        }
+        CLAIMS.incrementAndGet();
+        return claimRole == null ? "soldier" : claimRole;
+    }
+
+    static Map<String, Object> stats() {
+        return Map.of(
+                "entries", CHANGES.size(),
+                "fromClaim", CLAIMS.get(),
+                "overridden", OVERRIDES.get(),
+                "polls", POLLS.get());
+    }
+
+    // ---------- internals ----------
+
+    private static void pollSafe() {
+        try {
+            poll();
+        } catch (Exception e) {
+            System.err.println("[RoleCache] poll failed: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void poll() {
+        final Object since = (watermark == null) ? null : minusMillis(watermark, OVERLAP_MS);
+        List<Object[]> rs = Jpa.tx(em -> {
+            // first poll: every change young enough to matter for a live access token
+            var q = (since == null)
+                    ? em.createNativeQuery("""
+                                SELECT lower(u.email), u.role_id, u.updated_at
+                                  FROM public.users u
+                                 WHERE u.updated_at > now() - interval '1440 minutes'
+                            """)
+                    : em.createNativeQuery("""
+                                SELECT lower(u.email), u.role_id, u.updated_at
+                                  FROM public.users u
+                                 WHERE u.updated_at >= :since
+                            """).setParameter("since", since);
+            return (List<Object[]>) q.getResultList();
+        });
+        POLLS.incrementAndGet();
+
+        Object max = watermark;
+        for (Object[] r : rs) {
+            String email = (String) r[0];
+            if (email != null && r[2] != null && r[2].equals(APPLIED.get(email)))
+                continue; // re-read inside the overlap window
+            roleChanged(email, (String) r[1]);
+            if (email != null && r[2] != null)
+                APPLIED.put(email, r[2]);
+            if (r[2] != null && (max == null || compare(r[2], max) > 0))
+                max = r[2];
+        }
+        if (max != null) {
+            watermark = max;
+            Object floor = minusMillis(max, OVERLAP_MS);
+            APPLIED.values().removeIf(t -> compare(t, floor) < 0); // can no longer be re-read
+        }
+        prune(System.currentTimeMillis());
+    }
+
+    /** DB timestamp minus ms, in the type the driver returned it as. */
+    private static Object minusMillis(Object t, long ms) {
+        if (t instanceof java.sql.Timestamp ts)
+            return java.sql.Timestamp.from(ts.toInstant().minusMillis(ms));
+        if (t instanceof java.time.temporal.Temporal tt)
+            return tt.minus(java.time.Duration.ofMillis(ms));
+        if (t instanceof java.util.Date d)
+            return new java.util.Date(d.getTime() - ms);
+        return t;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static void prune(long now) {
+        CHANGES.entrySet().removeIf(e -> now - e.getValue().learnedAtMs > RETAIN_MS);
+        if (CHANGES.size() < MAX_ENTRIES)
+            return;
+        // still full: drop the oldest half
+        long cutoff = CHANGES.values().stream().mapToLong(Change::learnedAtMs).sorted()
+                .skip(CHANGES.size() / 2).findFirst().orElse(now);
+        CHANGES.entrySet().removeIf(e -> e.getValue().learnedAtMs < cutoff);
+    }
+
+    private RoleCache() {
+    }
+}
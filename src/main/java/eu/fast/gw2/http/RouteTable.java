@@ -0,0 +1,106 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable slug routing for overlay requests.
+ * - (feature, page) -> pages.id and detail module base -> detail_features.id
+ * - loaded from the OverlayReadStore at startup, then the catalog digest (md5
+ * of the small catalog on Postgres) is polled every ROUTES_POLL_MS; a changed
+ * digest reloads and swaps the snapshot atomically
+ * - lookups never touch the DB once a snapshot exists
+ */
+final class RouteTable {
+
+    private static final long POLL_MS = Long
+            .parseLong(System.getenv().getOrDefault("ROUTES_POLL_MS", "60000"));
+
+    private record Snapshot(Map<String, Integer> pages, Map<String, Long> detailFeatures, String version) {
+    }
+
+    private static volatile Snapshot current; // null until the first successful load
+    private static volatile ScheduledExecutorService poller;
+    private static volatile OverlayReadStore store;
+
+    private static final AtomicLong RELOADS = new AtomicLong();
+    private static final AtomicLong CHECKS = new AtomicLong();
+
+    /** Load once from the store and start the catalog poller; idempotent. */
+    static synchronized void install(OverlayReadStore from) {
+        if (poller != null)
+            return;
+        store = from;
+        checkSafe();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "route-table-poll");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(RouteTable::checkSafe, POLL_MS, POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    static boolean loaded() {
+        return current != null;
+    }
+
+    /** pages.id or null; only meaningful when loaded(). */
+    static Integer pageId(String feature, String page) {
+        Snapshot s = current;
+        return s == null ? null : s.pages.get(feature + "|" + page);
+    }
+
+    /** detail_features.id or null; only meaningful when loaded(). */
+    static Long detailFeatureId(String moduleBase) {
+        Snapshot s = current;
+        return s == null ? null : s.detailFeatures.get(moduleBase);
+    }
+
+    static Map<String, Object> stats() {
+        Snapshot s = current;
+        return Map.of(
+                "pages", s == null ? 0 : s.pages.size(),
+                "detailFeatures", s == null ? 0 : s.detailFeatures.size(),
+                "checks", CHECKS.get(),
+                "reloads", RELOADS.get());
+    }
+
+    // ---------- internals ----------
+
+    private static void checkSafe() {
+        try {
+            check();
+        } catch (Exception e) {
+            System.err.println("[RouteTable] refresh failed: " + e.getMessage());
+        }
+    }
+
+    private static void check() {
+        CHECKS.incrementAndGet();
+        String version = store.catalogVersion();
+        Snapshot s = current;
+        if (s != null && s.version.equals(version))
+            return;
+
+        var c = store.catalog();
+        Snapshot next = new Snapshot(c.pages(), c.detailFeatures(), version);
+
+        current = next;
+        RELOADS.incrementAndGet();
+        System.out.printf("[RouteTable] loaded %d pages, %d detail features%n",
+                next.pages.size(), next.detailFeatures.size());
+    }
+
+    private RouteTable() {
+    }
+}
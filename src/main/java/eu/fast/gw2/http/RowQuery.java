@@ -0,0 +1,249 @@
+package eu.fast.gw2.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * ?sort=Col&dir=asc|desc&filter=Col:op:value&limit=N over OverlayRowIndex rows.
+ * - ops: eq, ne (number if both sides are numeric, else case-insensitive text),
+ * gt, gte, lt, lte (numbers only), contains (case-insensitive text)
+ * - rows without the sort value go last in either direction; ties keep page order
+ * - a sort column that no row has is rejected (400 bad_sort), not page order
+ * - sort + limit selects with a bounded heap of `limit` rows (no full sort)
+ */
+final class RowQuery {
+
+    private static final int MAX_FILTERS = 16;
+    private static final int MAX_LIMIT = 1000;
+
+    /** Thrown for malformed query parameters; map to 400. */
+    static final class Invalid extends RuntimeException {
+        Invalid(String m) {
+            super(m);
+        }
+    }
+
+    private enum Op {
+        EQ, NE, GT, GTE, LT, LTE, CONTAINS
+    }
+
+    private record Filter(String col, Op op, String text, double num) {
+    }
+
+    private final String sort; // null = page order
+    private final boolean desc;
+    private final List<Filter> filters;
+    private final int limit; // 0 = all
+    private final String canonical;
+
+    private RowQuery(String sort, boolean desc, List<Filter> filters, int limit, String canonical) {
+        this.sort = sort;
+        this.desc = desc;
+        this.filters = filters;
+        this.limit = limit;
+        this.canonical = canonical;
+    }
+
+    /** Null when none of sort / filter / limit is present. */
+    static RowQuery parse(String sort, String dir, List<String> filters, String limit) {
+        boolean hasSort = sort != null && !sort.isBlank();
+        boolean hasLimit = limit != null && !limit.isBlank();
+        if (!hasSort && !hasLimit && (filters == null || filters.isEmpty()))
+            return null;
+
+        boolean desc = true; // "top N by ..." is the common case
+        if (dir != null && !dir.isBlank()) {
+            switch (dir.trim().toLowerCase(Locale.ROOT)) {
+                case "asc" -> desc = false;
+                case "desc" -> desc = true;
+                default -> throw new Invalid("dir");
+            }
+        }
+
+        int lim = 0;
+        if (hasLimit) {
+            try {
+                lim = Integer.parseInt(limit.trim());
+            } catch (NumberFormatException e) {
+                throw new Invalid("limit");
+            }
+            if (lim < 1 || lim > MAX_LIMIT)
+                throw new Invalid("limit");
+        }
+
+        List<Filter> fs = new ArrayList<>();
+        if (filters != null) {
+            if (filters.size() > MAX_FILTERS)
+                throw new Invalid("too_many_filters");
+            for (String f : filters) {
+                String[] p = f.split(":", 3);
+                if (p.length != 3 || p[0].isBlank())
+                    throw new Invalid("filter");
+                Op op;
+                try {
+                    op = Op.valueOf(p[1].trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new Invalid("filter_op");
+                }
+                double num = parseNum(p[2]);
+                if (Double.isNaN(num) && (op == Op.GT || op == Op.GTE || op == Op.LT || op == Op.LTE))
+                    throw new Invalid("filter_value");
+                fs.add(new Filter(p[0].trim(), op, p[2], num));
+            }
+        }
+
+        String s = hasSort ? sort.trim() : null;
+        String canonical = s + "|" + desc + "|" + lim + "|" + String.join("|", filters == null ? List.of() : filters);
+        return new RowQuery(s, desc, List.copyOf(fs), lim, canonical);
+    }
+
+    /** ETag of this query's result over a given page (or projection) version. */
+    String etag(String baseEtag) {
+        return baseEtag.substring(0, baseEtag.length() - 1) + "-q" + Integer.toHexString(canonical.hashCode()) + "\"";
+    }
+
+    /** The sort column when no row of a non-empty page has it, else null (map to 400 bad_sort). */
+    String unknownSort(OverlayRowIndex.Rows rows) {
+        if (sort == null || rows.size() == 0)
+            return null;
+        return rows.nums().containsKey(sort) || rows.strs().containsKey(sort) ? null : sort;
+    }
+
+    /** Selected rows as a JSON array; each row projected to keep when non-null. */
+    byte[] select(OverlayRowIndex.Rows rows, Set<String> keep) {
+        int[] picked = pick(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, picked.length * 256));
+        out.write('[');
+        boolean first = true;
+        for (int i : picked) {
+            byte[] b = keep == null ? rows.raw()[i] : JsonProjection.project(rows.raw()[i], keep);
+            if (b == null)
+                continue;
+            if (!first)
+                out.write(',');
+            out.write(b, 0, b.length);
+            first = false;
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    // ---------- internals ----------
+
+    private int[] pick(OverlayRowIndex.Rows rows) {
+        final int n = rows.size();
+        final RowOrder order = sort == null ? null : new RowOrder(rows, sort, desc);
+
+        if (order == null) {
+            // page order: first `limit` matches
+            int cap = limit == 0 ? n : Math.min(n, limit);
+            int[] out = new int[cap];
+            int k = 0;
+            for (int i = 0; i < n && k < cap; i++)
+                if (matches(rows, i))
+                    out[k++] = i;
+            return Arrays.copyOf(out, k);
+        }
+
+        if (limit == 0) {
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < n; i++)
+                if (matches(rows, i))
+                    all.add(i);
+            all.sort(order);
+            return all.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // top-N: heap holds the best `limit` so far, worst on top
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, Collections.reverseOrder(order));
+        for (int i = 0; i < n; i++) {
+            if (!matches(rows, i))
+                continue;
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (order.compare(i, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        Integer[] best = heap.toArray(new Integer[0]);
+        Arrays.sort(best, order);
+        int[] out = new int[best.length];
+        for (int i = 0; i < best.length; i++)
+            out[i] = best[i];
+        return out;
+    }
+
+    private boolean matches(OverlayRowIndex.Rows rows, int i) {
+        for (Filter f : filters) {
+            double[] nc = rows.nums().get(f.col());
+            String[] sc = rows.strs().get(f.col());
+            double v = nc == null ? Double.NaN : nc[i];
+            String s = sc == null ? null : sc[i];
+            boolean ok = switch (f.op()) {
+                case GT -> v > f.num();
+                case GTE -> v >= f.num();
+                case LT -> v < f.num();
+                case LTE -> v <= f.num();
+                case EQ -> equal(v, s, f);
+                case NE -> !equal(v, s, f);
+                case CONTAINS -> s != null
+                        && s.toLowerCase(Locale.ROOT).contains(f.text().toLowerCase(Locale.ROOT));
+            };
+            if (!ok)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean equal(double v, String s, Filter f) {
+        if (!Double.isNaN(f.num()) && !Double.isNaN(v))
+            return v == f.num();
+        return s != null && s.equalsIgnoreCase(f.text());
+    }
+
+    private static double parseNum(String s) {
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /** Row-index comparator: best first; absent values last; page order on ties. */
+    private static final class RowOrder implements java.util.Comparator<Integer> {
+        private final double[] nums; // numeric column if any row has a number
+        private final String[] strs;
+        private final boolean desc;
+
+        RowOrder(OverlayRowIndex.Rows rows, String col, boolean desc) {
+            this.nums = rows.nums().get(col);
+            this.strs = nums == null ? rows.strs().get(col) : null;
+            this.desc = desc;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            int i = a, j = b;
+            int c;
+            if (nums != null) {
+                boolean ma = Double.isNaN(nums[i]), mb = Double.isNaN(nums[j]);
+                c = ma || mb ? Boolean.compare(ma, mb) : desc ? Double.compare(nums[j], nums[i])
+                        : Double.compare(nums[i], nums[j]);
+            } else if (strs != null) {
+                boolean ma = strs[i] == null, mb = strs[j] == null;
+                c = ma || mb ? Boolean.compare(ma, mb) : desc ? strs[j].compareToIgnoreCase(strs[i])
+                        : strs[i].compareToIgnoreCase(strs[j]);
+            } else {
+                c = 0; // column absent from every row (empty page)
+            }
+            return c != 0 ? c : Integer.compare(i, j);
+        }
+    }
+}
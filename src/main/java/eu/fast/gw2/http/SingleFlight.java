@@ -0,0 +1,101 @@
+package eu.fast.gw2.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent cache-miss loads of the same key into one.
+ * - the first caller for a key runs the loader on its own thread; callers that
+ * arrive while it runs wait for that result instead of loading again
+ * - the loader's exception (Saturated, BadRequest, ...) is rethrown to every
+ * waiter; null results are shared like any other
+ * - waiters give up after SINGLEFLIGHT_WAIT_MS with Timeout (-> 503); the
+ * leader itself is never cut short
+ * - keys should carry the cache generation, so a load started before an
+ * invalidation is never joined by requests that arrive after it
+ */
+final class SingleFlight<K, V> {
+
+    private static final long WAIT_MS = Long
+            .parseLong(System.getenv().getOrDefault("SINGLEFLIGHT_WAIT_MS", "10000"));
+
+    /** Waited longer than SINGLEFLIGHT_WAIT_MS for another caller's load; map to 503. */
+    static final class Timeout extends RuntimeException {
+        Timeout(String m) {
+            super(m);
+        }
+    }
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    SingleFlight(String name) {
+        this.name = name;
+    }
+
+    V run(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inflight.putIfAbsent(key, mine);
+        if (running == null)
+            return lead(key, mine, loader);
+
+        joined.incrementAndGet();
+        try {
+            return running.get(WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.incrementAndGet();
+            throw new Timeout(name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Timeout(name);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof RuntimeException re)
+                throw re;
+            if (c instanceof Error err)
+                throw err;
+            throw new IllegalStateException(c);
+        }
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+                "inflight", inflight.size(),
+                "loads", loads.get(),
+                "joined", joined.get(),
+                "failed", failed.get(),
+                "timedOut", timedOut.get());
+    }
+
+    long joined() {
+        return joined.get();
+    }
+
+    // ---------- internals ----------
+
+    private V lead(K key, CompletableFuture<V> mine, Supplier<V> loader) {
+        loads.incrementAndGet();
+        try {
+            V v = loader.get();
+            mine.complete(v);
+            return v;
+        } catch (RuntimeException | Error e) {
+            failed.incrementAndGet();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+}
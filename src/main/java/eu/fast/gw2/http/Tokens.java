@@ -1,22 +1,52 @@
 package eu.fast.gw2.http;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
 
-final class Tokens {
+public final class Tokens {
     private static final String ISS = "fast-api";
     private static final String SECRET = System.getenv("JWT_SECRET");
     private static final long ACCESS_MIN = 1440;
     private static final long REFRESH_DAYS = 30;
 
-    record Pair(String access, String refresh) {
+    // Algorithm/verifier are immutable + thread-safe: build once (null when JWT_SECRET is missing)
+    private static final Algorithm ALG = (SECRET == null || SECRET.isEmpty()) ? null : Algorithm.HMAC256(SECRET);
+    private static final JWTVerifier VERIFIER = (ALG == null) ? null : JWT.require(ALG).withIssuer(ISS).build();
+
+    // ---- verified-token cache: sha256(token) -> claims, until min(exp, now + TTL) ----
+    private static final long CACHE_TTL_MS = Long
+            .parseLong(System.getenv().getOrDefault("TOKEN_CACHE_TTL_MS", "300000")); // 5 min
+    private static final int CACHE_MAX = Integer
+            .parseInt(System.getenv().getOrDefault("TOKEN_CACHE_MAX", "10000"));
+
+    private record Verified(String email, String role, boolean refresh, long issuedAtMs, long validUntilMs) {
+    }
+
+    private static final ConcurrentHashMap<String, Verified> VERIFIED = new ConcurrentHashMap<>();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    public record Pair(String access, String refresh) {
+    }
+
+    /** Verified access-token claims used for stateless tier resolution. */
+    public record Access(String email, String role, long issuedAtMs) {
     }
 
-    static Pair issue(String email, String role) {
-        var alg = Algorithm.HMAC256(SECRET);
+    public static Pair issue(String email, String role) {
+        if (ALG == null)
+            throw new IllegalStateException("Missing JWT_SECRET");
 
         Instant now = Instant.now();
         Instant expAccess = now.plusSeconds(ACCESS_MIN * 60);
@@ -29,7 +59,7 @@ final class Tokens {
                 .withClaim("role", role)
                 .withIssuedAt(Date.from(now))
                 .withExpiresAt(Date.from(expAccess))
-                .sign(alg);
+                .sign(ALG);
 
         String refresh = JWT.create()
                 .withIssuer(ISS)
@@ -37,27 +67,88 @@ final class Tokens {
                 .withClaim("type", "refresh")
                 .withIssuedAt(Date.from(now))
                 .withExpiresAt(Date.from(expRefresh))
-                .sign(alg);
+                .sign(ALG);
 
         return new Pair(access, refresh);
     }
 
+    /** Verifies an access token and returns its claims, or null. */
+    public static Access verifyAccess(String token) {
+        Verified v = verified(token);
+        if (v == null || v.refresh || v.email == null)
+            return null;
+        return new Access(v.email, v.role, v.issuedAtMs);
+    }
+
     static String verify(String token, boolean refresh) {
-        try {
-            var alg = Algorithm.HMAC256(SECRET);
-            var verifier = JWT.require(alg).withIssuer(ISS).build();
-            var decoded = verifier.verify(token);
-
-            if (refresh) {
-                if (!"refresh".equals(decoded.getClaim("type").asString()))
-                    return null;
-            } else {
-                if ("refresh".equals(decoded.getClaim("type").asString()))
-                    return null;
+        Verified v = verified(token);
+        if (v == null || v.refresh != refresh)
+            return null;
+        return v.email;
+    }
+
+    static Map<String, Object> stats() {
+        return Map.of(
+                "entries", VERIFIED.size(),
+                "hits", HITS.get(),
+                "misses", MISSES.get());
+    }
+
+    // ---------- internals ----------
+
+    private static Verified verified(String token) {
+        if (token == null || token.isEmpty() || VERIFIER == null)
+            return null;
+
+        final long now = System.currentTimeMillis();
+        final String h = sha256(token);
+        Verified v = VERIFIED.get(h);
+        if (v != null) {
+            if (now < v.validUntilMs) {
+                HITS.incrementAndGet();
+                return v;
             }
-            return decoded.getClaim("email").asString();
+            VERIFIED.remove(h, v);
+        }
+        MISSES.incrementAndGet();
+
+        try {
+            DecodedJWT decoded = VERIFIER.verify(token);
+            Date iat = decoded.getIssuedAt();
+            Date exp = decoded.getExpiresAt();
+            long until = now + CACHE_TTL_MS;
+            if (exp != null)
+                until = Math.min(until, exp.getTime());
+
+            String email = decoded.getClaim("email").asString();
+            v = new Verified(
+                    email != null ? email : decoded.getSubject(), // refresh tokens carry sub only
+                    decoded.getClaim("role").asString(),
+                    "refresh".equals(decoded.getClaim("type").asString()),
+                    iat == null ? 0L : iat.getTime(),
+                    until);
         } catch (Exception e) {
-            return null;
+            return null; // failures are never cached
+        }
+
+        if (VERIFIED.size() >= CACHE_MAX)
+            prune(now);
+        VERIFIED.put(h, v);
+        return v;
+    }
+
+    private static void prune(long now) {
+        VERIFIED.values().removeIf(x -> now >= x.validUntilMs);
+        if (VERIFIED.size() >= CACHE_MAX)
+            VERIFIED.clear(); // all live: start over rather than scan for LRU
+    }
+
+    private static String sha256(String s) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(d);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is mandatory on every JRE
         }
     }
 
@@ -0,0 +1,37 @@
+package eu.fast.gw2.http;
+
+/**
+ * Account reads and writes of the auth handlers (public.users).
+ * - JpaUserStore: Postgres (production)
+ * - MemoryStore: JSON fixtures, for load tests
+ * - emails are passed normalized (trimmed, lower case); hashes are BCrypt
+ */
+interface UserStore {
+
+    /** One user; role null = soldier. */
+    record Account(Long id, String email, String password, String token, boolean verified, String role) {
+    }
+
+    Account findByEmail(String email);
+
+    /**
+     * Creates or resets a pending (unverified) account with a confirmation token.
+     * False, and no change, when the email is already verified.
+     */
+    boolean startRegistration(String email, String token);
+
+    /**
+     * Verifies a pending account: sets the password hash, clears the token and
+     * assigns "soldier". Null when the account is missing, already verified or the
+     * token does not match.
+     */
+    Account completeRegistration(String email, String token, String passwordHash);
+
+    /** Swaps the hash only if it is still expectedHash; false otherwise. */
+    boolean changePassword(String email, String expectedHash, String newHash);
+
+    /** True when other processes can change users (RoleCache must poll). */
+    default boolean shared() {
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package eu.fast.gw2.main;
+
+import java.util.Locale;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import eu.fast.gw2.http.Tokens;
+
+/**
+ * Microbenchmark for the per-request auth cost on /api/v1/* and /auth/me.
+ * - before: Algorithm + JWTVerifier rebuilt per call, full HMAC verify
+ * - singleton: one verifier, full HMAC verify per call
+ * - cached: Tokens.verifyAccess (sha256 lookup, verify only on miss)
+ *
+ * JWT_SECRET=... mvn -q -DskipTests -Dexec.mainClass=eu.fast.gw2.main.RunAuthBench exec:java
+ */
+public class RunAuthBench {
+
+    private static final String ISS = "fast-api";
+
+    public static void main(String[] args) {
+        final String secret = System.getenv("JWT_SECRET");
+        if (secret == null || secret.isEmpty()) {
+            System.err.println("RunAuthBench: set JWT_SECRET");
+            System.exit(1);
+        }
+        final int iters = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        final int tokens = args.length > 1 ? Integer.parseInt(args[1]) : 256; // distinct callers
+
+        String[] pool = new String[tokens];
+        for (int i = 0; i < tokens; i++)
+            pool[i] = Tokens.issue("bench" + i + "@example.com", "tribune").access();
+
+        final JWTVerifier shared = JWT.require(Algorithm.HMAC256(secret)).withIssuer(ISS).build();
+
+        // warmup (JIT + fill the cache)
+        for (int i = 0; i < 50_000; i++) {
+            String t = pool[i % tokens];
+            JWT.require(Algorithm.HMAC256(secret)).withIssuer(ISS).build().verify(t);
+            shared.verify(t);
+            Tokens.verifyAccess(t);
+        }
+
+        long sink = 0;
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) {
+            var alg = Algorithm.HMAC256(secret);
+            var verifier = JWT.require(alg).withIssuer(ISS).build();
+            sink += verifier.verify(pool[i % tokens]).getClaim("email").asString().length();
+        }
+        long before = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++)
+            sink += shared.verify(pool[i % tokens]).getClaim("email").asString().length();
+        long singleton = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++)
+            sink += Tokens.verifyAccess(pool[i % tokens]).email().length();
+        long cached = System.nanoTime() - t0;
+
+        System.out.printf(Locale.ROOT, "RunAuthBench: iters=%d tokens=%d (sink=%d)%n", iters, tokens, sink);
+        print("before (rebuild + verify)", before, iters);
+        print("singleton verifier", singleton, iters);
+        print("cached verifyAccess", cached, iters);
+    }
+
+    private static void print(String name, long nanos, int iters) {
+        System.out.printf(Locale.ROOT, "  %-28s %8.0f ns/op  %10.0f ops/s%n",
+                name, nanos / (double) iters, iters / (nanos / 1e9));
+    }
+}
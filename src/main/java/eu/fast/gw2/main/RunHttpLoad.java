@@ -0,0 +1,428 @@
+package eu.fast.gw2.main;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import eu.fast.gw2.http.HttpApi;
+
+/**
+ * Load generator for HttpApi: a weighted mix of overlay reads (anonymous and
+ * per-tier authenticated), detail item reads, logins and refreshes, reported as
+ * JSON (throughput, p50/p90/p99/p999 per op and overall) so runs can be
+ * diffed between commits.
+ *
+ * Arrivals:
+ * - LOAD_MODE=open (default): Poisson arrivals at LOAD_RPS whatever the
+ * server's speed; latency counts from the scheduled send time, so queueing
+ * shows up instead of slowing the generator down. Arrivals beyond
+ * LOAD_MAX_INFLIGHT outstanding requests are counted as dropped.
+ * - LOAD_MODE=closed: LOAD_CONCURRENCY workers, each sending its next request
+ * when the previous one returned (compares thread modes at saturation)
+ *
+ * Target:
+ * - LOAD_BASE=http://127.0.0.1:4010: a running RunService
+ * - LOAD_FIXTURES=fixtures/overlay-sample.json: embedded HttpApi on API_PORT
+ * backed by the in-memory store (needs JWT_SECRET)
+ *
+ * Mix: LOAD_MIX=page=50,page_auth=30,detail=15,refresh=4,login=1 where
+ * page = anonymous page GET, page_auth = page GET with a LOAD_USERS token (tier
+ * from the user's role), detail = detail item GET, login / refresh = POST
+ * /auth/login / /auth/refresh. LOAD_LOGIN_BURST=count:everySec adds bursts of
+ * simultaneous logins on top ("login_burst"). Targets: LOAD_PAGES=feature/page,..
+ * LOAD_DETAILS=module/collection/item,.. LOAD_USERS=email:password,.. (defaults
+ * match fixtures/overlay-sample.json). LOAD_URL alone keeps the old single-URL
+ * GET (op "url").
+ *
+ * Requests carry X-Forwarded-For from LOAD_CLIENTS simulated addresses, so the
+ * per-IP rate limits see many clients (TRUST_PROXY=true on the server).
+ *
+ * JWT_SECRET=... LOAD_FIXTURES=fixtures/overlay-sample.json LOAD_RPS=2000 LOAD_SECONDS=30 \
+ * mvn -q -DskipTests -Dexec.mainClass=eu.fast.gw2.main.RunHttpLoad exec:java
+ *
+ * LOAD_OUT=path also writes the JSON report to a file.
+ */
+public class RunHttpLoad {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private static final String DEFAULT_PAGES = "open-world/alt-parking,open-world/farmtrains";
+    private static final String DEFAULT_DETAILS = "farming-details/bava-nisos-farmtrain/ley-line-anomaly";
+    private static final String DEFAULT_USERS = "tribune@example.com:Load-Test-Pass-1!,"
+            + "legionnaire@example.com:Load-Test-Pass-1!,soldier@example.com:Load-Test-Pass-1!";
+
+    private record User(String email, String password, String access, String refresh) {
+    }
+
+    private record Op(String name, int weight) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String mode = env("LOAD_MODE", "open").toLowerCase(Locale.ROOT);
+        final double rps = Double.parseDouble(env("LOAD_RPS", "500"));
+        final int concurrency = Integer.parseInt(env("LOAD_CONCURRENCY", "64"));
+        final int seconds = Integer.parseInt(env("LOAD_SECONDS", "20"));
+        final int warmupSec = Integer.parseInt(env("LOAD_WARMUP_SECONDS", "3"));
+        final int maxInflight = Integer.parseInt(env("LOAD_MAX_INFLIGHT", "10000"));
+        final int clients = Math.max(1, Integer.parseInt(env("LOAD_CLIENTS", "1000")));
+        final String fixtures = System.getenv("LOAD_FIXTURES");
+        final String legacyUrl = System.getenv("LOAD_URL");
+        final String burst = System.getenv("LOAD_LOGIN_BURST");
+
+        String base = env("LOAD_BASE", "http://127.0.0.1:" + env("API_PORT", "4010"));
+        if (fixtures != null && !fixtures.isBlank()) {
+            HttpApi.startInMemory(Path.of(fixtures));
+            base = "http://127.0.0.1:" + env("API_PORT", "4010");
+        }
+
+        final List<Op> mix = legacyUrl != null && System.getenv("LOAD_MIX") == null ? List.of(new Op("url", 1))
+                : parseMix(env("LOAD_MIX", "page=50,page_auth=30,detail=15,refresh=4,login=1"));
+        final List<String> pages = csv(env("LOAD_PAGES", DEFAULT_PAGES));
+        final List<String> details = csv(env("LOAD_DETAILS", DEFAULT_DETAILS));
+
+        final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        final Target target = new Target(client, base, legacyUrl, pages, details, clients);
+
+        // one login per configured user up front: tokens for page_auth / refresh
+        final boolean needsUsers = mix.stream().anyMatch(o -> o.name.equals("page_auth") || o.name.equals("refresh")
+                || o.name.equals("login")) || burst != null;
+        if (needsUsers) {
+            for (String cred : csv(env("LOAD_USERS", DEFAULT_USERS))) {
+                int i = cred.indexOf(':');
+                User u = i < 0 ? null : target.login(cred.substring(0, i), cred.substring(i + 1));
+                if (u == null)
+                    System.err.println("RunHttpLoad: login failed for " + (i < 0 ? cred : cred.substring(0, i)));
+                else
+                    target.users.add(u);
+            }
+            if (target.users.isEmpty())
+                throw new IllegalStateException("mix needs LOAD_USERS, but no user could log in");
+        }
+
+        final int totalWeight = mix.stream().mapToInt(Op::weight).sum();
+        final Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Op o : mix)
+            stats.put(o.name, new Stats());
+        if (burst != null)
+            stats.put("login_burst", new Stats());
+
+        System.out.printf(Locale.ROOT, "RunHttpLoad: base=%s mode=%s %s warmup=%ds duration=%ds mix=%s%n", base, mode,
+                mode.equals("closed") ? "concurrency=" + concurrency : "rps=" + rps, warmupSec, seconds, mix);
+
+        final long start = System.nanoTime();
+        final long warmEnd = start + TimeUnit.SECONDS.toNanos(warmupSec);
+        final long end = warmEnd + TimeUnit.SECONDS.toNanos(seconds);
+        final AtomicLong dropped = new AtomicLong();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (burst != null)
+                workers.submit(() -> loginBursts(workers, target, burst, warmEnd, end, stats.get("login_burst")));
+
+            if (mode.equals("closed")) {
+                for (int w = 0; w < concurrency; w++) {
+                    workers.submit(() -> {
+                        long t0;
+                        while ((t0 = System.nanoTime()) < end) {
+                            Op op = pick(mix, totalWeight);
+                            target.send(op.name, t0, t0 >= warmEnd ? stats.get(op.name) : null);
+                        }
+                    });
+                }
+            } else {
+                // open loop: exponential inter-arrival times, never waits for responses
+                final AtomicInteger inflight = new AtomicInteger();
+                final double meanGapNs = 1e9 / rps;
+                long next = start;
+                while (true) {
+                    next += (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * meanGapNs);
+                    if (next >= end)
+                        break;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0)
+                        LockSupport.parkNanos(wait);
+                    final long scheduled = next;
+                    final Op op = pick(mix, totalWeight);
+                    final Stats st = scheduled >= warmEnd ? stats.get(op.name) : null;
+                    if (inflight.get() >= maxInflight) {
+                        if (st != null)
+                            dropped.incrementAndGet();
+                        continue;
+                    }
+                    inflight.incrementAndGet();
+                    workers.submit(() -> {
+                        try {
+                            target.send(op.name, scheduled, st);
+                        } finally {
+                            inflight.decrementAndGet();
+                        }
+                    });
+                }
+            }
+        }
+
+        if (fixtures != null && !fixtures.isBlank())
+            HttpApi.stop();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mode", mode);
+        report.put("target", fixtures != null && !fixtures.isBlank() ? "embedded:" + fixtures : base);
+        if (!mode.equals("closed"))
+            report.put("offered_rps", rps);
+        else
+            report.put("concurrency", concurrency);
+        report.put("seconds", seconds);
+        report.put("dropped", dropped.get());
+        Stats all = new Stats();
+        Map<String, Object> ops = new LinkedHashMap<>();
+        for (var e : stats.entrySet()) {
+            ops.put(e.getKey(), e.getValue().summary(seconds));
+            all.addAll(e.getValue());
+        }
+        report.put("overall", all.summary(seconds));
+        report.put("ops", ops);
+
+        String json = M.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        System.out.println(json);
+        String out = System.getenv("LOAD_OUT");
+        if (out != null && !out.isBlank())
+            Files.writeString(Path.of(out), json + System.lineSeparator());
+        System.exit(0); // HttpClient selector thread is not a daemon
+    }
+
+    // ---------- requests ----------
+
+    /** Builds and sends one request of each op kind against the target base URL. */
+    private static final class Target {
+        private final HttpClient client;
+        private final String base;
+        private final String legacyUrl;
+        private final List<String> pages;
+        private final List<String> details;
+        private final int clients;
+        private final List<User> users = new ArrayList<>();
+
+        Target(HttpClient client, String base, String legacyUrl, List<String> pages, List<String> details,
+                int clients) {
+            this.client = client;
+            this.base = base;
+            this.legacyUrl = legacyUrl;
+            this.pages = pages;
+            this.details = details;
+            this.clients = clients;
+        }
+
+        void send(String op, long scheduledNs, Stats st) {
+            HttpRequest req = request(op);
+            try {
+                HttpResponse<Void> r = client.send(req, HttpResponse.BodyHandlers.discarding());
+                if (st != null)
+                    st.record(System.nanoTime() - scheduledNs, r.statusCode());
+            } catch (Exception e) {
+                if (st != null)
+                    st.error(); // not a latency sample
+            }
+        }
+
+        User login(String email, String password) throws Exception {
+            HttpResponse<String> r = client.send(post("/auth/login", json(Map.of("email", email, "password", password))),
+                    HttpResponse.BodyHandlers.ofString());
+            if (r.statusCode() != 200)
+                return null;
+            JsonNode n = M.readTree(r.body());
+            return new User(email, password, n.path("access").asText(), n.path("refresh").asText());
+        }
+
+        private HttpRequest request(String op) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            return switch (op) {
+                case "url" -> get(legacyUrl, System.getenv("LOAD_TOKEN"));
+                case "page" -> get(base + "/api/v1/" + any(pages, rnd), null);
+                case "page_auth" -> get(base + "/api/v1/" + any(pages, rnd), any(users, rnd).access());
+                case "detail" -> get(base + "/api/v1/details/" + any(details, rnd), null);
+                case "refresh" -> post("/auth/refresh", json(Map.of("token", any(users, rnd).refresh())));
+                case "login", "login_burst" -> {
+                    User u = any(users, rnd);
+                    yield post("/auth/login", json(Map.of("email", u.email(), "password", u.password())));
+                }
+                default -> throw new IllegalArgumentException("unknown op " + op);
+            };
+        }
+
+        private HttpRequest get(String url, String token) {
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30))
+                    .header("X-Forwarded-For", clientIp()).GET();
+            if (token != null && !token.isBlank())
+                b.header("Authorization", "Bearer " + token);
+            return b.build();
+        }
+
+        private HttpRequest post(String path, String json) {
+            return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30))
+                    .header("X-Forwarded-For", clientIp())
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+        }
+
+        private String clientIp() {
+            int c = ThreadLocalRandom.current().nextInt(clients);
+            return "10." + ((c >> 16) & 255) + "." + ((c >> 8) & 255) + "." + (c & 255);
+        }
+    }
+
+    private static void loginBursts(ExecutorService workers, Target target, String spec, long warmEnd, long end,
+            Stats st) {
+        String[] p = spec.split(":");
+        int count = Integer.parseInt(p[0].trim());
+        long everyNs = TimeUnit.SECONDS.toNanos(p.length > 1 ? Long.parseLong(p[1].trim()) : 10);
+        long next = warmEnd;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            final long scheduled = next;
+            for (int i = 0; i < count; i++)
+                workers.submit(() -> target.send("login_burst", scheduled, st));
+            next += everyNs;
+        }
+    }
+
+    // ---------- recording ----------
+
+    /** Latencies (ns) and outcome counts of one op. */
+    private static final class Stats {
+        private long[] lat = new long[1 << 12];
+        private int n;
+        private long non2xx;
+        private long errors;
+        private final Map<Integer, Long> status = new java.util.TreeMap<>();
+
+        synchronized void record(long ns, int code) {
+            if (n == lat.length)
+                lat = Arrays.copyOf(lat, n * 2);
+            lat[n++] = ns;
+            if (code / 100 != 2 && code != 304)
+                non2xx++;
+            status.merge(code, 1L, Long::sum);
+        }
+
+        synchronized void error() {
+            errors++;
+        }
+
+        synchronized void addAll(Stats o) {
+            synchronized (o) {
+                if (n + o.n > lat.length)
+                    lat = Arrays.copyOf(lat, n + o.n);
+                System.arraycopy(o.lat, 0, lat, n, o.n);
+                n += o.n;
+                non2xx += o.non2xx;
+                errors += o.errors;
+                o.status.forEach((k, v) -> status.merge(k, v, Long::sum));
+            }
+        }
+
+        synchronized Map<String, Object> summary(int seconds) {
+            long[] s = Arrays.copyOf(lat, n);
+            Arrays.sort(s);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("requests", n);
+            m.put("throughput_rps", round(n / (double) seconds));
+            m.put("p50_ms", pct(s, 0.50));
+            m.put("p90_ms", pct(s, 0.90));
+            m.put("p99_ms", pct(s, 0.99));
+            m.put("p999_ms", pct(s, 0.999));
+            m.put("max_ms", n == 0 ? 0.0 : round(s[n - 1] / 1e6));
+            m.put("non2xx", non2xx);
+            m.put("errors", errors);
+            Map<String, Long> codes = new LinkedHashMap<>();
+            status.forEach((k, v) -> codes.put(String.valueOf(k), v));
+            m.put("status", codes);
+            return m;
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static List<Op> parseMix(String spec) {
+        List<Op> out = new ArrayList<>();
+        for (String part : csv(spec)) {
+            String[] kv = part.split("=", 2);
+            int w = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (w > 0)
+                out.add(new Op(kv[0].trim(), w));
+        }
+        if (out.isEmpty())
+            throw new IllegalArgumentException("LOAD_MIX is empty");
+        return out;
+    }
+
+    private static Op pick(List<Op> mix, int totalWeight) {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Op o : mix) {
+            r -= o.weight;
+            if (r < 0)
+                return o;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private static String json(Map<String, String> m) {
+        try {
+            return M.writeValueAsString(m);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T any(List<T> l, ThreadLocalRandom rnd) {
+        return l.get(rnd.nextInt(l.size()));
+    }
+
+    private static List<String> csv(String s) {
+        List<String> out = new ArrayList<>();
+        for (String p : s.split(","))
+            if (!p.isBlank())
+                out.add(p.trim());
+        return out;
+    }
+
+    private static String env(String k, String def) {
+        String v = System.getenv(k);
+        return v == null || v.isBlank() ? def : v;
+    }
+
+    private static double pct(long[] sorted, double q) {
+        if (sorted.length == 0)
+            return 0.0;
+        int i = (int) Math.ceil(q * sorted.length) - 1;
+        return round(sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6);
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+}
@@ -2,6 +2,7 @@ package eu.fast.gw2.main;
 
 import java.util.Optional;
 
+import eu.fast.gw2.tools.Metrics;
 import eu.fast.gw2.tools.OverlayEngine;
 import eu.fast.gw2.tools.RefreshTierPrices;
 
@@ -14,8 +15,20 @@ public class RunPrices {
     }
 
     public static void runPrices() throws Exception {
-        RefreshTierPrices.refresh(null, GW2API_SLEEP_MS);
-        OverlayEngine.recomputeAndPersistAllOverlays();
+        long t0 = System.nanoTime();
+        RefreshTierPrices.Summary prices;
+        try {
+            prices = RefreshTierPrices.refresh(null, GW2API_SLEEP_MS);
+        } finally {
+            Metrics.histogram("job_duration_seconds", "Background job wall time", "job", "prices").recordSince(t0);
+        }
+        long t1 = System.nanoTime();
+        try {
+            // only tables whose prices moved (periodic full run as safety net)
+            OverlayEngine.recomputeAndPersistChangedOverlays(prices.changed());
+        } finally {
+            Metrics.histogram("job_duration_seconds", "Background job wall time", "job", "overlays").recordSince(t1);
+        }
     }
 
 }
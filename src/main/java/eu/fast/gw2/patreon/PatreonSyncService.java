@@ -1,9 +1,12 @@
 package eu.fast.gw2.patreon;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import eu.fast.gw2.http.RoleCache;
 import eu.fast.gw2.tools.Jpa;
 import jakarta.persistence.EntityManager;
 
@@ -12,6 +15,9 @@ public final class PatreonSyncService {
     public record Result(int upgraded, int downgraded) {
     }
 
+    private record Changed(String email, String role) {
+    }
+
     public static Result runSync() {
         final Map<String, Integer> patrons = PatreonClient.fetchCurrentPatrons();
 
@@ -29,7 +35,8 @@ public final class PatreonSyncService {
             return new Result(0, 0);
         }
 
-        return Jpa.tx(em -> {
+        final List<Changed> changed = new ArrayList<>();
+        Result result = Jpa.tx(em -> {
             int up = 0, down = 0;
 
             // 1) Upgrade or set roles for current patrons
@@ -38,27 +45,37 @@ public final class PatreonSyncService {
                 int cents = e.getValue() == null ? 0 : e.getValue();
 
                 String targetRole = (cents >= premiumMin) ? "tribune" : "legionnaire";
-                up += applyRoleIfNeeded(em, email, targetRole);
+                up += applyRoleIfNeeded(em, email, targetRole, changed);
             }
 
             // 2) Downgrade ex-patrons to soldier
-            down += downgradeMissing(em, emails);
+            down += downgradeMissing(em, emails, changed);
 
             return new Result(up, down);
         });
+
+        // after commit: tokens issued before now resolve to the new tier immediately
+        for (Changed c : changed)
+            RoleCache.roleChanged(c.email(), c.role());
+        return result;
     }
 
-    private static int applyRoleIfNeeded(EntityManager em, String email, String role) {
+    @SuppressWarnings("unchecked")
+    private static int applyRoleIfNeeded(EntityManager em, String email, String role, List<Changed> changed) {
         String sql = """
                     UPDATE public.users u
                     SET role_id = :role, updated_at = now()
                     WHERE lower(u.email) = :email
                       AND (u.role_id IS DISTINCT FROM :role)
+                    RETURNING lower(u.email)
                 """;
-        int n = em.createNativeQuery(sql)
+        List<Object> rs = em.createNativeQuery(sql)
                 .setParameter("role", role)
                 .setParameter("email", email)
-                .executeUpdate();
+                .getResultList();
+        for (Object e : rs)
+            changed.add(new Changed((String) e, role));
+        int n = rs.size();
         if (n == 0) {
             // user might not exist yet → do nothing
             return 0;
@@ -66,26 +83,33 @@ public final class PatreonSyncService {
         return n;
     }
 
-    private static int downgradeMissing(EntityManager em, Set<String> currentEmails) {
+    @SuppressWarnings("unchecked")
+    private static int downgradeMissing(EntityManager em, Set<String> currentEmails, List<Changed> changed) {
+        List<Object> rs;
         if (currentEmails.isEmpty()) {
             // if no patrons at all, downgrade everyone in paid roles
             String sql = """
                         UPDATE public.users
                         SET role_id = 'soldier', updated_at = now()
                         WHERE role_id IN ('legionnaire','tribune','khan-ur','champion')
+                        RETURNING lower(email)
                     """;
-            return em.createNativeQuery(sql).executeUpdate();
+            rs = em.createNativeQuery(sql).getResultList();
         } else {
             String sql = """
                         UPDATE public.users u
                         SET role_id = 'soldier', updated_at = now()
                         WHERE u.role_id IN ('legionnaire','tribune','khan-ur','champion')
                           AND lower(u.email) NOT IN (:emails)
+                        RETURNING lower(u.email)
                     """;
-            return em.createNativeQuery(sql)
+            rs = em.createNativeQuery(sql)
                     .setParameter("emails", currentEmails.stream().map(s -> s.toLowerCase(Locale.ROOT).trim()).toList())
-                    .executeUpdate();
+                    .getResultList();
         }
+        for (Object e : rs)
+            changed.add(new Changed((String) e, "soldier"));
+        return rs.size();
     }
 
     private PatreonSyncService() {
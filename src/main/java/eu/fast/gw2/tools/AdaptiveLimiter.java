@@ -0,0 +1,247 @@
+package eu.fast.gw2.tools;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Priority admission in front of the DB pool with a latency-adaptive limit.
+ * - limit (between min and max) follows the gradient of long-term vs
+ * short-term permit hold time: it shrinks while the DB is slower than its
+ * baseline (beyond TOLERANCE) and grows by sqrt(limit) steps once it is back
+ * within it; only samples taken with the limit fully in use move it up
+ * - only the samples the caller marks as comparable feed the estimate (e.g.
+ * request-scoped transactions: long background jobs would read as "the DB
+ * got slower" on every run)
+ * - free permits go to waiters in priority order (FIFO within a priority),
+ * except that a waiter queued longer than the aging threshold is served
+ * first (oldest first), so a steady stream of high-priority callers cannot
+ * starve the others
+ * - a sheddable caller is refused at once when its estimated queueing delay
+ * (callers ahead / limit * short-term hold time) or the age of the oldest
+ * caller ahead exceeds its budget, and gives up once it has waited that long
+ */
+final class AdaptiveLimiter {
+
+    private static final double TOLERANCE = 1.5; // hold time may grow 50% before the limit shrinks
+    private static final double SMOOTHING = 0.2;
+
+    private static final class Waiter {
+        private final Thread thread = Thread.currentThread();
+        private final long enqueuedNs = System.nanoTime();
+        private volatile boolean granted;
+    }
+
+    private final int min;
+    private final int max;
+    private final long agingNs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter>[] queues;
+    private final AtomicLong[] shed;
+
+    // guarded by lock
+    private int inFlight;
+    private volatile double estimate; // read unlocked by limit()
+    private double shortRttNs;
+    private double longRttNs;
+
+    @SuppressWarnings("unchecked")
+    AdaptiveLimiter(int min, int max, int priorities, long agingNs) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.agingNs = Math.max(0, agingNs);
+        this.estimate = this.max;
+        this.queues = new ArrayDeque[priorities];
+        this.shed = new AtomicLong[priorities];
+        for (int i = 0; i < priorities; i++) {
+            queues[i] = new ArrayDeque<>();
+            shed[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Takes a permit. priority 0 is served first; budgetNs &lt;= 0 means "not
+     * sheddable" and waits up to timeoutNs instead. False when refused or timed out.
+     */
+    boolean acquire(int priority, long budgetNs, long timeoutNs) {
+        final boolean sheddable = budgetNs > 0;
+        final Waiter w;
+        lock.lock();
+        try {
+            int ahead = waitersAtOrAbove(priority);
+            if (ahead == 0 && inFlight < limit()) {
+                inFlight++;
+                return true;
+            }
+            if (sheddable && (expectedWaitNs(ahead) > budgetNs || oldestAgeNs(priority) > budgetNs)) {
+                shed[priority].incrementAndGet();
+                return false;
+            }
+            w = new Waiter();
+            queues[priority].addLast(w);
+        } finally {
+            lock.unlock();
+        }
+
+        final long deadline = w.enqueuedNs + (sheddable ? budgetNs : timeoutNs);
+        while (!w.granted) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || Thread.currentThread().isInterrupted()) {
+                lock.lock();
+                try {
+                    if (w.granted)
+                        return true; // granted while timing out
+                    queues[priority].remove(w);
+                    if (sheddable)
+                        shed[priority].incrementAndGet();
+                    return false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            LockSupport.parkNanos(this, left);
+        }
+        return true;
+    }
+
+    /**
+     * Returns a permit; holdNs = how long it was held, a latency sample for
+     * the limit only when sampled.
+     */
+    void release(long holdNs, boolean sampled) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit();
+            inFlight--;
+            if (sampled)
+                sample(holdNs, saturated);
+            while (inFlight < limit()) {
+                Waiter next = nextWaiter();
+                if (next == null)
+                    break;
+                inFlight++;
+                next.granted = true;
+                LockSupport.unpark(next.thread);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int limit() {
+        return Math.max(min, Math.min(max, (int) estimate));
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting() {
+        lock.lock();
+        try {
+            int n = 0;
+            for (ArrayDeque<Waiter> q : queues)
+                n += q.size();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting(int priority) {
+        lock.lock();
+        try {
+            return queues[priority].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long shed(int priority) {
+        return shed[priority].get();
+    }
+
+    double shortRttMs() {
+        return shortRttNs / 1e6;
+    }
+
+    double longRttMs() {
+        return longRttNs / 1e6;
+    }
+
+    // ---------- internals (lock held) ----------
+
+    private void sample(long holdNs, boolean saturated) {
+        if (shortRttNs == 0) {
+            shortRttNs = longRttNs = holdNs;
+            return;
+        }
+        shortRttNs += (holdNs - shortRttNs) * 0.1;
+        longRttNs += (holdNs - longRttNs) * 0.01;
+        if (longRttNs > 2 * shortRttNs)
+            longRttNs *= 0.95; // recovered well below the baseline: let it follow faster
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNs / shortRttNs));
+        double next;
+        if (gradient < 1.0) {
+            next = estimate * gradient; // slower than baseline: back off
+        } else {
+            if (!saturated)
+                return; // not using the limit: no evidence it can grow
+            next = estimate + Math.sqrt(estimate);
+        }
+        estimate = Math.max(min, Math.min(max, estimate * (1 - SMOOTHING) + next * SMOOTHING));
+    }
+
+    /** Oldest waiter past the aging threshold, else the head of the highest non-empty priority. */
+    private Waiter nextWaiter() {
+        long now = System.nanoTime();
+        ArrayDeque<Waiter> aged = null;
+        long agedAt = Long.MAX_VALUE;
+        for (ArrayDeque<Waiter> q : queues) {
+            Waiter w = q.peekFirst();
+            if (w != null && now - w.enqueuedNs > agingNs && w.enqueuedNs < agedAt) {
+                aged = q;
+                agedAt = w.enqueuedNs;
+            }
+        }
+        if (aged != null)
+            return aged.pollFirst();
+        for (ArrayDeque<Waiter> q : queues) {
+            Waiter w = q.pollFirst();
+            if (w != null)
+                return w;
+        }
+        return null;
+    }
+
+    private int waitersAtOrAbove(int priority) {
+        int n = 0;
+        for (int i = 0; i <= priority; i++)
+            n += queues[i].size();
+        return n;
+    }
+
+    private long expectedWaitNs(int ahead) {
+        if (shortRttNs == 0)
+            return 0;
+        return (long) ((ahead + 1) * shortRttNs / limit());
+    }
+
+    private long oldestAgeNs(int priority) {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (int i = 0; i <= priority; i++) {
+            Waiter w = queues[i].peekFirst();
+            if (w != null)
+                oldest = Math.max(oldest, now - w.enqueuedNs);
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,218 @@
+package eu.fast.gw2.tools;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parsed detail rows by key, safe for any number of tier runner threads.
+ * - get is lock-free (ConcurrentHashMap) and only sets the entry's reference bit
+ * - bounded by entries and by weight (row count); puts evict under one lock,
+ * walking a CLOCK queue (referenced entries get a second chance)
+ * - admission: a new key only displaces a victim when it has been asked for
+ * more often (count-min sketch of requests, halved periodically so old
+ * popularity fades)
+ */
+final class DetailRowsCache {
+
+    private static final Metrics.Counter HITS = Metrics.counter("overlay_detail_rows_cache_total",
+            "Detail rows cache lookups", "result", "hit");
+    private static final Metrics.Counter MISSES = Metrics.counter("overlay_detail_rows_cache_total",
+            "Detail rows cache lookups", "result", "miss");
+    private static final Metrics.Counter EVICTIONS = Metrics.counter("overlay_detail_rows_cache_evictions_total",
+            "Detail rows cache evictions");
+    private static final Metrics.Counter REJECTIONS = Metrics.counter("overlay_detail_rows_cache_rejections_total",
+            "Detail rows refused by the admission policy");
+
+    private static final class Entry {
+        final String key;
+        final List<Map<String, Object>> rows;
+        final int weight;
+        volatile boolean referenced;
+
+        Entry(String key, List<Map<String, Object>> rows) {
+            this.key = key;
+            this.rows = rows;
+            this.weight = Math.max(1, rows.size());
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>(); // guarded by evictionLock
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    DetailRowsCache(int maxEntries, long maxWeight) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxWeight = Math.max(1, maxWeight);
+        this.sketch = new FrequencySketch(this.maxEntries);
+    }
+
+    List<Map<String, Object>> get(String key) {
+        sketch.increment(key);
+        Entry e = map.get(key);
+        if (e == null) {
+            misses.increment();
+            MISSES.inc();
+            return null;
+        }
+        e.referenced = true;
+        hits.increment();
+        HITS.inc();
+        return e.rows;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    /** Caches rows unless the admission policy prefers what is already there. */
+    void put(String key, List<Map<String, Object>> rows) {
+        Entry e = new Entry(key, rows);
+        if (e.weight > maxWeight) {
+            rejections.increment();
+            REJECTIONS.inc();
+            return;
+        }
+        evictionLock.lock();
+        try {
+            Entry prev = map.get(key);
+            if (prev != null) { // replacing: already admitted
+                remove(prev);
+                clock.remove(prev);
+            }
+            while (map.size() >= maxEntries || weight.get() + e.weight > maxWeight) {
+                Entry victim = nextVictim();
+                if (victim == null)
+                    break;
+                if (prev == null && sketch.frequency(key) <= sketch.frequency(victim.key)) {
+                    clock.addFirst(victim); // keep it; it stays next in line
+                    rejections.increment();
+                    REJECTIONS.inc();
+                    return;
+                }
+                remove(victim);
+                evictions.increment();
+                EVICTIONS.inc();
+            }
+            map.put(key, e);
+            clock.addLast(e);
+            weight.addAndGet(e.weight);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    Map<String, Object> stats() {
+        long h = hits.sum(), m = misses.sum();
+        return Map.of(
+                "entries", map.size(),
+                "maxEntries", maxEntries,
+                "weightRows", weight.get(),
+                "maxWeightRows", maxWeight,
+                "hits", h,
+                "misses", m,
+                "hitRate", (h + m) == 0 ? 0.0 : (double) h / (h + m),
+                "evictions", evictions.sum(),
+                "rejections", rejections.sum());
+    }
+
+    // ---------- internals (evictionLock held) ----------
+
+    /** CLOCK: first unreferenced entry from the head; referenced ones go round once more. */
+    private Entry nextVictim() {
+        for (int scanned = 0, n = clock.size(); scanned <= n; scanned++) {
+            Entry e = clock.pollFirst();
+            if (e == null)
+                return null;
+            if (e.referenced) {
+                e.referenced = false;
+                clock.addLast(e);
+                continue;
+            }
+            return e;
+        }
+        return clock.pollFirst();
+    }
+
+    private void remove(Entry e) {
+        if (map.remove(e.key, e))
+            weight.addAndGet(-e.weight);
+    }
+
+    /**
+     * Count-min sketch: 4 hash rows of counters capped at 15.
+     * Updates are not atomic: a lost increment only makes a key look slightly
+     * colder, which is fine for an admission heuristic.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+
+        private final int[][] table;
+        private final int mask;
+        private final int resetAt;
+        private final AtomicLong additions = new AtomicLong();
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(64, expectedEntries * 2) - 1) << 1;
+            this.table = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.resetAt = width * 10;
+        }
+
+        void increment(String key) {
+            int h = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int[] row = table[i];
+                int idx = index(h, i);
+                if (row[idx] < MAX_COUNT)
+                    row[idx]++;
+            }
+            if (additions.incrementAndGet() % resetAt == 0)
+                halve();
+        }
+
+        int frequency(String key) {
+            int h = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++)
+                min = Math.min(min, table[i][index(h, i)]);
+            return min;
+        }
+
+        private void halve() {
+            for (int[] row : table)
+                for (int j = 0; j < row.length; j++)
+                    row[j] >>>= 1;
+        }
+
+        private int index(int h, int i) {
+            int x = h * (0x9E3779B9 + (i << 1)) + i;
+            return (x ^ (x >>> 16)) & mask;
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 17);
+            h *= 0xed5ad4bb;
+            h ^= (h >>> 11);
+            return h;
+        }
+    }
+}
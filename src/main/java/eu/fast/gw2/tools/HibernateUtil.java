@@ -21,6 +21,9 @@ import jakarta.persistence.EntityManagerFactory;
 public final class HibernateUtil {
     private static volatile EntityManagerFactory EMF;
 
+    /** Hikari maximumPoolSize; Jpa sizes its concurrency limiter from this. */
+    public static final int MAX_POOL_SIZE = 5;
+
     private HibernateUtil() {
     }
 
@@ -78,8 +81,19 @@ public final class HibernateUtil {
         cfg.setJdbcUrl(url);
         cfg.setUsername(user);
         cfg.setPassword(pass);
-        cfg.setMaximumPoolSize(5);
+        cfg.setMaximumPoolSize(MAX_POOL_SIZE);
         cfg.setPoolName("hibernate-hikari");
-        return new HikariDataSource(cfg);
+        HikariDataSource ds = new HikariDataSource(cfg);
+
+        // pool state for /metrics (read at scrape time)
+        Metrics.gauge("hikari_connections_active", "Hikari connections in use",
+                () -> ds.getHikariPoolMXBean().getActiveConnections());
+        Metrics.gauge("hikari_connections_idle", "Hikari idle connections",
+                () -> ds.getHikariPoolMXBean().getIdleConnections());
+        Metrics.gauge("hikari_connections_total", "Hikari open connections",
+                () -> ds.getHikariPoolMXBean().getTotalConnections());
+        Metrics.gauge("hikari_threads_awaiting", "Threads waiting for a Hikari connection",
+                () -> ds.getHikariPoolMXBean().getThreadsAwaitingConnection());
+        return ds;
     }
 }
@@ -1,5 +1,8 @@
 package eu.fast.gw2.tools;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import jakarta.persistence.EntityManager;
@@ -7,41 +10,220 @@ import jakarta.persistence.EntityTransaction;
 
 public class Jpa {
 
+    /**
+     * Admission in front of the Hikari pool: at most `limit` callers inside tx()
+     * at once, where limit adapts between DB_MIN_CONCURRENCY and
+     * DB_MAX_CONCURRENCY (default = pool size) to observed tx latency. Keeps
+     * thousands of virtual threads from piling into Hikari's wait queue.
+     * - HTTP handlers run in a request scope: overlay reads (HIGH) are admitted
+     * before background jobs (NORMAL), auth (LOW) after both; request-scoped
+     * callers are shed with Saturated once their queueing delay would exceed
+     * DB_QUEUE_BUDGET_MS / DB_QUEUE_BUDGET_LOW_MS
+     * - everything else (jobs, writer) waits up to DB_ACQUIRE_TIMEOUT_MS
+     * (default = Hikari connectionTimeout), then fails with Saturated
+     * - a waiter of any priority queued longer than DB_QUEUE_AGING_MS goes
+     * ahead of higher priorities, so HIGH traffic cannot starve jobs
+     * - only request-scoped tx hold times adapt the limit: engine/writer/price
+     * refresh transactions run for seconds by design, not because the DB is slow
+     * Nested tx() calls on the same thread reuse the outer permit.
+     */
+    private static final int MAX_CONCURRENCY = Integer.parseInt(System.getenv().getOrDefault(
+            "DB_MAX_CONCURRENCY", String.valueOf(HibernateUtil.MAX_POOL_SIZE)));
+    private static final int MIN_CONCURRENCY = Integer
+            .parseInt(System.getenv().getOrDefault("DB_MIN_CONCURRENCY", "1"));
+    private static final long ACQUIRE_TIMEOUT_MS = Long
+            .parseLong(System.getenv().getOrDefault("DB_ACQUIRE_TIMEOUT_MS", "30000"));
+    private static final long BUDGET_MS = Long
+            .parseLong(System.getenv().getOrDefault("DB_QUEUE_BUDGET_MS", "250"));
+    private static final long BUDGET_LOW_MS = Long
+            .parseLong(System.getenv().getOrDefault("DB_QUEUE_BUDGET_LOW_MS", "100"));
+    private static final long AGING_MS = Long
+            .parseLong(System.getenv().getOrDefault("DB_QUEUE_AGING_MS", "500"));
+
+    /** Admission order of request-scoped callers; unscoped callers count as NORMAL. */
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    private static final AdaptiveLimiter LIMITER = new AdaptiveLimiter(MIN_CONCURRENCY, MAX_CONCURRENCY,
+            Priority.values().length, TimeUnit.MILLISECONDS.toNanos(AGING_MS));
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<Priority> SCOPE = new ThreadLocal<>();
+
+    private static final AtomicLong SATURATED = new AtomicLong();
+
+    private static final Metrics.Histogram PERMIT_WAIT = Metrics.histogram("db_permit_wait_seconds",
+            "Time spent waiting for a Jpa DB permit");
+    private static final StackWalker WALKER = StackWalker.getInstance();
+    /** db_tx_seconds per call site, keyed by the caller's lambda class (one per source location). */
+    private static final ConcurrentHashMap<Class<?>, Metrics.Histogram> TX_SECONDS = new ConcurrentHashMap<>();
+
+    static {
+        Metrics.gauge("db_permits_active", "Callers holding a Jpa DB permit", Jpa::active);
+        Metrics.gauge("db_permits_waiting", "Callers waiting for a Jpa DB permit", Jpa::waiting);
+        Metrics.counter("db_saturated_total", "Jpa.tx calls rejected with Saturated", SATURATED::get);
+        Metrics.gauge("db_concurrency_limit", "Adaptive Jpa DB permit limit", LIMITER::limit);
+        for (Priority p : Priority.values())
+            Metrics.counter("db_shed_total", "Request-scoped Jpa.tx calls shed over their queueing budget",
+                    () -> LIMITER.shed(p.ordinal()), "priority", p.name().toLowerCase());
+    }
+
+    /** No DB permit within the caller's queueing budget (or DB_ACQUIRE_TIMEOUT_MS). */
+    public static final class Saturated extends RuntimeException {
+        private final int retryAfterSec;
+
+        Saturated(int retryAfterSec) {
+            super("db_saturated");
+            this.retryAfterSec = retryAfterSec;
+        }
+
+        /** Suggested Retry-After: longer for low-priority callers. */
+        public int retryAfterSec() {
+            return retryAfterSec;
+        }
+    }
+
     @FunctionalInterface
     public interface TxVoid {
         void run(EntityManager em);
     }
 
     public static <R> R tx(Function<EntityManager, R> f) {
-        var emf = HibernateUtil.emf();
-        try (var em = emf.createEntityManager()) {
-            EntityTransaction tx = em.getTransaction();
-            tx.begin();
-            try {
-                R r = f.apply(em);
-                tx.commit();
-                return r;
-            } catch (RuntimeException e) {
-                if (tx.isActive())
-                    tx.rollback();
-                throw e;
-            }
-        }
+        return tx(f, f.getClass());
     }
 
     public static void txVoid(TxVoid f) {
-        var emf = HibernateUtil.emf();
-        try (var em = emf.createEntityManager()) {
-            EntityTransaction tx = em.getTransaction();
-            tx.begin();
-            try {
-                f.run(em);
-                tx.commit();
-            } catch (RuntimeException e) {
-                if (tx.isActive())
-                    tx.rollback();
-                throw e;
+        tx(em -> {
+            f.run(em);
+            return null;
+        }, f.getClass());
+    }
+
+    private static <R> R tx(Function<EntityManager, R> f, Class<?> site) {
+        final boolean outer = DEPTH.get()[0] == 0;
+        final long t0 = System.nanoTime();
+        acquire();
+        final long t1 = System.nanoTime();
+        if (outer)
+            PERMIT_WAIT.recordNanos(t1 - t0);
+        try {
+            var emf = HibernateUtil.emf();
+            try (var em = emf.createEntityManager()) {
+                EntityTransaction tx = em.getTransaction();
+                tx.begin();
+                try {
+                    R r = f.apply(em);
+                    tx.commit();
+                    return r;
+                } catch (RuntimeException e) {
+                    if (tx.isActive())
+                        tx.rollback();
+                    throw e;
+                }
             }
+        } finally {
+            release(t1);
+            if (outer)
+                txSeconds(site).recordSince(t1);
         }
     }
+
+    /**
+     * Marks the current thread as serving a request of the given priority until
+     * endRequest(): its tx() calls are admitted in that order and shed when
+     * queueing would exceed the budget.
+     */
+    public static void beginRequest(Priority p) {
+        SCOPE.set(p);
+    }
+
+    public static void endRequest() {
+        SCOPE.remove();
+    }
+
+    /** Callers currently waiting for a DB permit. */
+    public static long waiting() {
+        return LIMITER.waiting();
+    }
+
+    /** Callers currently holding a DB permit. */
+    public static int active() {
+        return LIMITER.inFlight();
+    }
+
+    /** Limiter state for /stats. */
+    public static java.util.Map<String, Object> admission() {
+        var out = new java.util.LinkedHashMap<String, Object>();
+        out.put("limit", LIMITER.limit());
+        out.put("active", LIMITER.inFlight());
+        out.put("shortHoldMs", Math.round(LIMITER.shortRttMs() * 100) / 100.0);
+        out.put("baselineHoldMs", Math.round(LIMITER.longRttMs() * 100) / 100.0);
+        for (Priority p : Priority.values()) {
+            String k = p.name().toLowerCase();
+            out.put("waiting_" + k, LIMITER.waiting(p.ordinal()));
+            out.put("shed_" + k, LIMITER.shed(p.ordinal()));
+        }
+        return out;
+    }
+
+    /** Total tx() calls rejected with Saturated. */
+    public static long saturated() {
+        return SATURATED.get();
+    }
+
+    /** Histogram of a call site; the stack is only walked the first time a site commits. */
+    private static Metrics.Histogram txSeconds(Class<?> site) {
+        Metrics.Histogram h = TX_SECONDS.get(site);
+        if (h != null)
+            return h;
+        // walk here, not inside computeIfAbsent, so the first non-Jpa frame is the caller
+        h = Metrics.histogram("db_tx_seconds", "Jpa.tx time holding a DB permit, by call site", "site", callSite());
+        Metrics.Histogram prev = TX_SECONDS.putIfAbsent(site, h);
+        return prev != null ? prev : h;
+    }
+
+    /** First caller frame outside Jpa, as Class.method (lambda bodies -> enclosing method). */
+    private static String callSite() {
+        return WALKER.walk(frames -> frames
+                .filter(fr -> !fr.getClassName().equals(Jpa.class.getName()))
+                .findFirst()
+                .map(fr -> {
+                    String c = fr.getClassName();
+                    String m = fr.getMethodName();
+                    if (m.startsWith("lambda$")) {
+                        int end = m.indexOf('$', 7);
+                        m = end > 7 ? m.substring(7, end) : m;
+                    }
+                    return c.substring(c.lastIndexOf('.') + 1) + "." + m;
+                })
+                .orElse("unknown"));
+    }
+
+    // ---------- limiter ----------
+
+    private static void acquire() {
+        int[] d = DEPTH.get();
+        if (d[0]++ > 0)
+            return; // nested: already holding a permit
+        Priority p = SCOPE.get();
+        if (p == null)
+            p = Priority.NORMAL;
+        long budgetMs = switch (p) {
+            case HIGH -> BUDGET_MS;
+            case LOW -> BUDGET_LOW_MS;
+            case NORMAL -> 0; // not sheddable
+        };
+        if (!LIMITER.acquire(p.ordinal(), TimeUnit.MILLISECONDS.toNanos(budgetMs),
+                TimeUnit.MILLISECONDS.toNanos(ACQUIRE_TIMEOUT_MS))) {
+            d[0]--;
+            SATURATED.incrementAndGet();
+            throw new Saturated(p == Priority.LOW ? 5 : 1);
+        }
+    }
+
+    private static void release(long acquiredNanos) {
+        int[] d = DEPTH.get();
+        if (--d[0] == 0)
+            LIMITER.release(System.nanoTime() - acquiredNanos, SCOPE.get() != null);
+    }
 }
@@ -0,0 +1,203 @@
+package eu.fast.gw2.tools;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics registry, rendered as Prometheus text (GET /metrics).
+ * - counters / histograms are LongAdder based: recording is a lookup plus an
+ * uncontended add, cheap enough for per-request and per-tx paths
+ * - histograms use fixed log-linear buckets (two per power of two, 25µs ..
+ * ~7min), so every series shares one layout and `le` lines line up
+ * - gauges and function counters read existing state at scrape time
+ * - label values are given as name/value pairs: histogram("x", "help", "route", r)
+ */
+public final class Metrics {
+
+    private static final long[] BOUNDS_NS = bounds();
+
+    /** Monotonic counter. */
+    public static final class Counter {
+        private final LongAdder v = new LongAdder();
+
+        public void inc() {
+            v.increment();
+        }
+
+        public void add(long n) {
+            v.add(n);
+        }
+    }
+
+    /** Latency histogram (nanoseconds in, seconds out). */
+    public static final class Histogram {
+        private final LongAdder[] counts = new LongAdder[BOUNDS_NS.length + 1];
+        private final LongAdder sumNs = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = new LongAdder();
+        }
+
+        public void recordNanos(long ns) {
+            if (ns < 0)
+                ns = 0;
+            counts[bucket(ns)].increment();
+            sumNs.add(ns);
+        }
+
+        /** Records the time since startNanos (a System.nanoTime() value). */
+        public void recordSince(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+
+    private record Family(String help, String type) {
+    }
+
+    private record Series(String name, String labels, Object metric) {
+    }
+
+    private static final ConcurrentHashMap<String, Family> FAMILIES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Series> SERIES = new ConcurrentHashMap<>();
+
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, "counter", labels, Counter::new);
+    }
+
+    /** Counter whose value lives elsewhere (an existing AtomicLong etc.). */
+    public static void counter(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, "counter", labels, () -> value);
+    }
+
+    public static Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, help, "histogram", labels, Histogram::new);
+    }
+
+    /** Gauge read at scrape time; re-registering replaces the supplier. */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        FAMILIES.putIfAbsent(name, new Family(help, "gauge"));
+        String l = labels(labels);
+        SERIES.put(name + l, new Series(name, l, value));
+    }
+
+    public static void remove(String name, String... labels) {
+        SERIES.remove(name + labels(labels));
+    }
+
+    /** Prometheus text exposition format 0.0.4. */
+    public static String scrape() {
+        TreeMap<String, TreeMap<String, Series>> byName = new TreeMap<>();
+        for (Series s : SERIES.values())
+            byName.computeIfAbsent(s.name(), k -> new TreeMap<>()).put(s.labels(), s);
+
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        for (Map.Entry<String, TreeMap<String, Series>> e : byName.entrySet()) {
+            String name = e.getKey();
+            Family f = FAMILIES.get(name);
+            sb.append("# HELP ").append(name).append(' ').append(f.help()).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(f.type()).append('\n');
+            for (Series s : e.getValue().values()) {
+                Object m = s.metric();
+                if (m instanceof Counter c)
+                    line(sb, name, s.labels(), c.v.sum());
+                else if (m instanceof LongSupplier ls)
+                    line(sb, name, s.labels(), ls.getAsLong());
+                else if (m instanceof DoubleSupplier ds)
+                    line(sb, name, s.labels(), ds.getAsDouble());
+                else if (m instanceof Histogram h)
+                    histogram(sb, name, s.labels(), h);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ---------- internals ----------
+
+    private static Object register(String name, String help, String type, String[] labels,
+            java.util.function.Supplier<Object> create) {
+        String l = labels(labels);
+        Series s = SERIES.get(name + l); // hot path: plain lookup, no locking
+        if (s != null)
+            return s.metric();
+        FAMILIES.putIfAbsent(name, new Family(help, type));
+        return SERIES.computeIfAbsent(name + l, k -> new Series(name, l, create.get())).metric();
+    }
+
+    private static void histogram(StringBuilder sb, String name, String labels, Histogram h) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        long cum = 0;
+        for (int i = 0; i < BOUNDS_NS.length; i++) {
+            cum += h.counts[i].sum();
+            sb.append(name).append("_bucket").append(prefix).append("le=\"").append(BOUNDS_NS[i] / 1e9)
+                    .append("\"} ").append(cum).append('\n');
+        }
+        cum += h.counts[BOUNDS_NS.length].sum();
+        sb.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cum).append('\n');
+        line(sb, name + "_sum", labels, h.sumNs.sum() / 1e9);
+        line(sb, name + "_count", labels, cum);
+    }
+
+    private static void line(StringBuilder sb, String name, String labels, double v) {
+        sb.append(name).append(labels).append(' ');
+        if (v == Math.rint(v) && Math.abs(v) < 1e15)
+            sb.append((long) v);
+        else
+            sb.append(v);
+        sb.append('\n');
+    }
+
+    private static String labels(String[] kv) {
+        if (kv == null || kv.length == 0)
+            return "";
+        StringBuilder sb = new StringBuilder(32).append('{');
+        for (int i = 0; i + 1 < kv.length; i += 2) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(kv[i]).append("=\"");
+            String v = kv[i + 1] == null ? "" : kv[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"')
+                    sb.append('\\').append(c);
+                else if (c == '\n')
+                    sb.append("\\n");
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /** 25µs * 2^k and 1.5x that, up to ~7 minutes. */
+    private static long[] bounds() {
+        long[] b = new long[50];
+        long base = 25_000L;
+        for (int i = 0; i < b.length; i += 2) {
+            b[i] = base;
+            b[i + 1] = base + base / 2;
+            base <<= 1;
+        }
+        return b;
+    }
+
+    private static int bucket(long ns) {
+        int lo = 0, hi = BOUNDS_NS.length; // first bound >= ns; BOUNDS_NS.length = +Inf
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BOUNDS_NS[mid] < ns)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private Metrics() {
+    }
+}
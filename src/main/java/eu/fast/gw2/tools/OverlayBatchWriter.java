@@ -3,14 +3,16 @@ package eu.fast.gw2.tools;
 import java.util.ArrayList;
 import java.util.List;
 
+import eu.fast.gw2.dao.OverlayDaoBatch;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 
 /**
  * Batches overlay upserts into single SQL statements per flush.
  * - detail -> public.detail_tables_overlay(detail_feature_id, key, tier, rows,
- * updated_at)
- * - main -> public.tables_overlay(key, tier, rows, updated_at)
+ * updated_at, version)
+ * - main -> public.tables_overlay(key, tier, rows, updated_at, version)
+ * - changed rows take the next overlay_version_seq value under the version lock
  *
  * Usage: create once, enqueue items, it auto-flushes on batch size and on
  * close().
@@ -86,22 +88,23 @@ public final class OverlayBatchWriter implements AutoCloseable {
         final int n = detailBuf.size();
         final StringBuilder sb = new StringBuilder(256 + n * 32);
         sb.append("""
-                    INSERT INTO public.detail_tables_overlay(detail_feature_id, key, tier, rows, updated_at)
+                    INSERT INTO public.detail_tables_overlay(detail_feature_id, key, tier, rows, updated_at, version)
                     VALUES
                 """);
         for (int i = 0; i < n; i++) {
             if (i > 0)
                 sb.append(',');
-            sb.append("(?,?,?,CAST(? AS jsonb), now())");
+            sb.append("(?,?,?,CAST(? AS jsonb), now(), nextval('public.overlay_version_seq'))");
         }
         sb.append("""
                     ON CONFLICT (detail_feature_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.detail_tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
                 """);
         final String sql = sb.toString();
 
         Jpa.txVoid((EntityManager em) -> {
+            OverlayDaoBatch.lockVersions(em);
             Query q = em.createNativeQuery(sql);
             int p = 1;
             for (Detail d : detailBuf) {
@@ -122,22 +125,23 @@ public final class OverlayBatchWriter implements AutoCloseable {
         final int n = mainBuf.size();
         final StringBuilder sb = new StringBuilder(256 + n * 32);
         sb.append("""
-                    INSERT INTO public.tables_overlay(page_id, key, tier, rows, updated_at)
+                    INSERT INTO public.tables_overlay(page_id, key, tier, rows, updated_at, version)
                     VALUES
                 """);
         for (int i = 0; i < n; i++) {
             if (i > 0)
                 sb.append(',');
-            sb.append("(?,?,?,CAST(? AS jsonb), now())");
+            sb.append("(?,?,?,CAST(? AS jsonb), now(), nextval('public.overlay_version_seq'))");
         }
         sb.append("""
                     ON CONFLICT (page_id, key, tier) DO UPDATE
-                    SET rows = EXCLUDED.rows, updated_at = now()
+                    SET rows = EXCLUDED.rows, updated_at = now(), version = EXCLUDED.version
                     WHERE public.tables_overlay.rows IS DISTINCT FROM EXCLUDED.rows
                 """);
         final String sql = sb.toString();
 
         Jpa.txVoid((EntityManager em) -> {
+            OverlayDaoBatch.lockVersions(em);
             Query q = em.createNativeQuery(sql);
             int p = 1;
             for (MainRow m : mainBuf) {
@@ -2,9 +2,7 @@ package eu.fast.gw2.tools;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,75 +13,107 @@ import eu.fast.gw2.enums.Tier;
 
 public class OverlayCache {
 
-    private static final int DETAIL_CACHE_MAX = Integer.getInteger("overlay.detailCacheMax", 4096);
+    /** Images/rarities/names outlive run generations but are re-read after this long. */
+    private static final long STATIC_TTL_MS = Long.getLong("overlay.staticTtlMinutes", 360) * 60_000L;
 
-    // ---------- detail rows LRU ----------
-    private static final LinkedHashMap<String, List<Map<String, Object>>> DETAIL_ROWS_CACHE = new LinkedHashMap<>(256,
-            0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, List<Map<String, Object>>> eldest) {
-            return size() > DETAIL_CACHE_MAX;
-        }
-    };
-
-    // ---------- EV CHM ----------
-    private static final java.util.concurrent.ConcurrentHashMap<String, int[]> EV_CACHE = new java.util.concurrent.ConcurrentHashMap<>();
-
-    // ---------- vendor cache ----------
-    private static final Map<Integer, Integer> VENDOR_CACHE = new HashMap<>();
+    // ---------- run-scoped data (prices, EVs, base rows, ...) ----------
+    private static volatile OverlayRunCache current = OverlayRunCache.fresh();
 
-    // ---------- price/image/rarity caches (shared by whole run) ----------
-    private static final ConcurrentHashMap<String, ConcurrentHashMap<Integer, int[]>> PRICE_CACHE_BY_TIER = new ConcurrentHashMap<>();
+    // ---------- image/rarity caches (static data, TTL) ----------
     private static final ConcurrentHashMap<Integer, String> IMAGE_CACHE = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<Integer, String> RARITY_CACHE = new ConcurrentHashMap<>();
+    private static volatile long staticSinceMs = System.currentTimeMillis();
+
+    static {
+        Metrics.gauge("overlay_cache_generation", "Current overlay run cache generation", () -> current.id);
+        Metrics.gauge("overlay_cache_entries", "Entries in the current overlay run cache",
+                () -> current.ev.size(), "cache", "ev");
+        Metrics.gauge("overlay_cache_entries", "Entries in the current overlay run cache",
+                () -> current.pricesByTier.values().stream().mapToInt(Map::size).sum(), "cache", "prices");
+        Metrics.gauge("overlay_cache_entries", "Entries in the current overlay run cache",
+                () -> current.detailRows.size() + current.mainRowsBase.size(), "cache", "base_tables");
+    }
 
-    // ---------- base rows caches for the run ----------
-    private static final Map<String, List<Map<String, Object>>> MAIN_ROWS_BASE = new ConcurrentHashMap<>();
-    private static final Map<String, List<Map<String, Object>>> DETAIL_ROWS_BASE = new ConcurrentHashMap<>();
+    // ----- generations -----
+
+    static OverlayRunCache current() {
+        return current;
+    }
+
+    /** Swaps in the generation the next run reads; returns the one it replaces. */
+    static OverlayRunCache install(OverlayRunCache next) {
+        OverlayRunCache prev = current;
+        current = next;
+        return prev;
+    }
+
+    /** Drops images/rarities/names once they are older than the static TTL. */
+    static void expireStaticData() {
+        long now = System.currentTimeMillis();
+        if (now - staticSinceMs < STATIC_TTL_MS)
+            return;
+        IMAGE_CACHE.clear();
+        RARITY_CACHE.clear();
+        OverlayDBAccess.clearNameCaches();
+        staticSinceMs = now;
+    }
+
+    public static Map<String, Object> stats() {
+        return current.stats();
+    }
 
     // ----- EV cache accessors -----
     public static int[] getEv(String ck) {
-        return EV_CACHE.get(ck);
+        return current.ev.get(ck);
     }
 
     public static void putEv(String ck, int[] ev) {
-        EV_CACHE.put(ck, ev);
+        current.ev.put(ck, ev);
     }
 
     // ----- vendor -----
     public static Integer vendorValueCached(int itemId) {
-        if (VENDOR_CACHE.containsKey(itemId))
-            return VENDOR_CACHE.get(itemId);
-        Integer v = Gw2PricesDao.vendorValueById(itemId);
-        VENDOR_CACHE.put(itemId, v); // may be null
-        return v;
+        var vendor = current.vendor;
+        Integer v = vendor.get(itemId);
+        if (v == null) {
+            v = Gw2PricesDao.vendorValueById(itemId);
+            vendor.put(itemId, v == null ? OverlayRunCache.NO_VENDOR : v);
+            return v;
+        }
+        return (v == OverlayRunCache.NO_VENDOR) ? null : v;
     }
 
     // ----- detail rows preload / fetch -----
     public static List<Map<String, Object>> getDetailRowsCached(String key) {
         if (key == null || key.isBlank())
             return List.of();
-        var cached = DETAIL_ROWS_CACHE.get(key);
+        var detailRows = current.detailRows;
+        var cached = detailRows.get(key);
         if (cached != null)
             return cached;
 
         String json = OverlayDBAccess.getLatestDetailRowsByKey(key);
         if (json == null || json.isBlank()) {
-            DETAIL_ROWS_CACHE.put(key, List.of());
+            detailRows.put(key, List.of());
             return List.of();
         }
         var rows = OverlayJson.parseRows(json);
-        DETAIL_ROWS_CACHE.put(key, rows);
+        detailRows.put(key, rows);
         return rows;
     }
 
-    /** Batch preload detail rows for keys; caches empty lists for not-found. */
+    /**
+     * Batch preload detail rows for keys; caches empty lists for not-found.
+     * Rows only go to the bounded detail rows cache (what it refuses is read
+     * again on use); their item ids are kept for collectAllItemIdsFromPreloaded.
+     */
     public static void preloadDetailRows(Collection<String> keys) {
         if (keys == null || keys.isEmpty())
             return;
 
+        final OverlayRunCache gen = current;
         List<String> missing = keys.stream()
-                .filter(k -> k != null && !k.isBlank() && !DETAIL_ROWS_CACHE.containsKey(k))
+                .filter(k -> k != null && !k.isBlank() && !gen.detailRows.containsKey(k))
                 .toList();
         if (missing.isEmpty())
             return;
@@ -94,15 +124,13 @@ public class OverlayCache {
             String k = e.getKey();
             String j = e.getValue();
             List<Map<String, Object>> rows = (j == null || j.isBlank()) ? List.of() : OverlayJson.parseRows(j);
-            DETAIL_ROWS_CACHE.put(k, rows);
-            DETAIL_ROWS_BASE.put(k, rows); // mirror into BASE for run usage
+            gen.detailRows.put(k, rows);
+            gen.detailItemIds.addAll(OverlayHelper.extractIds(rows));
             seen.add(k);
         }
         for (String k : missing) {
-            if (!seen.contains(k)) {
-                DETAIL_ROWS_CACHE.put(k, List.of());
-                DETAIL_ROWS_BASE.put(k, List.of());
-            }
+            if (!seen.contains(k))
+                gen.detailRows.put(k, List.of());
         }
     }
 
@@ -110,16 +138,17 @@ public class OverlayCache {
     public static int preloadMainRows(Collection<String> mainKeys) {
         if (mainKeys == null || mainKeys.isEmpty())
             return 0;
+        var mainRowsBase = current.mainRowsBase;
         int loaded = 0;
         for (String key : mainKeys) {
             if (key == null || key.isBlank())
                 continue;
-            if (MAIN_ROWS_BASE.containsKey(key)) {
+            if (mainRowsBase.containsKey(key)) {
                 loaded++;
                 continue;
             }
             String rowsJson = OverlayDBAccess.getMainRowsJson(key);
-            MAIN_ROWS_BASE.put(key,
+            mainRowsBase.put(key,
                     (rowsJson == null || rowsJson.isBlank()) ? List.of() : OverlayJson.parseRows(rowsJson));
             loaded++;
         }
@@ -127,18 +156,44 @@ public class OverlayCache {
     }
 
     public static List<Map<String, Object>> getBaseMainRows(String compositeKey) {
-        return MAIN_ROWS_BASE.get(compositeKey);
+        return current.mainRowsBase.get(compositeKey);
     }
 
+    /** Same as getDetailRowsCached: detail base rows are only held by the bounded cache. */
     public static List<Map<String, Object>> getBaseDetailRows(String key) {
-        return DETAIL_ROWS_BASE.computeIfAbsent(key, OverlayCache::getDetailRowsCached);
+        return getDetailRowsCached(key);
+    }
+
+    // ----- compiled table plans (once per base table) -----
+
+    static OverlayTablePlan detailPlan(long fid, String key, List<Map<String, Object>> base) {
+        var plans = current.plans;
+        String pk = "D|" + fid + "|" + key;
+        OverlayTablePlan plan = plans.get(pk);
+        if (plan == null) {
+            plan = OverlayTablePlan.compileDetail(fid, key, base);
+            plans.putIfAbsent(pk, plan);
+        }
+        return plan;
+    }
+
+    static OverlayTablePlan mainPlan(String compositeKey, List<Map<String, Object>> base) {
+        var plans = current.plans;
+        String pk = "M|" + compositeKey;
+        OverlayTablePlan plan = plans.get(pk);
+        if (plan == null) {
+            plan = OverlayTablePlan.compileMain(compositeKey, base);
+            plans.putIfAbsent(pk, plan);
+        }
+        return plan;
     }
 
     // ----- collect all item ids from preloaded bases -----
     public static Set<Integer> collectAllItemIdsFromPreloaded() {
         Set<Integer> all = new HashSet<>(16384);
         // from mains
-        for (var e : MAIN_ROWS_BASE.entrySet()) {
+        final OverlayRunCache gen = current;
+        for (var e : gen.mainRowsBase.entrySet()) {
             for (var row : e.getValue()) {
                 String cat = OverlayHelper.str(row.get(OverlayHelper.COL_CAT));
                 String key = OverlayHelper.str(row.get(OverlayHelper.COL_KEY));
@@ -149,16 +204,48 @@ public class OverlayCache {
                     all.add(id);
             }
         }
-        // from details
-        for (var e : DETAIL_ROWS_BASE.entrySet()) {
-            all.addAll(OverlayHelper.extractIds(e.getValue()));
-        }
+        // from details (collected by preloadDetailRows)
+        all.addAll(gen.detailItemIds);
         return all;
     }
 
+    // ----- patching a carried-over generation (before it is installed) -----
+
+    /** Re-reads this tier's prices for ids that changed since the cache was filled. */
+    static void refreshPrices(OverlayRunCache gen, Tier tier, Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty())
+            return;
+        var cache = gen.pricesByTier.computeIfAbsent(tier.columnKey(), k -> new ConcurrentHashMap<>());
+        cache.putAll(Gw2PricesDao.loadTier(new ArrayList<>(ids), tier.columnKey()));
+    }
+
+    /** Forgets per-item data (vendor value, image, rarity) so it is read again. */
+    static void forgetItems(OverlayRunCache gen, Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty())
+            return;
+        gen.vendor.keySet().removeAll(ids);
+        IMAGE_CACHE.keySet().removeAll(ids);
+        RARITY_CACHE.keySet().removeAll(ids);
+    }
+
+    /** Evicts this tier's EVs of the given detail keys (any taxes/op). */
+    static void invalidateEv(OverlayRunCache gen, Tier tier, Set<String> detailKeys) {
+        if (detailKeys == null || detailKeys.isEmpty())
+            return;
+        final String prefix = tier.columnKey() + "|";
+        gen.ev.keySet().removeIf(ck -> {
+            if (!ck.startsWith(prefix))
+                return false;
+            // tierKey|taxes|op|refKey
+            int a = ck.indexOf('|', prefix.length());
+            int b = (a < 0) ? -1 : ck.indexOf('|', a + 1);
+            return b >= 0 && detailKeys.contains(ck.substring(b + 1));
+        });
+    }
+
     // ----- price/image/rarity cache fillers -----
     public static Map<Integer, int[]> getOrFillPriceCache(Set<Integer> ids, Tier tier) {
-        var cache = PRICE_CACHE_BY_TIER.computeIfAbsent(tier.columnKey(), k -> new ConcurrentHashMap<>());
+        var cache = current.pricesByTier.computeIfAbsent(tier.columnKey(), k -> new ConcurrentHashMap<>());
         if (ids != null && !ids.isEmpty()) {
             ArrayList<Integer> missing = null;
             for (Integer id : ids) {
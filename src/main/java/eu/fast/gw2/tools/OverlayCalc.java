@@ -1,7 +1,6 @@
 package eu.fast.gw2.tools;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,9 +10,8 @@ import eu.fast.gw2.dao.Gw2PricesDao;
 
 public class OverlayCalc {
 
-    /** Cache for calculations by (category|key). Allows null values. */
-    private static final Map<String, CalculationsDao.Config> CALC_CACHE = new HashMap<>();
-    private static volatile boolean CALC_ALL_PRELOADED = false;
+    // Calculations by (category|key) live in the run generation
+    // (OverlayRunCache.calcs / calcsPreloaded), so each full run re-reads them.
     private static final ThreadLocal<java.util.Set<Integer>> ACTIVE_IGNORES = new ThreadLocal<>();
 
     static java.util.Set<Integer> activeIgnores() {
@@ -38,15 +36,16 @@ public class OverlayCalc {
 
     /** One-time bulk preload of the latest rows for all (category,key). */
     public static void preloadAllCalcsIfNeeded() {
-        if (CALC_ALL_PRELOADED)
+        final OverlayRunCache gen = OverlayCache.current();
+        if (gen.calcsPreloaded)
             return;
         synchronized (OverlayCalc.class) {
-            if (CALC_ALL_PRELOADED)
+            if (gen.calcsPreloaded)
                 return;
             long t0 = System.currentTimeMillis();
             Map<String, CalculationsDao.Config> all = CalculationsDao.findAllLatest();
-            CALC_CACHE.putAll(all);
-            CALC_ALL_PRELOADED = true;
+            gen.calcs.putAll(all);
+            gen.calcsPreloaded = true;
             System.out.printf(java.util.Locale.ROOT,
                     "Preloaded calculations: %d entries in %.1fs%n",
                     all.size(), (System.currentTimeMillis() - t0) / 1000.0);
@@ -58,23 +57,26 @@ public class OverlayCalc {
                 + "|" + (key == null ? "" : key.trim()));
 
         // Fast path: cache hit
-        CalculationsDao.Config cfg = CALC_CACHE.get(ck);
+        final OverlayRunCache gen = OverlayCache.current();
+        CalculationsDao.Config cfg = gen.calcs.get(ck);
         if (cfg != null)
             return cfg;
 
         // If we fully preloaded already, absence means "no config".
-        if (CALC_ALL_PRELOADED)
+        if (gen.calcsPreloaded)
             return null;
 
         // Try direct fetch, then fall back to one-time preload.
         cfg = CalculationsDao.find(category, key);
         if (cfg != null) {
-            CALC_CACHE.put(ck, cfg);
+            synchronized (OverlayCalc.class) {
+                gen.calcs.put(ck, cfg);
+            }
             return cfg;
         }
 
         preloadAllCalcsIfNeeded();
-        return CALC_CACHE.get(ck);
+        return gen.calcs.get(ck);
     }
 
     /**
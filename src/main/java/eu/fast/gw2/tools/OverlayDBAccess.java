@@ -15,6 +15,14 @@ public class OverlayDBAccess {
     private static final java.util.concurrent.ConcurrentHashMap<Long, String> DETAIL_FEATURE_NAME_BY_ID = new java.util.concurrent.ConcurrentHashMap<>();
     private static final java.util.concurrent.ConcurrentHashMap<String, String> DETAIL_FEATURE_NAME_BY_KEY = new java.util.concurrent.ConcurrentHashMap<>();
 
+    /** Names change rarely; OverlayCache.expireStaticData drops them after a TTL. */
+    static void clearNameCaches() {
+        FEATURE_NAME_BY_PAGE.clear();
+        DETAIL_FEATURE_NAME_BY_ID.clear();
+        DETAIL_FEATURE_NAME_BY_KEY.clear();
+        PAGE_NAME_BY_ID.clear();
+    }
+
     public static String getMainRowsJson(String compositeKey /* "pageId|name" */) {
         int bar = compositeKey.indexOf('|');
         int pageId = Integer.parseInt(compositeKey.substring(0, bar));
@@ -0,0 +1,150 @@
+package eu.fast.gw2.tools;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which overlay tables read which inputs, built from the base rows of a run.
+ * - item id -> detail keys / main tables that have a row for it
+ * - detail key -> detail keys / main tables that reference it (composite,
+ * INTERNAL or DSL EV rows), walked upwards to find everything a price touches
+ * - every row carries the Spirit Shard augment, so a change under
+ * "spirit-shard" affects all tables
+ */
+public final class OverlayDependencyGraph {
+
+    private static final String SPIRIT_SHARD_KEY = "spirit-shard";
+
+    /** Tables to recompute for one tier; all == true means every target. */
+    public record Affected(Set<String> detailKeys, Set<String> mains, boolean all) {
+        public boolean isEmpty() {
+            return !all && detailKeys.isEmpty() && mains.isEmpty();
+        }
+    }
+
+    private final Map<Integer, Set<String>> itemToDetails = new HashMap<>();
+    private final Map<Integer, Set<String>> itemToMains = new HashMap<>();
+    private final Map<String, Set<String>> detailToDetails = new HashMap<>();
+    private final Map<String, Set<String>> detailToMains = new HashMap<>();
+
+    private OverlayDependencyGraph() {
+    }
+
+    /** Builds the graph from the preloaded base rows (loads referenced detail tables on demand). */
+    public static OverlayDependencyGraph build(List<Object[]> detailTargets, List<String> mainTargets) {
+        OverlayDependencyGraph g = new OverlayDependencyGraph();
+
+        Set<String> frontier = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (Object[] r : detailTargets) {
+            String key = (String) r[1];
+            if (key != null && !key.isBlank() && seen.add(key))
+                frontier.add(key);
+        }
+
+        for (String compositeKey : mainTargets) {
+            List<Map<String, Object>> rows = OverlayCache.getBaseMainRows(compositeKey);
+            if (rows == null)
+                continue;
+            String internalKey = null;
+            for (var row : rows) {
+                int id = OverlayHelper.toInt(row.get(OverlayHelper.COL_ID), -1);
+                if (id > 0)
+                    link(g.itemToMains, id, compositeKey);
+                String cat = OverlayHelper.str(row.get(OverlayHelper.COL_CAT));
+                String ref = OverlayHelper.str(row.get(OverlayHelper.COL_KEY));
+                if (OverlayHelper.isInternal(cat)) {
+                    // INTERNAL rows on a main table resolve to "<feature>/<page>"
+                    if (internalKey == null)
+                        internalKey = internalKeyOf(compositeKey);
+                    ref = internalKey;
+                }
+                if (ref != null && !ref.isBlank()) {
+                    link(g.detailToMains, ref, compositeKey);
+                    if (seen.add(ref))
+                        frontier.add(ref);
+                }
+            }
+        }
+
+        // Walk detail tables level by level (targets, then whatever they reference)
+        while (!frontier.isEmpty()) {
+            OverlayCache.preloadDetailRows(frontier);
+            Set<String> next = new HashSet<>();
+            for (String key : frontier) {
+                List<Map<String, Object>> rows = OverlayCache.getBaseDetailRows(key);
+                if (rows == null)
+                    continue;
+                for (var row : rows) {
+                    int id = OverlayHelper.toInt(row.get(OverlayHelper.COL_ID), -1);
+                    if (id > 0)
+                        link(g.itemToDetails, id, key);
+                    String ref = OverlayHelper.str(row.get(OverlayHelper.COL_KEY));
+                    if (ref != null && !ref.isBlank() && !ref.equals(key)) {
+                        link(g.detailToDetails, ref, key);
+                        if (seen.add(ref))
+                            next.add(ref);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return g;
+    }
+
+    /** Transitive closure of the tables that read any of the given item ids. */
+    public Affected affected(Collection<Integer> itemIds) {
+        Set<String> details = new HashSet<>();
+        Set<String> mains = new HashSet<>();
+        ArrayDeque<String> frontier = new ArrayDeque<>();
+
+        for (Integer id : itemIds) {
+            for (String k : itemToDetails.getOrDefault(id, Set.of()))
+                if (details.add(k))
+                    frontier.add(k);
+            mains.addAll(itemToMains.getOrDefault(id, Set.of()));
+        }
+        while (!frontier.isEmpty()) {
+            String k = frontier.poll();
+            mains.addAll(detailToMains.getOrDefault(k, Set.of()));
+            for (String parent : detailToDetails.getOrDefault(k, Set.of()))
+                if (details.add(parent))
+                    frontier.add(parent);
+        }
+        return new Affected(details, mains, details.contains(SPIRIT_SHARD_KEY));
+    }
+
+    public int items() {
+        Set<Integer> ids = new HashSet<>(itemToDetails.keySet());
+        ids.addAll(itemToMains.keySet());
+        return ids.size();
+    }
+
+    public int edges() {
+        int n = 0;
+        for (var m : List.of(itemToDetails, itemToMains))
+            for (Set<String> s : m.values())
+                n += s.size();
+        for (var m : List.of(detailToDetails, detailToMains))
+            for (Set<String> s : m.values())
+                n += s.size();
+        return n;
+    }
+
+    // ---------- internals ----------
+
+    private static <K> void link(Map<K, Set<String>> m, K from, String to) {
+        m.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+    }
+
+    private static String internalKeyOf(String compositeKey) {
+        String featureName = OverlayDBAccess.featureNameByPageId(OverlayDBAccess.pageIdFromComposite(compositeKey));
+        String pageName = OverlayDBAccess.pageNameFromComposite(compositeKey);
+        return (featureName == null ? "" : featureName) + "/" + (pageName == null ? "" : pageName);
+    }
+}
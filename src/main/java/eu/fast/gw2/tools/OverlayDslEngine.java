@@ -52,8 +52,8 @@ public class OverlayDslEngine {
             DslContext ctx = new DslContext(row, tier, taxesPercent, priceMap, key);
 
             // Compile expressions if provided; else synthesize from mode.
-            DslExpr exprTPB = compileExprCached(category, key, FIELD_TPB, root.get(FIELD_TPB), mode);
-            DslExpr exprTPS = compileExprCached(category, key, FIELD_TPS, root.get(FIELD_TPS), mode);
+            DslExpr exprTPB = compileExprCached(FIELD_TPB, root.get(FIELD_TPB), mode);
+            DslExpr exprTPS = compileExprCached(FIELD_TPS, root.get(FIELD_TPS), mode);
             if (exprTPB == null || exprTPS == null)
                 return null;
 
@@ -86,13 +86,7 @@ public class OverlayDslEngine {
         return (v == null || v.isNull()) ? def : v.asText();
     }
 
-    private static DslExpr compileExprCached(String category, String key, String field, JsonNode node, String mode) {
-        final String ck = ((category == null ? "" : category.trim().toUpperCase(java.util.Locale.ROOT))
-                + "|" + (key == null ? "" : key.trim()) + "|" + field);
-        DslExpr cached = EXPR_CACHE.get(ck);
-        if (cached != null)
-            return cached;
-
+    private static DslExpr compileExprCached(String field, JsonNode node, String mode) {
         String exprText = null;
 
         if (node != null && !node.isNull()) {
@@ -126,8 +120,13 @@ public class OverlayDslEngine {
         if (exprText == null || exprText.isBlank())
             return null;
 
+        // keyed by expression text: an edited formula compiles anew, the cache
+        // stays bounded by the distinct formulas
+        DslExpr cached = EXPR_CACHE.get(exprText);
+        if (cached != null)
+            return cached;
         DslExpr compiled = DslExpr.parse(exprText);
-        EXPR_CACHE.put(ck, compiled);
+        EXPR_CACHE.put(exprText, compiled);
         return compiled;
     }
 
@@ -1,5 +1,12 @@
 package eu.fast.gw2.tools;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -8,28 +15,116 @@ import eu.fast.gw2.enums.Tier;
 
 public class OverlayEngine {
 
+    private static final boolean PROFILE = true;
+    private static final int TIER_THREADS = 3;
+    private static final Tier[] TIERS = { Tier.T2M, Tier.T10M, Tier.T60M };
+
+    /** Safety net: a full recompute at least this often, whatever changed. */
+    private static final long FULL_EVERY_MS = Long.getLong("overlay.fullEveryMinutes", 30) * 60_000L;
+
+    // Plan (targets + dependency graph) of the last full run; incremental runs reuse it
+    private static volatile OverlayRunPlanner.Plan lastPlan;
+    private static volatile long lastFullAtMs;
+
     // Public entry: recompute & persist overlays for all tiers
     public static void recomputeAndPersistAllOverlays() {
-        final boolean PROFILE = true;
-        final int TIER_THREADS = 3;
-        final Tier[] TIERS = { Tier.T2M, Tier.T10M, Tier.T60M };
+        // Preload & plan once for the full run (new cache generation, filled for all tiers)
+        OverlayRunPlanner.Plan plan = OverlayRunPlanner.plan(TIERS);
+
+        Map<Tier, List<Object[]>> details = new EnumMap<>(Tier.class);
+        Map<Tier, List<String>> mains = new EnumMap<>(Tier.class);
+        for (Tier t : TIERS) {
+            details.put(t, plan.detailTargets());
+            mains.put(t, plan.mainTargets());
+        }
+        runTiers(details, mains);
+
+        lastPlan = plan;
+        lastFullAtMs = System.currentTimeMillis();
+        Metrics.counter("overlay_runs_total", "Overlay recompute runs", "mode", "full").inc();
+    }
+
+    /**
+     * Recompute only the tables whose inputs changed (per tier item ids, e.g.
+     * from RefreshTierPrices). Falls back to a full run when there is no plan
+     * yet, no change set, or the last full run is older than FULL_EVERY_MS.
+     */
+    public static void recomputeAndPersistChangedOverlays(Map<Tier, Set<Integer>> changedByTier) {
+        OverlayRunPlanner.Plan plan = lastPlan;
+        if (plan == null || changedByTier == null
+                || System.currentTimeMillis() - lastFullAtMs >= FULL_EVERY_MS) {
+            recomputeAndPersistAllOverlays();
+            return;
+        }
+
+        Set<Integer> anyChanged = new HashSet<>();
+        for (Set<Integer> ids : changedByTier.values())
+            anyChanged.addAll(ids);
+        if (anyChanged.isEmpty()) {
+            System.out.println("Overlay incremental: nothing changed");
+            return;
+        }
+        // Next generation: same base rows, patched below, installed before the runners start
+        OverlayRunCache gen = OverlayCache.current().carryOver();
+        OverlayCache.forgetItems(gen, anyChanged);
 
+        Map<Tier, List<Object[]>> details = new EnumMap<>(Tier.class);
+        Map<Tier, List<String>> mains = new EnumMap<>(Tier.class);
+        StringBuilder line = new StringBuilder("Overlay incremental:");
+        for (Tier t : TIERS) {
+            Set<Integer> ids = changedByTier.getOrDefault(t, Set.of());
+            OverlayDependencyGraph.Affected affected = plan.graph().affected(ids);
+            if (ids.isEmpty() || affected.isEmpty()) {
+                line.append(String.format(Locale.ROOT, " %s=0/0", t.label));
+                continue;
+            }
+
+            OverlayCache.refreshPrices(gen, t, ids);
+            OverlayCache.invalidateEv(gen, t, affected.detailKeys());
+            if (affected.all())
+                OverlaySpiritShard.invalidate(gen, t);
+
+            List<Object[]> d = plan.detailTargets();
+            List<String> m = plan.mainTargets();
+            if (!affected.all()) {
+                d = new ArrayList<>();
+                for (Object[] r : plan.detailTargets())
+                    if (affected.detailKeys().contains((String) r[1]))
+                        d.add(r);
+                m = new ArrayList<>();
+                for (String k : plan.mainTargets())
+                    if (affected.mains().contains(k))
+                        m.add(k);
+            }
+            details.put(t, d);
+            mains.put(t, m);
+            line.append(String.format(Locale.ROOT, " %s=%d/%d", t.label, d.size(), m.size()));
+        }
+        System.out.println(line.append(" (detail/main tables)"));
+
+        OverlayCache.install(gen);
+        OverlayCache.getOrFillImageCache(anyChanged);
+        OverlayCache.getOrFillRarityCache(anyChanged);
+        if (!details.isEmpty())
+            runTiers(details, mains);
+        Metrics.counter("overlay_runs_total", "Overlay recompute runs", "mode", "incremental").inc();
+    }
+
+    // ---------- internals ----------
+
+    private static void runTiers(Map<Tier, List<Object[]>> details, Map<Tier, List<String>> mains) {
         // single run profiler (aggregates tiers + problem log)
         OverlayProfiler.Run run = new OverlayProfiler.Run();
 
         // writer with batching & in-queue de-dupe (own thread)
         try (OverlayUpsertQueue writer = OverlayUpsertQueue.startDefault()) {
-
-            // Preload & plan once for the full run (fills caches for all tiers)
-            OverlayRunPlanner.Plan plan = OverlayRunPlanner.plan(TIERS);
-
-            ExecutorService pool = Executors.newFixedThreadPool(Math.min(TIER_THREADS, Math.max(1, TIERS.length)));
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(TIER_THREADS, Math.max(1, details.size())));
             try {
-                for (Tier t : TIERS) {
+                for (Tier t : details.keySet()) {
                     pool.submit(new OverlayTierRunner(
                             t,
-                            plan.detailTargets(),
-                            plan.mainTargets(),
+                            details.get(t),
+                            mains.get(t),
                             writer,
                             run,
                             PROFILE));
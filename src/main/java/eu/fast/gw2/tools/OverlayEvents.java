@@ -0,0 +1,55 @@
+package eu.fast.gw2.tools;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process notifications for overlay writes.
+ * - fired by the overlay DAOs after commit, only for rows whose content changed
+ * - listeners run on the writer thread, so keep them cheap (invalidate, bump)
+ */
+public final class OverlayEvents {
+
+    public interface Listener {
+        /** tables_overlay row(s) for (pageId, tier) changed. */
+        default void mainChanged(int pageId, String tier) {
+        }
+
+        /** detail_tables_overlay row for (fid, key, tier) changed. */
+        default void detailChanged(long fid, String key, String tier) {
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    public static void addListener(Listener l) {
+        if (l != null)
+            LISTENERS.addIfAbsent(l);
+    }
+
+    public static void removeListener(Listener l) {
+        LISTENERS.remove(l);
+    }
+
+    public static void mainChanged(int pageId, String tier) {
+        for (Listener l : LISTENERS) {
+            try {
+                l.mainChanged(pageId, tier);
+            } catch (RuntimeException e) {
+                System.err.println("Overlay EVENTS: main listener failed -> " + e.getMessage());
+            }
+        }
+    }
+
+    public static void detailChanged(long fid, String key, String tier) {
+        for (Listener l : LISTENERS) {
+            try {
+                l.detailChanged(fid, key, tier);
+            } catch (RuntimeException e) {
+                System.err.println("Overlay EVENTS: detail listener failed -> " + e.getMessage());
+            }
+        }
+    }
+
+    private OverlayEvents() {
+    }
+}
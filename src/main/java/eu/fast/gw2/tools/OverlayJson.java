@@ -1,10 +1,15 @@
 package eu.fast.gw2.tools;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 
 public class OverlayJson {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
@@ -25,4 +30,24 @@ public class OverlayJson {
             throw new RuntimeException(e);
         }
     }
+
+    /** Base rows merged with their computed columns (see OverlayTableColumns.writeRows). */
+    static String toJson(List<Map<String, Object>> base, OverlayTableColumns cols) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(new JsonSerializable.Base() {
+                @Override
+                public void serialize(JsonGenerator g, SerializerProvider p) throws IOException {
+                    cols.writeRows(g, base);
+                }
+
+                @Override
+                public void serializeWithType(JsonGenerator g, SerializerProvider p, TypeSerializer t)
+                        throws IOException {
+                    serialize(g, p);
+                }
+            });
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
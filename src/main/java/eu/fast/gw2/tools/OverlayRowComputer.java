@@ -1,11 +1,8 @@
 package eu.fast.gw2.tools;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import eu.fast.gw2.dao.CalculationsDao;
 import eu.fast.gw2.enums.Tier;
 
 public final class OverlayRowComputer {
@@ -13,271 +10,142 @@ public final class OverlayRowComputer {
     private OverlayRowComputer() {
     }
 
-    private static final double MIN_COPPER = 0.5;
-
     // -------- compute core --------
+    /** Per tier inputs shared by every table of the tier. */
     static final class ComputeContext {
-        final boolean isMain;
         final Tier tier;
-        /** MAIN: "pageId|pageName"; DETAIL: key */
-        final String tableKey;
-        /** DETAIL: fid; MAIN: null */
-        final Long detailFeatureIdOrNull;
-        /** Table-level config used only for taxes fallback */
-        final CalculationsDao.Config tableConfig;
         final Map<Integer, int[]> priceByItemId;
         final Map<Integer, String> imageUrlByItemId;
         final Map<Integer, String> rarityByItemId;
 
-        ComputeContext(boolean isMain, Tier tier, String tableKey, Long detailFeatureIdOrNull,
-                CalculationsDao.Config tableConfig, Map<Integer, int[]> priceByItemId,
+        ComputeContext(Tier tier, Map<Integer, int[]> priceByItemId,
                 Map<Integer, String> imageUrlByItemId, Map<Integer, String> rarityByItemId) {
-            this.isMain = isMain;
             this.tier = tier;
-            this.tableKey = tableKey;
-            this.detailFeatureIdOrNull = detailFeatureIdOrNull;
-            this.tableConfig = tableConfig;
             this.priceByItemId = priceByItemId;
             this.imageUrlByItemId = imageUrlByItemId;
             this.rarityByItemId = rarityByItemId;
         }
     }
 
-    static void computeRow(Map<String, Object> row, ComputeContext ctx, int rowIndex,
-            OverlayProfiler.Tier prof, OverlayProfiler.Run run) {
-
-        String rawCategory = OverlayHelper.str(row.get(OverlayHelper.COL_CAT));
-        String rawKey = OverlayHelper.str(row.get(OverlayHelper.COL_KEY));
-        int itemId = OverlayHelper.toInt(row.get(OverlayHelper.COL_ID), -1);
-
-        // enrich image/rarity if we can (safe; does not touch profit numbers)
-        if (itemId > 0) {
-            String imageUrl = ctx.imageUrlByItemId.get(itemId);
-            if (imageUrl != null && !imageUrl.isBlank())
-                row.put(OverlayHelper.COL_IMAGE, imageUrl);
-            String rarity = ctx.rarityByItemId.get(itemId);
-            if (rarity != null && !rarity.isBlank())
-                row.put(OverlayHelper.COL_RARITY, rarity);
-        }
-
-        // UNCHECKED -> do not overwrite profit values
-        if ("UNCHECKED".equalsIgnoreCase(rawCategory)) {
-            if (prof != null)
-                prof.fastItem++;
-            return;
-        }
-
-        // Resolve effective (category,key) deterministically
-        String effCategory;
-        String effKey;
-
-        if ("INTERNAL".equalsIgnoreCase(rawCategory)) {
-            if (ctx.isMain) {
-                int pageId = OverlayDBAccess.pageIdFromComposite(ctx.tableKey);
-                String pageName = OverlayDBAccess.pageNameFromComposite(ctx.tableKey);
-                String featureName = OverlayDBAccess.featureNameByPageId(pageId);
-                effCategory = "INTERNAL";
-                effKey = (featureName == null ? "" : featureName) + "/" + (pageName == null ? "" : pageName);
-            } else {
-                effCategory = "INTERNAL";
-                effKey = (rawKey == null ? "" : rawKey);
-            }
-        } else if ("NEGATIVE".equalsIgnoreCase(rawCategory)) {
-            effCategory = "NEGATIVE";
-            effKey = (rawKey == null ? "" : rawKey);
-        } else {
-            // All other categories resolved via detail_features
-            if (ctx.isMain) {
-                // MAIN: find detail feature by row's key
-                String dfName = OverlayDBAccess.detailFeatureNameByKey(rawKey);
-                effCategory = (dfName == null ? "" : dfName);
-                effKey = (rawKey == null ? "" : rawKey);
-            } else {
-                // DETAIL: we have fid
-                String dfName = (ctx.detailFeatureIdOrNull == null) ? null
-                        : OverlayDBAccess.detailFeatureNameById(ctx.detailFeatureIdOrNull);
-                effCategory = (dfName == null ? "" : dfName);
-                effKey = (rawKey == null ? "" : rawKey);
-            }
-        }
-
-        // NEGATIVE: untaxed, negative unit prices × AvgAmount
-        if ("NEGATIVE".equalsIgnoreCase(effCategory)) {
-            double qty = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
-            int[] ps = (itemId > 0) ? ctx.priceByItemId.getOrDefault(itemId, new int[] { 0, 0 }) : new int[] { 0, 0 };
-            int unitBuy = (ps.length > 0 ? ps[0] : 0);
-            int unitSell = (ps.length > 1 ? ps[1] : 0);
-            int buy = (int) Math.round(-qty * unitBuy);
-            int sell = (int) Math.round(-qty * unitSell);
-
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, buy, sell, buy, sell);
-            else
-                OverlayHelper.writeFour(row, buy, sell, buy, sell);
-
-            writeSpiritShardAugments(row, ctx);
-            if (prof != null)
-                prof.fastItem++;
-            return;
-        }
-
-        // Taxes now based on resolved (category,key)
-        int taxesPct = OverlayCalc.pickTaxesPercent(effCategory, effKey, ctx.tableConfig);
-
-        // LEAF/meta rows:
-        // (a) both category and key blank (pure LEAF marker), OR
-        // (b) effective key is blank AND there is no valid item id (header/meta rows
-        // like Duration/Map Reward)
-        if (((effCategory == null || effCategory.isBlank()) && (effKey == null || effKey.isBlank()))
-                || ((effKey == null || effKey.isBlank()) && itemId <= 0)) {
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, 0, 0, 0, 0);
-            else
-                OverlayHelper.writeFour(row, 0, 0, 0, 0);
-            writeSpiritShardAugments(row, ctx);
-            if (prof != null)
-                prof.fastItem++;
-            return;
-        }
-
-        // INTERNAL composite (MAIN) or general composite ref: EV path using seeded
-        // operation
-        boolean isCompositeRef = (effKey != null && !effKey.isBlank()
-                && ("INTERNAL".equalsIgnoreCase(effCategory) || !OverlayHelper.isInternal(effCategory)));
-
-        if (isCompositeRef) {
-            // Pull op from public.calculations (seeded); INTERNAL always MAX by rule.
-            String op = OverlayCalc.pickAggregationOp(effCategory, effKey);
-
-            int[] ev = OverlayCalc.evForDetail(effKey, ctx.priceByItemId, taxesPct, ctx.tier.columnKey(), op);
-            int evBuy = (ev != null && ev.length > 0) ? ev[0] : 0;
-            int evSell = (ev != null && ev.length > 1) ? ev[1] : 0;
-
-            int IB_TPB = evBuy, IS_TPB = evBuy, IB_TPS = evSell, IS_TPS = evSell;
-
-            if (!ctx.isMain) {
-                double qty = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
-                IB_TPB = (int) Math.round(IB_TPB * qty);
-                IS_TPB = (int) Math.round(IS_TPB * qty);
-                IB_TPS = (int) Math.round(IB_TPS * qty);
-                IS_TPS = (int) Math.round(IS_TPS * qty);
-            }
-
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-            else
-                OverlayHelper.writeFour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-
-            writeSpiritShardAugments(row, ctx);
-            if (prof != null)
-                prof.fastComposite++;
-            return;
-        }
-
-        // Plain item (no composite key) path
-        boolean looksPlainItem = (effKey == null || effKey.isBlank()) && itemId > 0;
-        if (looksPlainItem) {
-            int[] ps = ctx.priceByItemId.get(itemId);
-            int tpb = (ps == null || ps.length < 1) ? 0 : Math.max(0, ps[0]);
-            int tps = (ps == null || ps.length < 2) ? 0 : Math.max(0, ps[1]);
-            int sellNet = netSellAfterTax(tps, taxesPct);
-
-            if (tpb == 0 && sellNet == 0) {
-                Integer vv = OverlayCache.vendorValueCached(itemId);
-                if (vv != null && vv > 0)
-                    sellNet = vv;
-            }
-
-            int IB_TPB = tpb, IS_TPB = tpb, IB_TPS = sellNet, IS_TPS = sellNet;
-
-            if (!ctx.isMain) {
-                double qty = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
-                IB_TPB = (int) Math.round(IB_TPB * qty);
-                IS_TPB = (int) Math.round(IS_TPB * qty);
-                IB_TPS = (int) Math.round(IB_TPS * qty);
-                IS_TPS = (int) Math.round(IS_TPS * qty);
+    /**
+     * Computes all rows of one table into cols (reset first); base.get(i) is
+     * plan row i and is only read. Every EV slot is resolved at most once.
+     */
+    static void computeTable(OverlayTablePlan plan, List<Map<String, Object>> base, OverlayTableColumns cols,
+            ComputeContext ctx, OverlayProfiler.Tier prof, OverlayProfiler.Run run) {
+        cols.reset(plan);
+        final boolean isMain = plan.isMain;
+        final Map<Integer, int[]> prices = ctx.priceByItemId;
+        final int[] shard = OverlaySpiritShard.getShardUnitPair(ctx.tier, prices);
+        final int shardBuyUnit = (shard == null || shard.length < 1) ? 0 : shard[0];
+        final int shardSellUnit = (shard == null || shard.length < 2) ? 0 : shard[1];
+        final int[][] ev = new int[plan.slotKey.length][];
+
+        for (int i = 0; i < plan.size; i++) {
+            int itemId = plan.itemId[i];
+            double qty = plan.qty[i];
+
+            // enrich image/rarity if we can (safe; does not touch profit numbers)
+            if (itemId > 0) {
+                String imageUrl = ctx.imageUrlByItemId.get(itemId);
+                if (imageUrl != null && !imageUrl.isBlank())
+                    cols.image[i] = imageUrl;
+                String rarity = ctx.rarityByItemId.get(itemId);
+                if (rarity != null && !rarity.isBlank())
+                    cols.rarity[i] = rarity;
             }
 
-            if (Math.abs(IB_TPB) < MIN_COPPER && Math.abs(IS_TPB) < MIN_COPPER
-                    && Math.abs(IB_TPS) < MIN_COPPER && Math.abs(IS_TPS) < MIN_COPPER) {
-                if (ctx.isMain)
-                    OverlayHelper.writeFourWithHour(row, 0, 0, 0, 0);
-                else
-                    OverlayHelper.writeFour(row, 0, 0, 0, 0);
-                writeSpiritShardAugments(row, ctx);
-                if (prof != null)
-                    prof.belowCutoff++;
-                return;
+            int IB_TPB, IS_TPB, IB_TPS, IS_TPS;
+            switch (plan.kind[i]) {
+                case UNCHECKED -> {
+                    // do not overwrite profit values (they still count for the TOTAL)
+                    if (plan.baseCells[i] != 0)
+                        cols.load(i, base.get(i), plan.baseCells[i]);
+                    if (prof != null)
+                        prof.fastItem++;
+                    continue;
+                }
+                case NEGATIVE -> {
+                    // untaxed, negative unit prices × AverageAmount
+                    int[] ps = (itemId > 0) ? prices.get(itemId) : null;
+                    int unitBuy = (ps != null && ps.length > 0 ? ps[0] : 0);
+                    int unitSell = (ps != null && ps.length > 1 ? ps[1] : 0);
+                    int buy = (int) Math.round(-qty * unitBuy);
+                    int sell = (int) Math.round(-qty * unitSell);
+                    IB_TPB = IB_TPS = buy;
+                    IS_TPB = IS_TPS = sell;
+                    if (prof != null)
+                        prof.fastItem++;
+                }
+                case ZERO -> {
+                    IB_TPB = IS_TPB = IB_TPS = IS_TPS = 0;
+                    if (prof != null)
+                        prof.fastItem++;
+                }
+                case COMPOSITE, INTERNAL -> {
+                    int slot = plan.evSlot[i];
+                    int[] e = ev[slot];
+                    if (e == null)
+                        e = ev[slot] = OverlayCalc.evForDetail(plan.slotKey[slot], prices, plan.slotTaxes[slot],
+                                ctx.tier.columnKey(), plan.slotOp[slot]);
+                    IB_TPB = IS_TPB = (e != null && e.length > 0) ? e[0] : 0;
+                    IB_TPS = IS_TPS = (e != null && e.length > 1) ? e[1] : 0;
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(IB_TPB * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(IB_TPS * qty);
+                    }
+                    if (prof != null)
+                        prof.fastComposite++;
+                }
+                case LEAF -> {
+                    int[] ps = prices.get(itemId);
+                    int tpb = (ps == null || ps.length < 1) ? 0 : Math.max(0, ps[0]);
+                    int tps = (ps == null || ps.length < 2) ? 0 : Math.max(0, ps[1]);
+                    int sellNet = netSellAfterTax(tps, plan.taxes[i]);
+                    if (tpb == 0 && sellNet == 0) {
+                        Integer vv = OverlayCache.vendorValueCached(itemId);
+                        if (vv != null && vv > 0)
+                            sellNet = vv;
+                    }
+                    IB_TPB = IS_TPB = tpb;
+                    IB_TPS = IS_TPS = sellNet;
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(tpb * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(sellNet * qty);
+                    }
+                    if (IB_TPB == 0 && IB_TPS == 0) { // below the 0.5 copper cutoff
+                        if (prof != null)
+                            prof.belowCutoff++;
+                    } else if (prof != null) {
+                        prof.fastItem++;
+                    }
+                }
+                default -> { // DSL (STRICT) using resolved (category,key)
+                    Map<String, Object> row = base.get(i);
+                    var eval = OverlayDslEngine.evaluateRowStrict(plan.dslCategory[i], plan.dslKey[i], row, ctx.tier,
+                            plan.taxes[i], prices);
+                    if (eval == null) {
+                        write(plan, base, cols, i, 0, 0, 0, 0, shardBuyUnit, shardSellUnit);
+                        if (run != null)
+                            run.recordProblem(isMain, plan.tableKey, plan.detailFeatureIdOrNull, i, row,
+                                    plan.taxes[i], "missing_formulas");
+                        continue;
+                    }
+                    IB_TPB = IS_TPB = eval.buy();
+                    IB_TPS = IS_TPS = eval.sell();
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(IB_TPB * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(IB_TPS * qty);
+                    }
+                    if (IB_TPB == 0 && IB_TPS == 0 && prof != null) // below the 0.5 copper cutoff
+                        prof.belowCutoff++;
+                }
             }
-
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-            else
-                OverlayHelper.writeFour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-
-            writeSpiritShardAugments(row, ctx);
-            if (prof != null)
-                prof.fastItem++;
-            return;
-        }
-
-        // DSL fallback (STRICT) using resolved (category,key)
-        var eval = OverlayDslEngine.evaluateRowStrict(effCategory, effKey, row, ctx.tier, taxesPct, ctx.priceByItemId);
-        if (eval == null) {
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, 0, 0, 0, 0);
-            else
-                OverlayHelper.writeFour(row, 0, 0, 0, 0);
-            writeSpiritShardAugments(row, ctx);
-            if (run != null)
-                run.recordProblem(ctx.isMain, ctx.tableKey, ctx.detailFeatureIdOrNull, rowIndex, row, taxesPct,
-                        "missing_formulas");
-            return;
-        }
-
-        int IB_TPB = eval.buy(), IS_TPB = eval.buy(), IB_TPS = eval.sell(), IS_TPS = eval.sell();
-
-        if (!ctx.isMain) {
-            double qty = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
-            IB_TPB = (int) Math.round(IB_TPB * qty);
-            IS_TPB = (int) Math.round(IS_TPB * qty);
-            IB_TPS = (int) Math.round(IB_TPS * qty);
-            IS_TPS = (int) Math.round(IS_TPS * qty);
+            write(plan, base, cols, i, IB_TPB, IS_TPB, IB_TPS, IS_TPS, shardBuyUnit, shardSellUnit);
         }
-
-        if (Math.abs(IB_TPB) < MIN_COPPER && Math.abs(IS_TPB) < MIN_COPPER
-                && Math.abs(IB_TPS) < MIN_COPPER && Math.abs(IS_TPS) < MIN_COPPER) {
-            if (ctx.isMain)
-                OverlayHelper.writeFourWithHour(row, 0, 0, 0, 0);
-            else
-                OverlayHelper.writeFour(row, 0, 0, 0, 0);
-            writeSpiritShardAugments(row, ctx);
-            if (prof != null)
-                prof.belowCutoff++;
-            return;
-        }
-
-        if (ctx.isMain)
-            OverlayHelper.writeFourWithHour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-        else
-            OverlayHelper.writeFour(row, IB_TPB, IS_TPB, IB_TPS, IS_TPS);
-
-        writeSpiritShardAugments(row, ctx);
-        if (run != null)
-            run.recordProblemIfZero(ctx.isMain, ctx.tableKey, ctx.detailFeatureIdOrNull, rowIndex, row, taxesPct,
-                    "computed_zero");
     }
 
-    // -------- helpers used by runners --------
-
-    static List<Map<String, Object>> deepCopyRows(List<Map<String, Object>> base) {
-        if (base == null || base.isEmpty())
-            return new ArrayList<>();
-        List<Map<String, Object>> out = new ArrayList<>(base.size());
-        for (Map<String, Object> r : base)
-            out.add(new LinkedHashMap<>(r));
-        return out;
-    }
+    // -------- helpers --------
 
     private static int netSellAfterTax(int tps, int taxesPct) {
         if (taxesPct <= 0)
@@ -285,60 +153,46 @@ public final class OverlayRowComputer {
         return (int) Math.floor(tps * (100.0 - OverlayHelper.clampPercent(taxesPct)) / 100.0);
     }
 
-    private static void writeSpiritShardAugments(Map<String, Object> row, ComputeContext ctx) {
-        int base_IS_TPB = OverlayHelper.toInt(row.get(OverlayHelper.COL_ITEM_SELL_TPBUY), 0);
-        int base_IB_TPB = OverlayHelper.toInt(row.get(OverlayHelper.COL_ITEM_BUY_TPBUY), 0);
-        int base_IS_TPS = OverlayHelper.toInt(row.get(OverlayHelper.COL_ITEM_SELL_TPSELL), 0);
-        int base_IB_TPS = OverlayHelper.toInt(row.get(OverlayHelper.COL_ITEM_BUY_TPSELL), 0);
-
-        int itemId = OverlayHelper.toInt(row.get(OverlayHelper.COL_ID), -1);
-        boolean isSpiritShardRow = (itemId == 23);
-
-        int[] shard = OverlaySpiritShard.getShardUnitPair(ctx.tier, ctx.priceByItemId);
-        int shardBuyUnit = (shard == null || shard.length < 1) ? 0 : shard[0];
-        int shardSellUnit = (shard == null || shard.length < 2) ? 0 : shard[1];
-
-        double avg = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
-        int deltaBuy = (int) Math.round(avg * shardBuyUnit);
-        int deltaSell = (int) Math.round(avg * shardSellUnit);
-
-        if (isSpiritShardRow) {
-            base_IS_TPB = base_IB_TPB = base_IS_TPS = base_IB_TPS = 0;
-
-            if (ctx.isMain) {
-                row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_HR, 0);
-                row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_HR, 0);
-                row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_HR, 0);
-                row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_HR, 0);
+    /**
+     * Sets the four profit columns (+Hr on MAIN) and their Spirit Shard
+     * augments (wSS, +Hr on MAIN) of row i. The Spirit Shard row itself
+     * (id 23) gets zero base values and only the augment. Base cells that are
+     * not written (Hr on DETAIL) still count for the TOTAL.
+     */
+    private static void write(OverlayTablePlan plan, List<Map<String, Object>> base, OverlayTableColumns cols, int i,
+            int IB_TPB, int IS_TPB, int IB_TPS, int IS_TPS, int shardBuyUnit, int shardSellUnit) {
+        final boolean isMain = plan.isMain;
+        final double qty = plan.qty[i], hours = plan.hours[i];
+        if (plan.itemId[i] == 23)
+            IB_TPB = IS_TPB = IB_TPS = IS_TPS = 0;
+
+        final int[][] v = cols.v;
+        v[OverlayTableColumns.IB_TPB][i] = IB_TPB;
+        v[OverlayTableColumns.IS_TPB][i] = IS_TPB;
+        v[OverlayTableColumns.IB_TPS][i] = IB_TPS;
+        v[OverlayTableColumns.IS_TPS][i] = IS_TPS;
+
+        int deltaBuy = (int) Math.round(qty * shardBuyUnit);
+        int deltaSell = (int) Math.round(qty * shardSellUnit);
+        final int w = OverlayTableColumns.WSS;
+        v[w + OverlayTableColumns.IB_TPB][i] = IB_TPB + deltaBuy;
+        v[w + OverlayTableColumns.IS_TPB][i] = IS_TPB + deltaBuy;
+        v[w + OverlayTableColumns.IB_TPS][i] = IB_TPS + deltaSell;
+        v[w + OverlayTableColumns.IS_TPS][i] = IS_TPS + deltaSell;
+
+        if (isMain) {
+            for (int c = 0; c < 4; c++) {
+                v[OverlayTableColumns.HR + c][i] = perHour(v[c][i], hours);
+                v[OverlayTableColumns.WSS_HR + c][i] = perHour(v[w + c][i], hours);
             }
-
-            row.put(OverlayHelper.COL_ITEM_SELL_TPBUY, 0);
-            row.put(OverlayHelper.COL_ITEM_BUY_TPBUY, 0);
-            row.put(OverlayHelper.COL_ITEM_SELL_TPSELL, 0);
-            row.put(OverlayHelper.COL_ITEM_BUY_TPSELL, 0);
         }
+        int mask = isMain ? OverlayTableColumns.MAIN_MASK : OverlayTableColumns.DETAIL_MASK;
+        cols.present[i] = cols.written[i] = mask;
+        if ((plan.baseCells[i] & ~mask) != 0)
+            cols.load(i, base.get(i), plan.baseCells[i] & ~mask);
+    }
 
-        int IS_TPB_wSS = base_IS_TPB + deltaBuy;
-        int IB_TPB_wSS = base_IB_TPB + deltaBuy;
-        int IS_TPS_wSS = base_IS_TPS + deltaSell;
-        int IB_TPS_wSS = base_IB_TPS + deltaSell;
-
-        row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_WSS, IS_TPB_wSS);
-        row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_WSS, IB_TPB_wSS);
-        row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_WSS, IS_TPS_wSS);
-        row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_WSS, IB_TPS_wSS);
-
-        if (ctx.isMain) {
-            double hours = OverlayHelper.toDouble(row.get(OverlayHelper.COL_HOURS), 0.0);
-
-            row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_WSS_HR,
-                    (hours > 0.0) ? (int) Math.floor(IS_TPB_wSS / hours) : IS_TPB_wSS);
-            row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_WSS_HR,
-                    (hours > 0.0) ? (int) Math.floor(IB_TPB_wSS / hours) : IB_TPB_wSS);
-            row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_WSS_HR,
-                    (hours > 0.0) ? (int) Math.floor(IS_TPS_wSS / hours) : IS_TPS_wSS);
-            row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_WSS_HR,
-                    (hours > 0.0) ? (int) Math.floor(IB_TPS_wSS / hours) : IB_TPS_wSS);
-        }
+    private static int perHour(int v, double hours) {
+        return (hours > 0.0) ? (int) Math.floor(v / hours) : v;
     }
 }
@@ -0,0 +1,113 @@
+package eu.fast.gw2.tools;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.fast.gw2.dao.CalculationsDao;
+
+/**
+ * One generation of run-scoped overlay data. OverlayRunPlanner.plan creates a
+ * fresh one per full run and OverlayCache.install swaps it in; the previous
+ * generation is unreachable (and collectable) from then on.
+ * - base rows + calculations (and the table plans compiled from them): read
+ * from the DB once per full run, shared by the incremental generations
+ * derived from it (carryOver); detail rows only live in the bounded
+ * DetailRowsCache (overlay.detailCacheMax / overlay.detailCacheMaxRows)
+ * - prices, EVs, vendor values, Spirit Shard pairs: copied by carryOver, then
+ * patched for what changed
+ * Images/rarities/names are not run data; they live in their own caches with a TTL.
+ */
+final class OverlayRunCache {
+
+    private static final int DETAIL_CACHE_MAX = Integer.getInteger("overlay.detailCacheMax", 4096);
+    private static final long DETAIL_CACHE_MAX_ROWS = Long.getLong("overlay.detailCacheMaxRows", 250_000);
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /** Stored for items without a vendor value (ConcurrentHashMap has no null values). */
+    static final int NO_VENDOR = Integer.MIN_VALUE;
+
+    final long id = IDS.incrementAndGet();
+    final long createdAtMs = System.currentTimeMillis();
+    /** Id of the full run generation this one was derived from (== id for a full run). */
+    final long baseId;
+
+    // ---------- per full run (shared by carryOver) ----------
+    final Map<String, List<Map<String, Object>>> mainRowsBase;
+    final DetailRowsCache detailRows; // bounded; the only store of parsed detail rows
+    final Set<Integer> detailItemIds; // item ids of the preloaded detail rows
+    final Map<String, CalculationsDao.Config> calcs;
+    volatile boolean calcsPreloaded;
+    final ConcurrentHashMap<String, OverlayTablePlan> plans; // "D|fid|key" / "M|pageId|name"
+
+    // ---------- per run ----------
+    final ConcurrentHashMap<String, ConcurrentHashMap<Integer, int[]>> pricesByTier = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, int[]> ev = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Integer, Integer> vendor = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, int[]> shard = new ConcurrentHashMap<>();
+
+    private OverlayRunCache(long baseId,
+            Map<String, List<Map<String, Object>>> mainRowsBase,
+            DetailRowsCache detailRows,
+            Set<Integer> detailItemIds,
+            Map<String, CalculationsDao.Config> calcs,
+            boolean calcsPreloaded,
+            ConcurrentHashMap<String, OverlayTablePlan> plans) {
+        this.baseId = (baseId == 0) ? id : baseId;
+        this.mainRowsBase = mainRowsBase;
+        this.detailRows = detailRows;
+        this.detailItemIds = detailItemIds;
+        this.calcs = calcs;
+        this.calcsPreloaded = calcsPreloaded;
+        this.plans = plans;
+    }
+
+    /** Empty generation for a full run: everything is read again. */
+    static OverlayRunCache fresh() {
+        return new OverlayRunCache(0,
+                new ConcurrentHashMap<>(),
+                new DetailRowsCache(DETAIL_CACHE_MAX, DETAIL_CACHE_MAX_ROWS),
+                ConcurrentHashMap.newKeySet(),
+                new HashMap<>(),
+                false,
+                new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Next generation for an incremental run: same base rows and calculations,
+     * copies of prices/EVs/vendor/shard for the caller to invalidate.
+     */
+    OverlayRunCache carryOver() {
+        OverlayRunCache next = new OverlayRunCache(baseId, mainRowsBase, detailRows, detailItemIds, calcs,
+                calcsPreloaded, plans);
+        for (var e : pricesByTier.entrySet())
+            next.pricesByTier.put(e.getKey(), new ConcurrentHashMap<>(e.getValue()));
+        next.ev.putAll(ev);
+        next.vendor.putAll(vendor);
+        next.shard.putAll(shard);
+        return next;
+    }
+
+    Map<String, Object> stats() {
+        int prices = 0;
+        for (var m : pricesByTier.values())
+            prices += m.size();
+        var out = new LinkedHashMap<String, Object>();
+        out.put("generation", id);
+        out.put("base", baseId);
+        out.put("ageSec", (System.currentTimeMillis() - createdAtMs) / 1000);
+        out.put("mainTables", mainRowsBase.size());
+        out.put("detailItemIds", detailItemIds.size());
+        out.put("calcs", calcs.size());
+        out.put("plans", plans.size());
+        out.put("prices", prices);
+        out.put("evs", ev.size());
+        out.put("vendor", vendor.size());
+        out.put("detailRowsCache", detailRows.stats());
+        return out;
+    }
+}
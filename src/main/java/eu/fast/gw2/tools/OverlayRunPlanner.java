@@ -8,11 +8,18 @@ import eu.fast.gw2.enums.Tier;
 
 public final class OverlayRunPlanner {
 
-    public record Plan(List<Object[]> detailTargets, List<String> mainTargets) {
+    public record Plan(List<Object[]> detailTargets, List<String> mainTargets, OverlayDependencyGraph graph) {
     }
 
-    /** Preloads calcs, targets, base rows, and warms caches for all tiers. */
+    /**
+     * Preloads calcs, targets, base rows, and warms caches for all tiers; also
+     * builds the item -> table dependency graph used by incremental runs.
+     * Everything is read into a fresh run generation, swapped in first.
+     */
     public static Plan plan(Tier[] tiers) {
+        OverlayCache.install(OverlayRunCache.fresh());
+        OverlayCache.expireStaticData();
+
         // Preload formulas
         OverlayCalc.preloadAll();
         var detailTargets = OverlayDBAccess.listDetailTargets();
@@ -27,6 +34,10 @@ public final class OverlayRunPlanner {
         }
         OverlayCache.preloadDetailRows(allDetailKeys);
         OverlayCache.preloadMainRows(mainTargets);
+        long g0 = System.currentTimeMillis();
+        var graph = OverlayDependencyGraph.build(detailTargets, mainTargets);
+        System.out.printf(java.util.Locale.ROOT, "Overlay dependency graph: %d items, %d edges in %.1fs%n",
+                graph.items(), graph.edges(), (System.currentTimeMillis() - g0) / 1000.0);
 
         // Warm shared caches (images/rarities once; prices per tier)
         Set<Integer> allIds = OverlayCache.collectAllItemIdsFromPreloaded();
@@ -36,7 +47,7 @@ public final class OverlayRunPlanner {
             OverlayCache.getOrFillPriceCache(allIds, t);
         }
 
-        return new Plan(detailTargets, mainTargets);
+        return new Plan(detailTargets, mainTargets, graph);
     }
 
     private OverlayRunPlanner() {
@@ -4,22 +4,20 @@ import eu.fast.gw2.enums.Tier;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Spirit Shard unit profit pair [buyUnit, sellUnit] per tier.
  * - Always reads from detail key "spirit-shard".
  * - MAX across all LEAF candidates (unit-level, taxes=0).
  * - Does NOT multiply by AverageAmount (that's applied by the consumer row).
+ * - Cached per run generation (OverlayRunCache.shard).
  */
 final class OverlaySpiritShard {
 
-    /** Cache per tier label -> [buyUnit, sellUnit] */
-    private static final ConcurrentHashMap<String, int[]> CACHE = new ConcurrentHashMap<>();
-
     static int[] getShardUnitPair(Tier tier, Map<Integer, int[]> priceMap) {
         final String k = tier.label;
-        int[] cached = CACHE.get(k);
+        final Map<String, int[]> cache = OverlayCache.current().shard; // tier label -> [buyUnit, sellUnit]
+        int[] cached = cache.get(k);
         if (cached != null)
             return cached;
 
@@ -30,7 +28,7 @@ final class OverlaySpiritShard {
         List<Map<String, Object>> rows = OverlayCache.getBaseDetailRows(sourceKey);
         if (rows == null || rows.isEmpty()) {
             int[] zero = new int[] { 0, 0 };
-            CACHE.put(k, zero);
+            cache.put(k, zero);
             return zero;
         }
 
@@ -63,10 +61,15 @@ final class OverlaySpiritShard {
         }
 
         int[] out = new int[] { maxBuy, maxSell };
-        CACHE.put(k, out);
+        cache.put(k, out);
         return out;
     }
 
+    /** Forget the pair for this tier (its candidate prices changed). */
+    static void invalidate(OverlayRunCache gen, Tier tier) {
+        gen.shard.remove(tier.label);
+    }
+
     private OverlaySpiritShard() {
     }
 }
@@ -0,0 +1,257 @@
+package eu.fast.gw2.tools;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Computed profit columns of one overlay table, struct-of-arrays.
+ * - one int[] per profit column: base, Hr, wSS, wSS Hr, each group in the
+ * order IB_TPB, IS_TPB, IB_TPS, IS_TPS (so column c's Hr is c + HR)
+ * - per row, a bitmask of the cells that count towards the TOTAL (present)
+ * and of the cells that replace the base row's value (written); base cells
+ * that are not written (UNCHECKED rows, Hr columns of DETAIL rows) are
+ * present as is
+ * - AverageAmount/Duration are the plan's double[] columns
+ * Base rows are never copied: they are merged with these columns only when
+ * the table is serialized (writeRows). One instance per tier runner, reused
+ * for all of its tables.
+ */
+final class OverlayTableColumns {
+
+    static final int IB_TPB = 0, IS_TPB = 1, IB_TPS = 2, IS_TPS = 3;
+    static final int HR = 4, WSS = 8, WSS_HR = 12;
+    static final int COLUMNS = 16;
+
+    /** written by computeTable: DETAIL base + wSS, MAIN all four groups */
+    static final int DETAIL_MASK = 0x0F0F;
+    static final int MAIN_MASK = 0xFFFF;
+
+    private static final String[] NAMES = {
+            OverlayHelper.COL_ITEM_BUY_TPBUY, OverlayHelper.COL_ITEM_SELL_TPBUY,
+            OverlayHelper.COL_ITEM_BUY_TPSELL, OverlayHelper.COL_ITEM_SELL_TPSELL,
+            OverlayHelper.COL_ITEM_BUY_TPBUY_HR, OverlayHelper.COL_ITEM_SELL_TPBUY_HR,
+            OverlayHelper.COL_ITEM_BUY_TPSELL_HR, OverlayHelper.COL_ITEM_SELL_TPSELL_HR,
+            OverlayHelper.COL_ITEM_BUY_TPBUY_WSS, OverlayHelper.COL_ITEM_SELL_TPBUY_WSS,
+            OverlayHelper.COL_ITEM_BUY_TPSELL_WSS, OverlayHelper.COL_ITEM_SELL_TPSELL_WSS,
+            OverlayHelper.COL_ITEM_BUY_TPBUY_WSS_HR, OverlayHelper.COL_ITEM_SELL_TPBUY_WSS_HR,
+            OverlayHelper.COL_ITEM_BUY_TPSELL_WSS_HR, OverlayHelper.COL_ITEM_SELL_TPSELL_WSS_HR };
+    private static final Map<String, Integer> INDEX = new HashMap<>();
+    static {
+        for (int c = 0; c < COLUMNS; c++)
+            INDEX.put(NAMES[c], c);
+    }
+
+    final int[][] v = new int[COLUMNS][];
+    int[] present;
+    int[] written;
+    String[] image; // null = keep the base row's
+    String[] rarity;
+    double[] qty;
+    double[] hours;
+
+    private int size; // rows of the base table
+    private int rows; // size, +1 once a TOTAL row is appended
+    private int total; // TOTAL row once aggregated, else -1
+    private String bestBuy, bestSell;
+
+    // aggregation scratch
+    private final long[] acc = new long[COLUMNS];
+    private final int[] count = new int[COLUMNS];
+
+    OverlayTableColumns() {
+        grow(64);
+    }
+
+    /** Starts a table: no cells set, one spare row for an appended TOTAL. */
+    void reset(OverlayTablePlan plan) {
+        if (present.length < plan.size + 1)
+            grow(Math.max(plan.size + 1, present.length * 2));
+        size = rows = plan.size;
+        qty = plan.qty;
+        hours = plan.hours;
+        Arrays.fill(present, 0, size + 1, 0);
+        Arrays.fill(written, 0, size + 1, 0);
+        Arrays.fill(image, 0, size + 1, null);
+        Arrays.fill(rarity, 0, size + 1, null);
+        total = -1;
+        bestBuy = bestSell = null;
+    }
+
+    /** The row's own (parsable) values of the given columns count for the TOTAL. */
+    void load(int i, Map<String, Object> row, int columns) {
+        int mask = 0;
+        for (int c = 0; c < COLUMNS; c++)
+            if ((columns & (1 << c)) != 0 && parse(row.get(NAMES[c]), v[c], i))
+                mask |= 1 << c;
+        present[i] |= mask;
+    }
+
+    /** Columns the base row has a parsable value for. */
+    static int cellsOf(Map<String, Object> row) {
+        int[] scratch = new int[1];
+        int mask = 0;
+        for (int c = 0; c < COLUMNS; c++)
+            if (parse(row.get(NAMES[c]), scratch, 0))
+                mask |= 1 << c;
+        return mask;
+    }
+
+    /**
+     * TOTAL row (found, or appended as Key/Name "TOTAL") = op over every
+     * present cell, the TOTAL row's own included; missing Hr cells are derived
+     * from the base cell when Duration &gt; 0. BestChoice (best IB_TPB / IS_TPS
+     * label) only for MAX. Nothing happens when no row has any value.
+     */
+    void aggregate(OverlayTablePlan plan, String op) {
+        final String agg = (op == null ? "SUM" : op.toUpperCase(Locale.ROOT));
+        final boolean max = "MAX".equals(agg), min = "MIN".equals(agg);
+        Arrays.fill(count, 0);
+        Arrays.fill(acc, max ? Long.MIN_VALUE : min ? Long.MAX_VALUE : 0L);
+
+        for (int i = 0; i < size; i++) {
+            int mask = present[i];
+            if (mask == 0)
+                continue;
+            for (int c = 0; c < COLUMNS; c++) {
+                int x;
+                if ((mask & (1 << c)) != 0)
+                    x = v[c][i];
+                else if (c >= HR && c < WSS && (mask & (1 << (c - HR))) != 0 && hours[i] > 0.0)
+                    x = (int) Math.floor(v[c - HR][i] / hours[i]);
+                else
+                    continue;
+                count[c]++;
+                acc[c] = max ? Math.max(acc[c], x) : min ? Math.min(acc[c], x) : acc[c] + x;
+            }
+        }
+
+        int aggregated = 0;
+        for (int c = 0; c < COLUMNS; c++)
+            if (count[c] > 0)
+                aggregated |= 1 << c;
+        if (aggregated == 0)
+            return;
+
+        int t = plan.totalRow;
+        if (t < 0)
+            t = rows++; // appended; serialized as a new row
+        for (int c = 0; c < COLUMNS; c++) {
+            if (count[c] == 0)
+                continue;
+            v[c][t] = switch (agg) {
+                case "AVG" -> (int) Math.floor(acc[c] / (double) count[c]);
+                case "MIN", "MAX" -> (int) acc[c];
+                default -> (int) Math.min(acc[c], Integer.MAX_VALUE);
+            };
+        }
+        present[t] |= aggregated;
+        written[t] |= aggregated;
+        total = t;
+
+        if (!max)
+            return;
+        int bestBuyVal = Integer.MIN_VALUE, bestSellVal = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (plan.namedTotal[i])
+                continue;
+            if ((present[i] & (1 << IB_TPB)) != 0 && v[IB_TPB][i] > bestBuyVal) {
+                bestBuyVal = v[IB_TPB][i];
+                bestBuy = plan.label[i];
+            }
+            if ((present[i] & (1 << IS_TPS)) != 0 && v[IS_TPS][i] > bestSellVal) {
+                bestSellVal = v[IS_TPS][i];
+                bestSell = plan.label[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the table as a JSON array: each base row with its written cells
+     * (and Image/Rarity) replaced or appended, then an appended TOTAL row.
+     * On the TOTAL row BestChoiceBuy/Sell are rewritten, or dropped when blank.
+     */
+    void writeRows(JsonGenerator g, List<Map<String, Object>> base) throws IOException {
+        g.writeStartArray();
+        for (int i = 0; i < rows; i++) {
+            int pending = written[i];
+            String img = image[i], rar = rarity[i];
+            boolean isTotal = (i == total);
+
+            g.writeStartObject();
+            if (i < size) {
+                for (var e : base.get(i).entrySet()) {
+                    String k = e.getKey();
+                    Integer c = INDEX.get(k);
+                    if (c != null && (pending & (1 << c)) != 0) {
+                        g.writeNumberField(k, v[c][i]);
+                        pending &= ~(1 << c);
+                    } else if (img != null && OverlayHelper.COL_IMAGE.equals(k)) {
+                        g.writeStringField(k, img);
+                        img = null;
+                    } else if (rar != null && OverlayHelper.COL_RARITY.equals(k)) {
+                        g.writeStringField(k, rar);
+                        rar = null;
+                    } else if (!(isTotal && (OverlayHelper.COL_BEST_BUY.equals(k)
+                            || OverlayHelper.COL_BEST_SELL.equals(k)))) {
+                        g.writeFieldName(k);
+                        g.writeObject(e.getValue());
+                    }
+                }
+            } else {
+                g.writeStringField(OverlayHelper.COL_KEY, "TOTAL");
+                g.writeStringField(OverlayHelper.COL_NAME, "TOTAL");
+            }
+            if (img != null)
+                g.writeStringField(OverlayHelper.COL_IMAGE, img);
+            if (rar != null)
+                g.writeStringField(OverlayHelper.COL_RARITY, rar);
+            for (int c = 0; pending != 0; c++) {
+                if ((pending & (1 << c)) != 0) {
+                    g.writeNumberField(NAMES[c], v[c][i]);
+                    pending &= ~(1 << c);
+                }
+            }
+            if (isTotal) {
+                if (bestBuy != null && !bestBuy.isBlank())
+                    g.writeStringField(OverlayHelper.COL_BEST_BUY, bestBuy);
+                if (bestSell != null && !bestSell.isBlank())
+                    g.writeStringField(OverlayHelper.COL_BEST_SELL, bestSell);
+            }
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
+
+    // ---------- internals ----------
+
+    private void grow(int capacity) {
+        for (int c = 0; c < COLUMNS; c++)
+            v[c] = (v[c] == null) ? new int[capacity] : Arrays.copyOf(v[c], capacity);
+        present = new int[capacity];
+        written = new int[capacity];
+        image = new String[capacity];
+        rarity = new String[capacity];
+    }
+
+    /** OverlayHelper.toIntBoxed without the box: false when absent or unparsable. */
+    private static boolean parse(Object o, int[] dst, int i) {
+        if (o == null)
+            return false;
+        if (o instanceof Number n) {
+            dst[i] = n.intValue();
+            return true;
+        }
+        try {
+            dst[i] = (int) Math.floor(Double.parseDouble(String.valueOf(o).replace(',', '.')));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
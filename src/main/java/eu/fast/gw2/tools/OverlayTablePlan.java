@@ -0,0 +1,226 @@
+package eu.fast.gw2.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.fast.gw2.dao.CalculationsDao;
+
+/**
+ * Price-independent part of computing one overlay table, resolved once per
+ * base table (per run generation) instead of per row, tier and run.
+ * - per row: kind, item id, taxes %, AverageAmount, Duration
+ * - COMPOSITE/INTERNAL rows point at an EV slot: the distinct (key, taxes, op)
+ * triples of the table, so each EV is looked up once per tier
+ * - DSL rows keep their resolved (category, key) for OverlayDslEngine
+ * - TOTAL row, BestChoice labels and the profit cells each base row already
+ * has, for OverlayTableColumns
+ */
+final class OverlayTablePlan {
+
+    enum Kind {
+        /** left as is (no profit columns written) */
+        UNCHECKED,
+        /** untaxed, negative unit prices x AverageAmount */
+        NEGATIVE,
+        /** meta/marker row: zeros */
+        ZERO,
+        /** plain item: TP prices (taxed sell), vendor fallback */
+        LEAF,
+        /** EV of a referenced detail table (op from calculations) */
+        COMPOSITE,
+        /** EV of a referenced table, op MAX, taxes 0 */
+        INTERNAL,
+        /** strict formula from calculations */
+        DSL
+    }
+
+    final boolean isMain;
+    /** MAIN: "pageId|pageName"; DETAIL: key */
+    final String tableKey;
+    /** DETAIL: fid; MAIN: null */
+    final Long detailFeatureIdOrNull;
+    /** TOTAL policy: MAIN (INTERNAL) = MAX, DETAIL = SUM */
+    final String aggregation;
+    final int size;
+
+    final Kind[] kind;
+    final int[] itemId;
+    final int[] taxes;
+    final int[] evSlot; // -1 unless COMPOSITE/INTERNAL
+    final double[] qty;
+    final double[] hours;
+    final String[] dslCategory; // null unless DSL
+    final String[] dslKey;
+    /** first row keyed or named TOTAL, -1 if the table has none (one is appended) */
+    final int totalRow;
+    /** BestChoice label: Name, or Key when Name is blank */
+    final String[] label;
+    /** Name is TOTAL: not a BestChoice candidate */
+    final boolean[] namedTotal;
+    /** profit columns with a parsable value in the base row (OverlayTableColumns bits) */
+    final int[] baseCells;
+
+    // EV slots
+    final String[] slotKey;
+    final int[] slotTaxes;
+    final String[] slotOp;
+
+    private OverlayTablePlan(boolean isMain, String tableKey, Long detailFeatureIdOrNull, int size,
+            List<String> slotKeys, List<Integer> slotTaxes, List<String> slotOps,
+            Kind[] kind, int[] itemId, int[] taxes, int[] evSlot, double[] qty, double[] hours,
+            String[] dslCategory, String[] dslKey, int totalRow, String[] label, boolean[] namedTotal, int[] baseCells) {
+        this.isMain = isMain;
+        this.tableKey = tableKey;
+        this.detailFeatureIdOrNull = detailFeatureIdOrNull;
+        this.aggregation = isMain ? "MAX" : "SUM";
+        this.size = size;
+        this.kind = kind;
+        this.itemId = itemId;
+        this.taxes = taxes;
+        this.evSlot = evSlot;
+        this.qty = qty;
+        this.hours = hours;
+        this.dslCategory = dslCategory;
+        this.dslKey = dslKey;
+        this.totalRow = totalRow;
+        this.label = label;
+        this.namedTotal = namedTotal;
+        this.baseCells = baseCells;
+        this.slotKey = slotKeys.toArray(new String[0]);
+        this.slotTaxes = slotTaxes.stream().mapToInt(Integer::intValue).toArray();
+        this.slotOp = slotOps.toArray(new String[0]);
+    }
+
+    /** Detail table: category = detail_features.name of fid, table calc = (category, key). */
+    static OverlayTablePlan compileDetail(long fid, String key, List<Map<String, Object>> base) {
+        String dfName = OverlayDBAccess.detailFeatureNameById(fid);
+        var tableConfig = OverlayCalc.getCalcCfg(dfName, key);
+        return compile(false, key, fid, tableConfig, base, (dfName == null ? "" : dfName), null);
+    }
+
+    /** Main table: INTERNAL rows and the table calc resolve to "<feature>/<page>". */
+    static OverlayTablePlan compileMain(String compositeKey, List<Map<String, Object>> base) {
+        int pageId = OverlayDBAccess.pageIdFromComposite(compositeKey);
+        String pageName = OverlayDBAccess.pageNameFromComposite(compositeKey);
+        String featureName = OverlayDBAccess.featureNameByPageId(pageId);
+        String internalKey = (featureName == null ? "" : featureName) + "/" + (pageName == null ? "" : pageName);
+        var tableConfig = OverlayCalc.getCalcCfg("INTERNAL", internalKey);
+        return compile(true, compositeKey, null, tableConfig, base, null, internalKey);
+    }
+
+    /**
+     * Same decisions as the former per-row resolution in computeRow.
+     * detailCategory: DETAIL tables only; internalKey: MAIN tables only.
+     * Takes the names compileDetail/compileMain resolve from the DB.
+     */
+    static OverlayTablePlan compile(boolean isMain, String tableKey, Long fid,
+            CalculationsDao.Config tableConfig, List<Map<String, Object>> base,
+            String detailCategory, String internalKey) {
+        final int n = base.size();
+        Kind[] kind = new Kind[n];
+        int[] itemId = new int[n];
+        int[] taxes = new int[n];
+        int[] evSlot = new int[n];
+        double[] qty = new double[n];
+        double[] hours = new double[n];
+        String[] dslCategory = new String[n];
+        String[] dslKey = new String[n];
+        String[] label = new String[n];
+        boolean[] namedTotal = new boolean[n];
+        int[] baseCells = new int[n];
+        int totalRow = -1;
+
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> slotKeys = new ArrayList<>();
+        List<Integer> slotTaxes = new ArrayList<>();
+        List<String> slotOps = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> row = base.get(i);
+            String rawCategory = OverlayHelper.str(row.get(OverlayHelper.COL_CAT));
+            String rawKey = OverlayHelper.str(row.get(OverlayHelper.COL_KEY));
+            int id = OverlayHelper.toInt(row.get(OverlayHelper.COL_ID), -1);
+            String name = OverlayHelper.str(row.get(OverlayHelper.COL_NAME));
+
+            namedTotal[i] = "TOTAL".equalsIgnoreCase(name);
+            label[i] = (name != null && !name.isBlank()) ? name : rawKey;
+            if (totalRow < 0 && (namedTotal[i] || "TOTAL".equalsIgnoreCase(rawKey)))
+                totalRow = i;
+
+            baseCells[i] = OverlayTableColumns.cellsOf(row);
+            itemId[i] = id;
+            evSlot[i] = -1;
+            qty[i] = OverlayHelper.toDouble(row.get(OverlayHelper.COL_AVG), 1.0);
+            hours[i] = OverlayHelper.toDouble(row.get(OverlayHelper.COL_HOURS), 0.0);
+
+            if ("UNCHECKED".equalsIgnoreCase(rawCategory)) {
+                kind[i] = Kind.UNCHECKED;
+                continue;
+            }
+
+            // Resolve effective (category,key) deterministically
+            String effCategory;
+            String effKey = (rawKey == null ? "" : rawKey);
+            if ("INTERNAL".equalsIgnoreCase(rawCategory)) {
+                effCategory = "INTERNAL";
+                if (isMain)
+                    effKey = internalKey;
+            } else if ("NEGATIVE".equalsIgnoreCase(rawCategory)) {
+                effCategory = "NEGATIVE";
+            } else if (isMain) {
+                // MAIN: find detail feature by row's key
+                String dfName = OverlayDBAccess.detailFeatureNameByKey(rawKey);
+                effCategory = (dfName == null ? "" : dfName);
+            } else {
+                effCategory = detailCategory;
+            }
+
+            if ("NEGATIVE".equalsIgnoreCase(effCategory)) {
+                kind[i] = Kind.NEGATIVE;
+                continue;
+            }
+
+            int taxesPct = OverlayCalc.pickTaxesPercent(effCategory, effKey, tableConfig);
+            taxes[i] = taxesPct;
+
+            // LEAF/meta rows: blank category and key, or blank key without an item id
+            if ((effCategory.isBlank() && effKey.isBlank()) || (effKey.isBlank() && id <= 0)) {
+                kind[i] = Kind.ZERO;
+                continue;
+            }
+
+            // Composite ref (INTERNAL or any non-INTERNAL category with a key): EV
+            if (!effKey.isBlank()) {
+                boolean internal = "INTERNAL".equalsIgnoreCase(effCategory);
+                String op = OverlayCalc.pickAggregationOp(effCategory, effKey);
+                String sk = effKey + "|" + taxesPct + "|" + op;
+                Integer slot = slots.get(sk);
+                if (slot == null) {
+                    slot = slotKeys.size();
+                    slots.put(sk, slot);
+                    slotKeys.add(effKey);
+                    slotTaxes.add(taxesPct);
+                    slotOps.add(op);
+                }
+                kind[i] = internal ? Kind.INTERNAL : Kind.COMPOSITE;
+                evSlot[i] = slot;
+                continue;
+            }
+
+            // Plain item (blank key, valid id)
+            if (id > 0) {
+                kind[i] = Kind.LEAF;
+                continue;
+            }
+
+            kind[i] = Kind.DSL;
+            dslCategory[i] = effCategory;
+            dslKey[i] = effKey;
+        }
+
+        return new OverlayTablePlan(isMain, tableKey, fid, n, slotKeys, slotTaxes, slotOps,
+                kind, itemId, taxes, evSlot, qty, hours, dslCategory, dslKey, totalRow, label, namedTotal, baseCells);
+    }
+}
@@ -75,7 +75,11 @@ public final class OverlayTierRunner implements Runnable {
         // -------- DETAIL --------
         int fail = 0, detailIndex = 0;
 
-        Map<Integer, int[]> priceMap = OverlayCache.getOrFillPriceCache(Collections.emptySet(), t);
+        var ctx = new OverlayRowComputer.ComputeContext(t,
+                OverlayCache.getOrFillPriceCache(Collections.emptySet(), t),
+                OverlayCache.getOrFillImageCache(Collections.emptySet()),
+                OverlayCache.getOrFillRarityCache(Collections.emptySet()));
+        var cols = new OverlayTableColumns(); // reused by every table of this tier
         for (Object[] row : detailTargets) {
             long fid = ((Number) row[0]).longValue();
             String key = (String) row[1];
@@ -85,30 +89,22 @@ public final class OverlayTierRunner implements Runnable {
                 if (base == null)
                     continue;
 
-                List<Map<String, Object>> rows = OverlayRowComputer.deepCopyRows(base);
+                // Category (detail_features.name), taxes, ops: resolved once per base table
+                OverlayTablePlan plan = OverlayCache.detailPlan(fid, key, base);
+
                 if (profile) {
                     prof.tablesDetail++;
-                    prof.rowsDetail += rows.size();
+                    prof.rowsDetail += base.size();
                 }
 
-                // Category for this detail table = detail_features.name
-                String tableCategory = OverlayDBAccess.detailFeatureNameById(fid);
-                var tableConfig = OverlayCalc.getCalcCfg(tableCategory, key);
-
-                var ctx = new OverlayRowComputer.ComputeContext(false, t, key, fid, tableConfig,
-                        priceMap,
-                        OverlayCache.getOrFillImageCache(Collections.emptySet()),
-                        OverlayCache.getOrFillRarityCache(Collections.emptySet()));
-
                 if (profile)
-                    prof.tableBegin(key, false, rows.size(), ++detailIndex, Math.max(totalDetailPlanned, 1));
-                for (int i = 0; i < rows.size(); i++)
-                    OverlayRowComputer.computeRow(rows.get(i), ctx, i, prof, run);
+                    prof.tableBegin(key, false, base.size(), ++detailIndex, Math.max(totalDetailPlanned, 1));
+                OverlayRowComputer.computeTable(plan, base, cols, ctx, prof, run);
 
                 // Keep detail TOTAL default as SUM (external manual overrides still allowed).
-                OverlayHelper.applyAggregation(rows, "SUM");
+                cols.aggregate(plan, plan.aggregation);
 
-                writer.enqueueDetail(fid, key, t.label, OverlayJson.toJson(rows));
+                writer.enqueueDetail(fid, key, t.label, OverlayJson.toJson(base, cols));
             } catch (Exception e) {
                 fail++;
                 System.err.printf("Overlay %s DETAIL: ! fid=%d key='%s' -> %s: %s%n",
@@ -125,41 +121,28 @@ public final class OverlayTierRunner implements Runnable {
         fail = 0;
         int mainIndex = 0;
 
-        priceMap = OverlayCache.getOrFillPriceCache(Collections.emptySet(), t);
         for (String compositeKey : mainTargets) {
             try {
                 List<Map<String, Object>> base = OverlayCache.getBaseMainRows(compositeKey);
                 if (base == null)
                     continue;
 
-                List<Map<String, Object>> rows = OverlayRowComputer.deepCopyRows(base);
+                // "<feature>/<page>" INTERNAL key, taxes, ops: resolved once per base table
+                OverlayTablePlan plan = OverlayCache.mainPlan(compositeKey, base);
+
                 if (profile) {
                     prof.tablesMain++;
-                    prof.rowsMain += rows.size();
+                    prof.rowsMain += base.size();
                 }
 
-                int pageIdForMain = OverlayDBAccess.pageIdFromComposite(compositeKey);
-                String pageNameForMain = OverlayDBAccess.pageNameFromComposite(compositeKey);
-                String featureNameForMain = OverlayDBAccess.featureNameByPageId(pageIdForMain);
-                String aggKey = (featureNameForMain == null ? "" : featureNameForMain)
-                        + "/" + (pageNameForMain == null ? "" : pageNameForMain);
-
-                var tableConfig = OverlayCalc.getCalcCfg("INTERNAL", aggKey);
-
-                var ctx = new OverlayRowComputer.ComputeContext(true, t, compositeKey, null, tableConfig,
-                        priceMap,
-                        OverlayCache.getOrFillImageCache(Collections.emptySet()),
-                        OverlayCache.getOrFillRarityCache(Collections.emptySet()));
-
                 if (profile)
-                    prof.tableBegin(compositeKey, true, rows.size(), ++mainIndex, Math.max(totalMainPlanned, 1));
-                for (int i = 0; i < rows.size(); i++)
-                    OverlayRowComputer.computeRow(rows.get(i), ctx, i, prof, run);
+                    prof.tableBegin(compositeKey, true, base.size(), ++mainIndex, Math.max(totalMainPlanned, 1));
+                OverlayRowComputer.computeTable(plan, base, cols, ctx, prof, run);
 
                 // MAIN (INTERNAL): policy = MAX
-                OverlayHelper.applyAggregation(rows, "MAX");
+                cols.aggregate(plan, plan.aggregation);
 
-                writer.enqueueMain(compositeKey, t.label, OverlayJson.toJson(rows));
+                writer.enqueueMain(compositeKey, t.label, OverlayJson.toJson(base, cols));
             } catch (Exception e) {
                 fail++;
                 System.err.printf("Overlay %s MAIN: ! key='%s' -> %s: %s%n",
@@ -15,6 +15,9 @@ public final class OverlayUpsertQueue implements AutoCloseable {
     private static final int COALESCE_MS = 250;
     private static final boolean DEFAULT_USE_BATCH = true;
 
+    private static final Metrics.Histogram FLUSH = Metrics.histogram("overlay_writer_flush_seconds",
+            "Time to write one de-duplicated overlay batch");
+
     private final LinkedBlockingQueue<Upsert> q;
     private final int batch;
     private final boolean useBatch;
@@ -52,6 +55,7 @@ public final class OverlayUpsertQueue implements AutoCloseable {
     public static OverlayUpsertQueue startDefault() {
         OverlayUpsertQueue w = new OverlayUpsertQueue(DEFAULT_BATCH, DEFAULT_USE_BATCH, DEFAULT_QUEUE_CAP);
         w.start();
+        Metrics.gauge("overlay_writer_queue_depth", "Overlay upserts waiting for the writer thread", w.q::size);
         return w;
     }
 
@@ -74,6 +78,7 @@ public final class OverlayUpsertQueue implements AutoCloseable {
                     for (Upsert u : buf)
                         uniq.put(u.dedupeKey(), u);
 
+                    final long flushStart = System.nanoTime();
                     if (useBatch) {
                         // --- batch buffers ---
                         List<Integer> mainPageIds = new ArrayList<>();
@@ -173,6 +178,7 @@ public final class OverlayUpsertQueue implements AutoCloseable {
                         }
                     }
 
+                    FLUSH.recordSince(flushStart);
                     buf.clear();
                 }
             } catch (InterruptedException ie) {
@@ -206,6 +212,7 @@ public final class OverlayUpsertQueue implements AutoCloseable {
                 Thread.currentThread().interrupt();
             }
         }
+        Metrics.remove("overlay_writer_queue_depth");
     }
 
     // ---------- helpers ----------
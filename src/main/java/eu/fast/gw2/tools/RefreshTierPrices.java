@@ -1,6 +1,7 @@
 package eu.fast.gw2.tools;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -10,13 +11,19 @@ import java.util.Set;
 
 import eu.fast.gw2.dao.Gw2PricesDao;
 import eu.fast.gw2.dao.TierPricesDao;
+import eu.fast.gw2.enums.Tier;
 
 public class RefreshTierPrices {
 
     private static final int BATCH = 200;
 
-    /** Execution summary for logging/metrics. */
-    public record Summary(int picked, int updated2m, int updated10m, int updated60m, int vendorUpdated) {
+    /**
+     * Execution summary for logging/metrics.
+     * - changed: per tier, item ids whose price for that tier moved, plus ids
+     * that got a vendor value/image/rarity (those show up in every tier's rows)
+     */
+    public record Summary(int picked, int updated2m, int updated10m, int updated60m, int vendorUpdated,
+            Map<Tier, Set<Integer>> changed) {
     }
 
     /** summary runner */
@@ -41,6 +48,10 @@ public class RefreshTierPrices {
         int batches = (total + BATCH - 1) / BATCH;
 
         int total2m = 0, total10m = 0, total60m = 0, totalVendorUpdated = 0;
+        Map<Tier, Set<Integer>> changed = new EnumMap<>(Tier.class);
+        for (Tier t : Tier.values())
+            changed.put(t, new HashSet<>());
+        Set<Integer> metaChanged = new HashSet<>();
 
         for (int bi = 0; bi < batches; bi++) {
             int off = bi * BATCH;
@@ -131,7 +142,9 @@ public class RefreshTierPrices {
 
             try {
                 // Upsert tier prices
-                TierPricesDao.upsertMulti(normalized, due10, due60, activity);
+                Map<Tier, Set<Integer>> moved = TierPricesDao.upsertMulti(normalized, due10, due60, activity);
+                for (var e : moved.entrySet())
+                    changed.get(e.getKey()).addAll(e.getValue());
 
                 total2m += normalized.size();
                 total10m += due10.size();
@@ -148,6 +161,7 @@ public class RefreshTierPrices {
                     if (!vendorToInsert.isEmpty()) {
                         Gw2PricesDao.upsertVendorValuesIfChanged(vendorToInsert);
                         totalVendorUpdated += vendorToInsert.size();
+                        metaChanged.addAll(vendorToInsert.keySet());
                     }
                 }
 
@@ -158,6 +172,7 @@ public class RefreshTierPrices {
                         if (!imagesMap.isEmpty()) {
                             try {
                                 Gw2PricesDao.updateImagesIfChanged(imagesMap);
+                                metaChanged.addAll(imagesMap.keySet());
                             } catch (Exception ignored) {
                             }
                         }
@@ -167,6 +182,7 @@ public class RefreshTierPrices {
                         if (!raritiesMap.isEmpty()) {
                             try {
                                 Gw2PricesDao.updateRaritiesIfChanged(raritiesMap);
+                                metaChanged.addAll(raritiesMap.keySet());
                             } catch (Exception ignored) {
                             }
                         }
@@ -185,13 +201,17 @@ public class RefreshTierPrices {
             }
         }
 
+        for (Set<Integer> ids : changed.values())
+            ids.addAll(metaChanged);
+
         System.out.println(String.format(
                 Locale.ROOT,
-                "Updated RefreshTierPrices: 2m=%d, 10m=%d, 60m=%d, vendor=%d (%.1fs)",
+                "Updated RefreshTierPrices: 2m=%d, 10m=%d, 60m=%d, vendor=%d, changed=%d/%d/%d (%.1fs)",
                 total2m, total10m, total60m, totalVendorUpdated,
+                changed.get(Tier.T2M).size(), changed.get(Tier.T10M).size(), changed.get(Tier.T60M).size(),
                 (System.currentTimeMillis() - runStart) / 1000.0));
 
-        return new Summary(total, total2m, total10m, total60m, totalVendorUpdated);
+        return new Summary(total, total2m, total10m, total60m, totalVendorUpdated, changed);
     }
 
     /**
@@ -64,4 +64,23 @@ CREATE INDEX IF NOT EXISTS idx_tables_overlay_key ON public.tables_overlay (key)
 
 CREATE INDEX IF NOT EXISTS idx_detail_tables_overlay_tier ON public.detail_tables_overlay (tier);
 
-CREATE INDEX IF NOT EXISTS idx_detail_tables_overlay_key ON public.detail_tables_overlay (key);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_detail_tables_overlay_key ON public.detail_tables_overlay (key);
+
+-- overlay change feed: every content change takes the next value (GET /api/v1/changes/...)
+-- writers take it under pg_advisory_xact_lock (OverlayDaoBatch.lockVersions) so versions commit in order
+CREATE SEQUENCE IF NOT EXISTS public.overlay_version_seq;
+
+ALTER TABLE public.tables_overlay ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE public.detail_tables_overlay ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- rows written before the change feed existed: give them a real version (> 0)
+UPDATE public.tables_overlay SET version = nextval('public.overlay_version_seq') WHERE version = 0;
+
+UPDATE public.detail_tables_overlay SET version = nextval('public.overlay_version_seq') WHERE version = 0;
+
+ALTER TABLE public.tables_overlay ALTER COLUMN version SET DEFAULT nextval('public.overlay_version_seq');
+
+ALTER TABLE public.detail_tables_overlay ALTER COLUMN version SET DEFAULT nextval('public.overlay_version_seq');
+
+CREATE INDEX IF NOT EXISTS idx_tables_overlay_page_tier_version ON public.tables_overlay (page_id, tier, version);
@@ -0,0 +1,425 @@
+package eu.fast.gw2.tools;
+
+import static eu.fast.gw2.tools.OverlayHelper.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The map-based overlay compute path replaced by OverlayTableColumns, kept
+ * verbatim (minus profiler/problem hooks) as the oracle for
+ * OverlayTableColumnsTest: rows are copies of the base rows, computed in
+ * place, then aggregated with the former OverlayHelper.applyAggregation.
+ */
+final class LegacyOverlayRows {
+
+    private LegacyOverlayRows() {
+    }
+
+    /** Former deepCopyRows + computeTable + applyAggregation, as the runners used them. */
+    static List<Map<String, Object>> compute(OverlayTablePlan plan, List<Map<String, Object>> base,
+            OverlayRowComputer.ComputeContext ctx) {
+        List<Map<String, Object>> rows = new ArrayList<>(base.size());
+        for (Map<String, Object> r : base)
+            rows.add(new LinkedHashMap<>(r));
+        computeTable(plan, rows, ctx);
+        applyAggregation(rows, plan.aggregation);
+        return rows;
+    }
+
+    private static void computeTable(OverlayTablePlan plan, List<Map<String, Object>> rows,
+            OverlayRowComputer.ComputeContext ctx) {
+        final boolean isMain = plan.isMain;
+        final Map<Integer, int[]> prices = ctx.priceByItemId;
+        final int[] shard = OverlaySpiritShard.getShardUnitPair(ctx.tier, prices);
+        final int shardBuyUnit = (shard == null || shard.length < 1) ? 0 : shard[0];
+        final int shardSellUnit = (shard == null || shard.length < 2) ? 0 : shard[1];
+        final int[][] ev = new int[plan.slotKey.length][];
+
+        for (int i = 0; i < plan.size; i++) {
+            Map<String, Object> row = rows.get(i);
+            int itemId = plan.itemId[i];
+            double qty = plan.qty[i];
+            double hours = plan.hours[i];
+
+            // enrich image/rarity if we can (safe; does not touch profit numbers)
+            if (itemId > 0) {
+                String imageUrl = ctx.imageUrlByItemId.get(itemId);
+                if (imageUrl != null && !imageUrl.isBlank())
+                    row.put(OverlayHelper.COL_IMAGE, imageUrl);
+                String rarity = ctx.rarityByItemId.get(itemId);
+                if (rarity != null && !rarity.isBlank())
+                    row.put(OverlayHelper.COL_RARITY, rarity);
+            }
+
+            int IB_TPB, IS_TPB, IB_TPS, IS_TPS;
+            switch (plan.kind[i]) {
+                case UNCHECKED -> {
+                    // do not overwrite profit values
+                    continue;
+                }
+                case NEGATIVE -> {
+                    // untaxed, negative unit prices × AverageAmount
+                    int[] ps = (itemId > 0) ? prices.get(itemId) : null;
+                    int unitBuy = (ps != null && ps.length > 0 ? ps[0] : 0);
+                    int unitSell = (ps != null && ps.length > 1 ? ps[1] : 0);
+                    int buy = (int) Math.round(-qty * unitBuy);
+                    int sell = (int) Math.round(-qty * unitSell);
+                    IB_TPB = IB_TPS = buy;
+                    IS_TPB = IS_TPS = sell;
+                }
+                case ZERO -> {
+                    IB_TPB = IS_TPB = IB_TPS = IS_TPS = 0;
+                }
+                case COMPOSITE, INTERNAL -> {
+                    int slot = plan.evSlot[i];
+                    int[] e = ev[slot];
+                    if (e == null)
+                        e = ev[slot] = OverlayCalc.evForDetail(plan.slotKey[slot], prices, plan.slotTaxes[slot],
+                                ctx.tier.columnKey(), plan.slotOp[slot]);
+                    IB_TPB = IS_TPB = (e != null && e.length > 0) ? e[0] : 0;
+                    IB_TPS = IS_TPS = (e != null && e.length > 1) ? e[1] : 0;
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(IB_TPB * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(IB_TPS * qty);
+                    }
+                }
+                case LEAF -> {
+                    int[] ps = prices.get(itemId);
+                    int tpb = (ps == null || ps.length < 1) ? 0 : Math.max(0, ps[0]);
+                    int tps = (ps == null || ps.length < 2) ? 0 : Math.max(0, ps[1]);
+                    int sellNet = netSellAfterTax(tps, plan.taxes[i]);
+                    if (tpb == 0 && sellNet == 0) {
+                        Integer vv = OverlayCache.vendorValueCached(itemId);
+                        if (vv != null && vv > 0)
+                            sellNet = vv;
+                    }
+                    IB_TPB = IS_TPB = tpb;
+                    IB_TPS = IS_TPS = sellNet;
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(tpb * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(sellNet * qty);
+                    }
+                }
+                default -> { // DSL (STRICT) using resolved (category,key)
+                    var eval = OverlayDslEngine.evaluateRowStrict(plan.dslCategory[i], plan.dslKey[i], row, ctx.tier,
+                            plan.taxes[i], prices);
+                    if (eval == null) {
+                        write(row, isMain, hours, qty, itemId, 0, 0, 0, 0, shardBuyUnit, shardSellUnit);
+                        continue;
+                    }
+                    IB_TPB = IS_TPB = eval.buy();
+                    IB_TPS = IS_TPS = eval.sell();
+                    if (!isMain) {
+                        IB_TPB = IS_TPB = (int) Math.round(IB_TPB * qty);
+                        IB_TPS = IS_TPS = (int) Math.round(IB_TPS * qty);
+                    }
+                    if (IB_TPB == 0 && IB_TPS == 0) { // below the 0.5 copper cutoff
+                        write(row, isMain, hours, qty, itemId, 0, 0, 0, 0, shardBuyUnit, shardSellUnit);
+                        continue;
+                    }
+                    write(row, isMain, hours, qty, itemId, IB_TPB, IS_TPB, IB_TPS, IS_TPS, shardBuyUnit,
+                            shardSellUnit);
+                    continue;
+                }
+            }
+            write(row, isMain, hours, qty, itemId, IB_TPB, IS_TPB, IB_TPS, IS_TPS, shardBuyUnit, shardSellUnit);
+        }
+    }
+
+    private static int netSellAfterTax(int tps, int taxesPct) {
+        if (taxesPct <= 0)
+            return tps;
+        return (int) Math.floor(tps * (100.0 - OverlayHelper.clampPercent(taxesPct)) / 100.0);
+    }
+
+    /**
+     * Writes the four profit columns (+Hr on MAIN) and their Spirit Shard
+     * augments (wSS, +Hr on MAIN). The Spirit Shard row itself (id 23) gets
+     * zero base values and only the augment.
+     */
+    private static void write(Map<String, Object> row, boolean isMain, double hours, double qty, int itemId,
+            int IB_TPB, int IS_TPB, int IB_TPS, int IS_TPS, int shardBuyUnit, int shardSellUnit) {
+        if (itemId == 23)
+            IB_TPB = IS_TPB = IB_TPS = IS_TPS = 0;
+
+        row.put(OverlayHelper.COL_ITEM_BUY_TPBUY, IB_TPB);
+        row.put(OverlayHelper.COL_ITEM_SELL_TPBUY, IS_TPB);
+        row.put(OverlayHelper.COL_ITEM_BUY_TPSELL, IB_TPS);
+        row.put(OverlayHelper.COL_ITEM_SELL_TPSELL, IS_TPS);
+        if (isMain) {
+            row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_HR, perHour(IS_TPB, hours));
+            row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_HR, perHour(IB_TPB, hours));
+            row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_HR, perHour(IS_TPS, hours));
+            row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_HR, perHour(IB_TPS, hours));
+        }
+
+        int deltaBuy = (int) Math.round(qty * shardBuyUnit);
+        int deltaSell = (int) Math.round(qty * shardSellUnit);
+        int IS_TPB_wSS = IS_TPB + deltaBuy;
+        int IB_TPB_wSS = IB_TPB + deltaBuy;
+        int IS_TPS_wSS = IS_TPS + deltaSell;
+        int IB_TPS_wSS = IB_TPS + deltaSell;
+
+        row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_WSS, IS_TPB_wSS);
+        row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_WSS, IB_TPB_wSS);
+        row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_WSS, IS_TPS_wSS);
+        row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_WSS, IB_TPS_wSS);
+        if (isMain) {
+            row.put(OverlayHelper.COL_ITEM_SELL_TPBUY_WSS_HR, perHour(IS_TPB_wSS, hours));
+            row.put(OverlayHelper.COL_ITEM_BUY_TPBUY_WSS_HR, perHour(IB_TPB_wSS, hours));
+            row.put(OverlayHelper.COL_ITEM_SELL_TPSELL_WSS_HR, perHour(IS_TPS_wSS, hours));
+            row.put(OverlayHelper.COL_ITEM_BUY_TPSELL_WSS_HR, perHour(IB_TPS_wSS, hours));
+        }
+    }
+
+    private static int perHour(int v, double hours) {
+        return (hours > 0.0) ? (int) Math.floor(v / hours) : v;
+    }
+
+    private static void applyAggregation(List<Map<String, Object>> rows, String op) {
+        // collectors for base
+        var c_IS_TPB = new ArrayList<Integer>();
+        var c_IB_TPB = new ArrayList<Integer>();
+        var c_IS_TPS = new ArrayList<Integer>();
+        var c_IB_TPS = new ArrayList<Integer>();
+
+        // collectors for per-hour (may be absent; compute if hours>0 and base present)
+        var c_IS_TPB_HR = new ArrayList<Integer>();
+        var c_IB_TPB_HR = new ArrayList<Integer>();
+        var c_IS_TPS_HR = new ArrayList<Integer>();
+        var c_IB_TPS_HR = new ArrayList<Integer>();
+
+        // wSS collectors
+        var c_IS_TPB_WSS = new ArrayList<Integer>();
+        var c_IB_TPB_WSS = new ArrayList<Integer>();
+        var c_IS_TPS_WSS = new ArrayList<Integer>();
+        var c_IB_TPS_WSS = new ArrayList<Integer>();
+
+        var c_IS_TPB_WSS_HR = new ArrayList<Integer>();
+        var c_IB_TPB_WSS_HR = new ArrayList<Integer>();
+        var c_IS_TPS_WSS_HR = new ArrayList<Integer>();
+        var c_IB_TPS_WSS_HR = new ArrayList<Integer>();
+
+        for (var r : rows) {
+            // base
+            Integer sTPB = toIntBoxed(r.get(COL_ITEM_SELL_TPBUY));
+            Integer bTPB = toIntBoxed(r.get(COL_ITEM_BUY_TPBUY));
+            Integer sTPS = toIntBoxed(r.get(COL_ITEM_SELL_TPSELL));
+            Integer bTPS = toIntBoxed(r.get(COL_ITEM_BUY_TPSELL));
+            if (sTPB != null)
+                c_IS_TPB.add(sTPB);
+            if (bTPB != null)
+                c_IB_TPB.add(bTPB);
+            if (sTPS != null)
+                c_IS_TPS.add(sTPS);
+            if (bTPS != null)
+                c_IB_TPS.add(bTPS);
+
+            // hours (use provided, or compute if hours>0)
+            Integer sTPB_hr = toIntBoxed(r.get(COL_ITEM_SELL_TPBUY_HR));
+            Integer bTPB_hr = toIntBoxed(r.get(COL_ITEM_BUY_TPBUY_HR));
+            Integer sTPS_hr = toIntBoxed(r.get(COL_ITEM_SELL_TPSELL_HR));
+            Integer bTPS_hr = toIntBoxed(r.get(COL_ITEM_BUY_TPSELL_HR));
+
+            if (sTPB_hr == null || bTPB_hr == null || sTPS_hr == null || bTPS_hr == null) {
+                double hours = toDouble(r.get(COL_HOURS), 0.0);
+                if (hours > 0.0) {
+                    if (sTPB_hr == null && sTPB != null)
+                        sTPB_hr = (int) Math.floor(sTPB / hours);
+                    if (bTPB_hr == null && bTPB != null)
+                        bTPB_hr = (int) Math.floor(bTPB / hours);
+                    if (sTPS_hr == null && sTPS != null)
+                        sTPS_hr = (int) Math.floor(sTPS / hours);
+                    if (bTPS_hr == null && bTPS != null)
+                        bTPS_hr = (int) Math.floor(bTPS / hours);
+                }
+            }
+            if (sTPB_hr != null)
+                c_IS_TPB_HR.add(sTPB_hr);
+            if (bTPB_hr != null)
+                c_IB_TPB_HR.add(bTPB_hr);
+            if (sTPS_hr != null)
+                c_IS_TPS_HR.add(sTPS_hr);
+            if (bTPS_hr != null)
+                c_IB_TPS_HR.add(bTPS_hr);
+
+            // wSS base
+            Integer sTPB_wss = toIntBoxed(r.get(COL_ITEM_SELL_TPBUY_WSS));
+            Integer bTPB_wss = toIntBoxed(r.get(COL_ITEM_BUY_TPBUY_WSS));
+            Integer sTPS_wss = toIntBoxed(r.get(COL_ITEM_SELL_TPSELL_WSS));
+            Integer bTPS_wss = toIntBoxed(r.get(COL_ITEM_BUY_TPSELL_WSS));
+            if (sTPB_wss != null)
+                c_IS_TPB_WSS.add(sTPB_wss);
+            if (bTPB_wss != null)
+                c_IB_TPB_WSS.add(bTPB_wss);
+            if (sTPS_wss != null)
+                c_IS_TPS_WSS.add(sTPS_wss);
+            if (bTPS_wss != null)
+                c_IB_TPS_WSS.add(bTPS_wss);
+
+            // wSS hr
+            Integer sTPB_wss_hr = toIntBoxed(r.get(COL_ITEM_SELL_TPBUY_WSS_HR));
+            Integer bTPB_wss_hr = toIntBoxed(r.get(COL_ITEM_BUY_TPBUY_WSS_HR));
+            Integer sTPS_wss_hr = toIntBoxed(r.get(COL_ITEM_SELL_TPSELL_WSS_HR));
+            Integer bTPS_wss_hr = toIntBoxed(r.get(COL_ITEM_BUY_TPSELL_WSS_HR));
+
+            if (sTPB_wss_hr != null)
+                c_IS_TPB_WSS_HR.add(sTPB_wss_hr);
+            if (bTPB_wss_hr != null)
+                c_IB_TPB_WSS_HR.add(bTPB_wss_hr);
+            if (sTPS_wss_hr != null)
+                c_IS_TPS_WSS_HR.add(sTPS_wss_hr);
+            if (bTPS_wss_hr != null)
+                c_IB_TPS_WSS_HR.add(bTPS_wss_hr);
+        }
+
+        if (c_IS_TPB.isEmpty() && c_IB_TPB.isEmpty() && c_IS_TPS.isEmpty() && c_IB_TPS.isEmpty()
+                && c_IS_TPB_HR.isEmpty() && c_IB_TPB_HR.isEmpty() && c_IS_TPS_HR.isEmpty() && c_IB_TPS_HR.isEmpty()
+                && c_IS_TPB_WSS.isEmpty() && c_IB_TPB_WSS.isEmpty() && c_IS_TPS_WSS.isEmpty() && c_IB_TPS_WSS.isEmpty()
+                && c_IS_TPB_WSS_HR.isEmpty() && c_IB_TPB_WSS_HR.isEmpty() && c_IS_TPS_WSS_HR.isEmpty()
+                && c_IB_TPS_WSS_HR.isEmpty()) {
+            return;
+        }
+
+        String agg = (op == null ? "SUM" : op.toUpperCase(java.util.Locale.ROOT));
+        java.util.function.Function<List<Integer>, Integer> AGG = xs -> {
+            if (xs == null || xs.isEmpty())
+                return 0;
+            return switch (agg) {
+                case "AVG" -> avg(xs);
+                case "MIN" -> xs.stream().min(Integer::compare).orElse(0);
+                case "MAX" -> xs.stream().max(Integer::compare).orElse(0);
+                default -> sum(xs);
+            };
+        };
+
+        // compute all aggregates
+        Integer t_IS_TPB = c_IS_TPB.isEmpty() ? null : AGG.apply(c_IS_TPB);
+        Integer t_IB_TPB = c_IB_TPB.isEmpty() ? null : AGG.apply(c_IB_TPB);
+        Integer t_IS_TPS = c_IS_TPS.isEmpty() ? null : AGG.apply(c_IS_TPS);
+        Integer t_IB_TPS = c_IB_TPS.isEmpty() ? null : AGG.apply(c_IB_TPS);
+
+        Integer t_IS_TPB_HR = c_IS_TPB_HR.isEmpty() ? null : AGG.apply(c_IS_TPB_HR);
+        Integer t_IB_TPB_HR = c_IB_TPB_HR.isEmpty() ? null : AGG.apply(c_IB_TPB_HR);
+        Integer t_IS_TPS_HR = c_IS_TPS_HR.isEmpty() ? null : AGG.apply(c_IS_TPS_HR);
+        Integer t_IB_TPS_HR = c_IB_TPS_HR.isEmpty() ? null : AGG.apply(c_IB_TPS_HR);
+
+        Integer t_IS_TPB_WSS = c_IS_TPB_WSS.isEmpty() ? null : AGG.apply(c_IS_TPB_WSS);
+        Integer t_IB_TPB_WSS = c_IB_TPB_WSS.isEmpty() ? null : AGG.apply(c_IB_TPB_WSS);
+        Integer t_IS_TPS_WSS = c_IS_TPS_WSS.isEmpty() ? null : AGG.apply(c_IS_TPS_WSS);
+        Integer t_IB_TPS_WSS = c_IB_TPS_WSS.isEmpty() ? null : AGG.apply(c_IB_TPS_WSS);
+
+        Integer t_IS_TPB_WSS_HR = c_IS_TPB_WSS_HR.isEmpty() ? null : AGG.apply(c_IS_TPB_WSS_HR);
+        Integer t_IB_TPB_WSS_HR = c_IB_TPB_WSS_HR.isEmpty() ? null : AGG.apply(c_IB_TPB_WSS_HR);
+        Integer t_IS_TPS_WSS_HR = c_IS_TPS_WSS_HR.isEmpty() ? null : AGG.apply(c_IS_TPS_WSS_HR);
+        Integer t_IB_TPS_WSS_HR = c_IB_TPS_WSS_HR.isEmpty() ? null : AGG.apply(c_IB_TPS_WSS_HR);
+
+        Map<String, Object> total = rows.stream()
+                .filter(q -> "TOTAL".equalsIgnoreCase(str(q.get(COL_KEY)))
+                        || "TOTAL".equalsIgnoreCase(str(q.get(COL_NAME))))
+                .findFirst()
+                .orElseGet(() -> {
+                    var t = new LinkedHashMap<String, Object>();
+                    t.put(COL_KEY, "TOTAL");
+                    t.put(COL_NAME, "TOTAL");
+                    rows.add(t);
+                    return t;
+                });
+
+        if (t_IS_TPB != null)
+            total.put(COL_ITEM_SELL_TPBUY, t_IS_TPB);
+        if (t_IB_TPB != null)
+            total.put(COL_ITEM_BUY_TPBUY, t_IB_TPB);
+        if (t_IS_TPS != null)
+            total.put(COL_ITEM_SELL_TPSELL, t_IS_TPS);
+        if (t_IB_TPS != null)
+            total.put(COL_ITEM_BUY_TPSELL, t_IB_TPS);
+
+        if (t_IS_TPB_HR != null)
+            total.put(COL_ITEM_SELL_TPBUY_HR, t_IS_TPB_HR);
+        if (t_IB_TPB_HR != null)
+            total.put(COL_ITEM_BUY_TPBUY_HR, t_IB_TPB_HR);
+        if (t_IS_TPS_HR != null)
+            total.put(COL_ITEM_SELL_TPSELL_HR, t_IS_TPS_HR);
+        if (t_IB_TPS_HR != null)
+            total.put(COL_ITEM_BUY_TPSELL_HR, t_IB_TPS_HR);
+
+        if (t_IS_TPB_WSS != null)
+            total.put(COL_ITEM_SELL_TPBUY_WSS, t_IS_TPB_WSS);
+        if (t_IB_TPB_WSS != null)
+            total.put(COL_ITEM_BUY_TPBUY_WSS, t_IB_TPB_WSS);
+        if (t_IS_TPS_WSS != null)
+            total.put(COL_ITEM_SELL_TPSELL_WSS, t_IS_TPS_WSS);
+        if (t_IB_TPS_WSS != null)
+            total.put(COL_ITEM_BUY_TPSELL_WSS, t_IB_TPS_WSS);
+
+        if (t_IS_TPB_WSS_HR != null)
+            total.put(COL_ITEM_SELL_TPBUY_WSS_HR, t_IS_TPB_WSS_HR);
+        if (t_IB_TPB_WSS_HR != null)
+            total.put(COL_ITEM_BUY_TPBUY_WSS_HR, t_IB_TPB_WSS_HR);
+        if (t_IS_TPS_WSS_HR != null)
+            total.put(COL_ITEM_SELL_TPSELL_WSS_HR, t_IS_TPS_WSS_HR);
+        if (t_IB_TPS_WSS_HR != null)
+            total.put(COL_ITEM_BUY_TPSELL_WSS_HR, t_IB_TPS_WSS_HR);
+
+        // ---------- BestChoice ----------
+        // Preserve semantic: choose best "buy" from ItemBuy_TPBuy, and best "sell" from
+        // ItemSell_TPSell
+        if ("MAX".equalsIgnoreCase(agg)) {
+            String bestBuyName = null;
+            String bestSellName = null;
+            int bestBuyVal = Integer.MIN_VALUE;
+            int bestSellVal = Integer.MIN_VALUE;
+
+            for (var r : rows) {
+                String rName = str(r.get(COL_NAME));
+                if ("TOTAL".equalsIgnoreCase(rName))
+                    continue;
+
+                Integer buyV = toIntBoxed(r.get(COL_ITEM_BUY_TPBUY));
+                Integer sellV = toIntBoxed(r.get(COL_ITEM_SELL_TPSELL));
+
+                if (buyV != null && buyV > bestBuyVal) {
+                    bestBuyVal = buyV;
+                    bestBuyName = (rName != null && !rName.isBlank()) ? rName : str(r.get(COL_KEY));
+                }
+                if (sellV != null && sellV > bestSellVal) {
+                    bestSellVal = sellV;
+                    bestSellName = (rName != null && !rName.isBlank()) ? rName : str(r.get(COL_KEY));
+                }
+            }
+
+            if (bestBuyName != null && !bestBuyName.isBlank())
+                total.put(COL_BEST_BUY, bestBuyName);
+            else
+                total.remove(COL_BEST_BUY);
+
+            if (bestSellName != null && !bestSellName.isBlank())
+                total.put(COL_BEST_SELL, bestSellName);
+            else
+                total.remove(COL_BEST_SELL);
+        } else {
+            total.remove(COL_BEST_BUY);
+            total.remove(COL_BEST_SELL);
+        }
+    }
+
+    private static int sum(List<Integer> xs) {
+        long s = 0L;
+        for (int v : xs)
+            s += v;
+        return (int) Math.min(s, Integer.MAX_VALUE);
+    }
+
+    private static int avg(List<Integer> xs) {
+        if (xs == null || xs.isEmpty())
+            return 0;
+        long s = 0L;
+        for (int v : xs)
+            s += v;
+        return (int) Math.floor(s / (double) xs.size());
+    }
+}
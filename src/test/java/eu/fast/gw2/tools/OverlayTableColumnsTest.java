@@ -0,0 +1,255 @@
+package eu.fast.gw2.tools;
+
+import static eu.fast.gw2.tools.OverlayHelper.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import eu.fast.gw2.enums.Tier;
+
+/**
+ * Columnar compute (OverlayRowComputer + OverlayTableColumns) against the
+ * former map path (LegacyOverlayRows): same published rows, TOTAL and
+ * BestChoice for every table. Runs without a DB: the run cache is seeded with
+ * the detail rows, vendor values and Spirit Shard pair the tables reach.
+ */
+class OverlayTableColumnsTest {
+
+    private static final ObjectMapper M = new ObjectMapper();
+    private static final Tier TIER = Tier.T10M;
+    private static final String INTERNAL_KEY = "F/P";
+    private static final String[] PROFIT_COLS = {
+            COL_ITEM_BUY_TPBUY, COL_ITEM_SELL_TPBUY, COL_ITEM_BUY_TPSELL, COL_ITEM_SELL_TPSELL,
+            COL_ITEM_BUY_TPBUY_HR, COL_ITEM_SELL_TPSELL_HR, COL_ITEM_BUY_TPBUY_WSS, COL_ITEM_SELL_TPSELL_WSS_HR };
+
+    private static OverlayRowComputer.ComputeContext ctx;
+
+    @BeforeAll
+    static void seedRunCache() {
+        OverlayCache.install(OverlayRunCache.fresh());
+        var gen = OverlayCache.current();
+        gen.calcsPreloaded = true;
+        gen.shard.put(TIER.label, new int[] { 7, 11 });
+        for (int id = 1; id <= 30; id++)
+            gen.vendor.put(id, id % 8 == 0 ? OverlayRunCache.NO_VENDOR : 50 + id);
+        for (int k = 0; k < 3; k++)
+            gen.detailRows.put("ref" + k, List.of(row("Id", 5, COL_AVG, 2.0), row("Id", 6 + k, COL_AVG, 0.5)));
+        for (String k : List.of("total", "x", "TOTAL", INTERNAL_KEY))
+            gen.detailRows.put(k, List.of(row("Id", 3, COL_AVG, 1.0)));
+
+        Random r = new Random(7);
+        Map<Integer, int[]> prices = new HashMap<>();
+        for (int id = 1; id <= 30; id++)
+            prices.put(id, id % 4 != 0 ? new int[] { r.nextInt(1000), r.nextInt(1500) } : new int[] { 0, 0 });
+        prices.put(2, new int[] { 100, 200 });
+        Map<Integer, String> images = new HashMap<>();
+        Map<Integer, String> rarities = new HashMap<>();
+        for (int id = 1; id <= 30; id += 2) {
+            images.put(id, "i" + id + ".png");
+            rarities.put(id, id % 3 == 0 ? "" : "Rare");
+        }
+        ctx = new OverlayRowComputer.ComputeContext(TIER, prices, images, rarities);
+    }
+
+    // ---------- random tables ----------
+
+    @Test
+    void randomTablesMatchLegacy() throws Exception {
+        var cols = new OverlayTableColumns(); // reused across tables, as in a tier runner
+        for (long seed : new long[] { 1, 42, 2024, 90210 }) {
+            Random r = new Random(seed);
+            for (int it = 0; it < 400; it++) {
+                boolean main = r.nextBoolean();
+                var base = randomTable(r, main, r.nextInt(it < 20 ? 3 : 200));
+                assertSameAsLegacy(main, base, cols, "seed=" + seed + " table=" + it);
+            }
+        }
+    }
+
+    // ---------- hand-built cases ----------
+
+    @Test
+    void appendsTotalWithHrDerivedFromDuration() throws Exception {
+        var out = assertSameAsLegacy(false, List.of(
+                row(COL_CAT, "UNCHECKED", COL_NAME, "a", COL_ITEM_BUY_TPBUY, 10, COL_ITEM_SELL_TPSELL, 4,
+                        COL_HOURS, 2.0),
+                row(COL_CAT, "UNCHECKED", COL_NAME, "b", COL_ITEM_BUY_TPBUY, 5, COL_ITEM_SELL_TPSELL, "7")));
+
+        assertEquals(3, out.size());
+        var total = out.get(2);
+        assertEquals("TOTAL", total.get(COL_KEY));
+        assertEquals("TOTAL", total.get(COL_NAME));
+        assertEquals(15, total.get(COL_ITEM_BUY_TPBUY));
+        assertEquals(11, total.get(COL_ITEM_SELL_TPSELL));
+        // only row a has a Duration: floor(10 / 2), floor(4 / 2)
+        assertEquals(5, total.get(COL_ITEM_BUY_TPBUY_HR));
+        assertEquals(2, total.get(COL_ITEM_SELL_TPSELL_HR));
+        assertFalse(total.containsKey(COL_BEST_BUY));
+    }
+
+    @Test
+    void existingTotalRowIsReusedAndCounted() throws Exception {
+        var out = assertSameAsLegacy(false, List.of(
+                row(COL_CAT, "UNCHECKED", COL_NAME, "a", COL_ITEM_BUY_TPBUY, 10),
+                row(COL_CAT, "UNCHECKED", COL_KEY, "total", COL_ITEM_BUY_TPBUY, 1, COL_BEST_BUY, "stale"),
+                row(COL_CAT, "UNCHECKED", COL_NAME, "c", COL_ITEM_BUY_TPBUY, 4)));
+
+        assertEquals(3, out.size());
+        var total = out.get(1);
+        assertEquals("total", total.get(COL_KEY));
+        assertEquals(15, total.get(COL_ITEM_BUY_TPBUY)); // its own 1 included
+        assertFalse(total.containsKey(COL_BEST_BUY)); // SUM: no BestChoice
+    }
+
+    @Test
+    void uncheckedRowsKeepTheirValues() throws Exception {
+        var out = assertSameAsLegacy(true, List.of(
+                row(COL_CAT, "UNCHECKED", COL_NAME, "a", COL_ITEM_BUY_TPBUY, 12.75, COL_ITEM_SELL_TPBUY, "junk"),
+                row(COL_CAT, "UNCHECKED", COL_NAME, "b", COL_ITEM_BUY_TPBUY, "-3")));
+
+        assertEquals(12.75, out.get(0).get(COL_ITEM_BUY_TPBUY));
+        assertEquals("junk", out.get(0).get(COL_ITEM_SELL_TPBUY));
+        assertEquals("-3", out.get(1).get(COL_ITEM_BUY_TPBUY));
+        assertFalse(out.get(0).containsKey(COL_ITEM_BUY_TPBUY_WSS));
+        assertEquals(12, out.get(2).get(COL_ITEM_BUY_TPBUY)); // MAX of the parsed values
+    }
+
+    @Test
+    void detailHrCellsPassThroughAndCount() throws Exception {
+        var out = assertSameAsLegacy(false, List.of(
+                row(COL_KEY, "ref0", COL_AVG, 1.0, COL_ITEM_BUY_TPBUY_HR, 77),
+                row(COL_CAT, "UNCHECKED", COL_NAME, "u", COL_ITEM_BUY_TPBUY_HR, 3)));
+
+        assertEquals(77, out.get(0).get(COL_ITEM_BUY_TPBUY_HR)); // DETAIL rows get no Hr columns written
+        assertEquals(80, out.get(2).get(COL_ITEM_BUY_TPBUY_HR));
+    }
+
+    @Test
+    void maxPicksBestChoiceLabels() throws Exception {
+        var out = assertSameAsLegacy(true, List.of(
+                row(COL_CAT, "UNCHECKED", COL_NAME, "a", COL_ITEM_BUY_TPBUY, 50, COL_ITEM_SELL_TPSELL, 1),
+                row(COL_CAT, "NEGATIVE", COL_NAME, "neg", COL_ID, 2, COL_AVG, 1.0),
+                row(COL_CAT, "UNCHECKED", COL_KEY, "kc", COL_ITEM_BUY_TPBUY, 7, COL_ITEM_SELL_TPSELL, 60),
+                row(COL_CAT, "UNCHECKED", COL_NAME, "Total", COL_ITEM_BUY_TPBUY, 999, COL_BEST_BUY, "stale")));
+
+        assertEquals(-100, out.get(1).get(COL_ITEM_BUY_TPBUY));
+        assertEquals(-200, out.get(1).get(COL_ITEM_SELL_TPSELL));
+        var total = out.get(3);
+        assertEquals(999, total.get(COL_ITEM_BUY_TPBUY)); // the TOTAL row's own cell is part of the MAX
+        assertEquals("a", total.get(COL_BEST_BUY)); // but never a BestChoice itself
+        assertEquals("kc", total.get(COL_BEST_SELL)); // blank Name falls back to Key
+    }
+
+    // ---------- internals ----------
+
+    /** Computes base both ways, asserts equal parsed rows and an untouched base; returns the rows. */
+    private static List<Map<String, Object>> assertSameAsLegacy(boolean main, List<Map<String, Object>> base)
+            throws Exception {
+        return assertSameAsLegacy(main, base, new OverlayTableColumns(), "");
+    }
+
+    private static List<Map<String, Object>> assertSameAsLegacy(boolean main, List<Map<String, Object>> base,
+            OverlayTableColumns cols, String what) throws Exception {
+        String before = M.writeValueAsString(base);
+        var plan = main
+                ? OverlayTablePlan.compile(true, "1|tk", null, null, base, null, INTERNAL_KEY)
+                : OverlayTablePlan.compile(false, "tk", 9L, null, base, "Bags", null);
+
+        String legacy = OverlayJson.toJson(LegacyOverlayRows.compute(plan, base, ctx));
+
+        OverlayRowComputer.computeTable(plan, base, cols, ctx, null, null);
+        cols.aggregate(plan, plan.aggregation);
+        String columnar = OverlayJson.toJson(base, cols);
+
+        assertEquals(before, M.writeValueAsString(base), "base rows mutated " + what);
+        assertEquals(M.readTree(legacy), M.readTree(columnar), what); // key order differs, jsonb drops it
+        return OverlayJson.parseRows(columnar);
+    }
+
+    /**
+     * Every row kind of both table types, numbers as int / double / text /
+     * junk, Spirit Shard (id 23) rows, TOTAL by Name or Key. MAIN rows never
+     * carry a plain Key: its category would be resolved from the DB.
+     */
+    private static List<Map<String, Object>> randomTable(Random r, boolean main, int n) {
+        List<Map<String, Object>> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            var row = new LinkedHashMap<String, Object>();
+            int id = r.nextInt(6) == 0 ? 23 : 1 + r.nextInt(30);
+            row.put(COL_ID, r.nextInt(5) == 0 ? -1 : id);
+            row.put(COL_NAME, r.nextInt(6) == 0 ? "" : "n" + i);
+            row.put(COL_IMAGE, "old.png");
+            if (r.nextBoolean())
+                row.put(COL_AVG, r.nextDouble() * 5);
+            if (r.nextBoolean())
+                row.put(COL_HOURS, r.nextInt(3) == 0 ? 0 : r.nextDouble() * 3);
+            switch (r.nextInt(main ? 5 : 7)) {
+                case 0 -> row.put(COL_CAT, "UNCHECKED");
+                case 1 -> row.put(COL_CAT, "NEGATIVE");
+                case 2 -> {
+                    row.put(COL_CAT, "INTERNAL");
+                    row.put(COL_KEY, "ref" + r.nextInt(3));
+                }
+                case 3 -> {
+                    row.put(COL_CAT, "UNCHECKED");
+                    row.put(COL_KEY, "x");
+                }
+                case 4 -> {
+                    if (main) {
+                        row.put(COL_CAT, "NEGATIVE");
+                    } else {
+                        row.put(COL_CAT, "");
+                        row.put(COL_KEY, "");
+                    }
+                }
+                case 5 -> row.put(COL_KEY, "ref" + r.nextInt(3));
+                default -> {
+                }
+            }
+            if (r.nextInt(3) == 0)
+                for (String c : PROFIT_COLS)
+                    if (r.nextBoolean())
+                        row.put(c, r.nextInt(10) == 0 ? "junk" : number(r, r.nextInt(2000) - 500));
+            rows.add(row);
+        }
+        if (n > 0) {
+            switch (r.nextInt(4)) {
+                case 1 -> {
+                    var t = rows.get(r.nextInt(n));
+                    t.put(COL_NAME, "TOTAL");
+                    t.put(COL_BEST_BUY, "stale");
+                }
+                case 2 -> rows.get(r.nextInt(n)).put(COL_KEY, "total");
+                default -> {
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Object number(Random r, int v) {
+        return switch (r.nextInt(4)) {
+            case 1 -> v + 0.25;
+            case 2 -> String.valueOf(v);
+            default -> v;
+        };
+    }
+
+    private static Map<String, Object> row(Object... kv) {
+        var row = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < kv.length; i += 2)
+            row.put((String) kv[i], kv[i + 1]);
+        return row;
+    }
+}